@@ -26,10 +26,21 @@ public class ApiKeyManager {
     private Context context;
     private SecretKey secretKey;
 
+    // Decrypted keys, loaded once and reloaded only when the stored list changes
+    private List<ApiKey> cachedKeys;
+    private final ApiKeyPool keyPool = new ApiKeyPool();
+    // Held in a field: preferences keep change listeners only weakly
+    private final SharedPreferences.OnSharedPreferenceChangeListener keysListener = (prefs, changedKey) -> {
+        if (KEYS_ARRAY.equals(changedKey)) {
+            invalidateKeys();
+        }
+    };
+
     public ApiKeyManager(Context context) {
         this.context = context;
         this.sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         initializeEncryption();
+        sharedPreferences.registerOnSharedPreferenceChangeListener(keysListener);
     }
 
     private void initializeEncryption() {
@@ -150,6 +161,30 @@ public class ApiKeyManager {
     }
 
     public List<ApiKey> getApiKeyObjects() {
+        return new ArrayList<>(loadKeys());
+    }
+
+    /**
+     * @return the pool that spreads Gemini requests over the configured keys
+     */
+    public ApiKeyPool getKeyPool() {
+        loadKeys();
+        return keyPool;
+    }
+
+    private synchronized List<ApiKey> loadKeys() {
+        if (cachedKeys == null) {
+            cachedKeys = readApiKeys();
+            keyPool.setKeys(cachedKeys);
+        }
+        return cachedKeys;
+    }
+
+    private synchronized void invalidateKeys() {
+        cachedKeys = null;
+    }
+
+    private List<ApiKey> readApiKeys() {
         String keysJson = sharedPreferences.getString(KEYS_ARRAY, "[]");
         List<ApiKey> keys = new ArrayList<>();
 
@@ -178,11 +213,7 @@ public class ApiKeyManager {
         sharedPreferences.edit()
                 .putString(KEYS_ARRAY, keysArray.toString())
                 .apply();
-    }
-
-    public String getActiveApiKey() {
-        List<String> keys = getApiKeys();
-        return keys.isEmpty() ? null : keys.get(0);
+        invalidateKeys();
     }
 
     public void saveQwenToken(String token) {
@@ -0,0 +1,204 @@
+package com.slides.ai;
+
+import android.os.SystemClock;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ApiKeyPool spreads Gemini requests over all configured API keys.
+ *
+ * Keys are picked by smooth weighted round-robin. A key that gets HTTP 429 or 503
+ * cools down for the server's Retry-After, or for an exponential backoff if that is
+ * longer, and its weight drops to the minimum; successes raise it back step by step.
+ * Thread-safe.
+ */
+public class ApiKeyPool {
+    private static final int MAX_WEIGHT = 4;
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    public static class KeyStats {
+        public final String label;
+        public final int requests;
+        public final int successes;
+        public final int errors;
+        public final long coolingDownMs;
+
+        KeyStats(String label, int requests, int successes, int errors, long coolingDownMs) {
+            this.label = label;
+            this.requests = requests;
+            this.successes = successes;
+            this.errors = errors;
+            this.coolingDownMs = coolingDownMs;
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        String label;
+        int weight = MAX_WEIGHT;
+        int currentWeight;
+        int consecutiveFailures;
+        long coolUntil;
+        int requests;
+        int successes;
+        int errors;
+
+        Entry(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Replaces the pooled keys, keeping health and counters of keys that stay.
+     */
+    public synchronized void setKeys(List<ApiKeyManager.ApiKey> keys) {
+        List<Entry> updated = new ArrayList<>();
+        for (ApiKeyManager.ApiKey apiKey : keys) {
+            Entry entry = find(apiKey.getKey());
+            if (entry == null) {
+                entry = new Entry(apiKey.getKey(), apiKey.getLabel());
+            }
+            entry.label = apiKey.getLabel();
+            updated.add(entry);
+        }
+        entries.clear();
+        entries.addAll(updated);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Picks the key for the next request, or null if there are none. When every key
+     * is cooling down, the one that recovers first is returned.
+     */
+    public synchronized String acquire() {
+        long now = SystemClock.elapsedRealtime();
+        Entry best = null;
+        int totalWeight = 0;
+        for (Entry entry : entries) {
+            if (entry.coolUntil > now) {
+                continue;
+            }
+            entry.currentWeight += entry.weight;
+            totalWeight += entry.weight;
+            if (best == null || entry.currentWeight > best.currentWeight) {
+                best = entry;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= totalWeight;
+        } else {
+            for (Entry entry : entries) {
+                if (best == null || entry.coolUntil < best.coolUntil) {
+                    best = entry;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+        }
+        best.requests++;
+        return best.key;
+    }
+
+    /**
+     * Records the outcome of a request made with a key.
+     *
+     * @param httpCode the response status, or 0 if no response arrived
+     * @param retryAfter the Retry-After header of the response, may be null
+     */
+    public synchronized void release(String key, int httpCode, String retryAfter) {
+        Entry entry = find(key);
+        if (entry == null) {
+            return;
+        }
+        if (httpCode >= 200 && httpCode < 300) {
+            entry.successes++;
+            entry.consecutiveFailures = 0;
+            entry.weight = Math.min(MAX_WEIGHT, entry.weight + 1);
+        } else if (isRateLimited(httpCode)) {
+            entry.errors++;
+            entry.consecutiveFailures++;
+            entry.weight = 1;
+            long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(entry.consecutiveFailures - 1, 6));
+            long wait = Math.max(backoff, Math.min(MAX_BACKOFF_MS, parseRetryAfter(retryAfter)));
+            entry.coolUntil = SystemClock.elapsedRealtime() + wait;
+        } else if (httpCode != 0) {
+            entry.errors++;
+        }
+    }
+
+    /**
+     * @return true if the status means the key is throttled and another key may succeed
+     */
+    public static boolean isRateLimited(int httpCode) {
+        return httpCode == 429 || httpCode == 503;
+    }
+
+    public synchronized List<KeyStats> getKeyStats() {
+        long now = SystemClock.elapsedRealtime();
+        List<KeyStats> stats = new ArrayList<>();
+        for (Entry entry : entries) {
+            stats.add(new KeyStats(entry.label, entry.requests, entry.successes, entry.errors,
+                    Math.max(0, entry.coolUntil - now)));
+        }
+        return stats;
+    }
+
+    public synchronized String getStats() {
+        StringBuilder out = new StringBuilder();
+        for (KeyStats key : getKeyStats()) {
+            if (out.length() > 0) {
+                out.append(", ");
+            }
+            out.append(String.format(Locale.US, "%s: requests=%d successes=%d errors=%d cooldown=%dms",
+                    key.label, key.requests, key.successes, key.errors, key.coolingDownMs));
+        }
+        return out.toString();
+    }
+
+    private Entry find(String key) {
+        for (Entry entry : entries) {
+            if (entry.key.equals(key)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a Retry-After value given either in seconds or as an HTTP date.
+     */
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // Not seconds; try an HTTP date
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            Date date = format.parse(retryAfter.trim());
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : 0;
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
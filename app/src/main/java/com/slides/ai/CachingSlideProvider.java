@@ -0,0 +1,131 @@
+package com.slides.ai;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+* CachingSlideProvider puts a {@link GenerationCache} and single-flight request
+* merging in front of another provider.
+*
+* A repeated prompt is answered from disk without a network call, and an identical
+* request made while one is in flight (e.g. a double-tapped send) waits for that
+* call instead of issuing its own. All bookkeeping happens on the main thread.
+*/
+public class CachingSlideProvider implements SlideGenerationProvider {
+	private static final String TAG = "CachingSlideProvider";
+
+	private final SlideGenerationProvider delegate;
+	private final GenerationCache cache;
+	private final Handler mainHandler;
+	private final ExecutorService executorService;
+
+	// The delegate serves one request at a time: its key and everyone waiting for it
+	private String inFlightKey;
+	private List<Callback> waiters = new ArrayList<>();
+	private int merged = 0;
+
+	public CachingSlideProvider(SlideGenerationProvider delegate, GenerationCache cache, Handler mainHandler, ExecutorService executorService) {
+		this.delegate = delegate;
+		this.cache = cache;
+		this.mainHandler = mainHandler;
+		this.executorService = executorService;
+	}
+
+	@Override
+	public boolean supportsModel(String model) {
+		return delegate.supportsModel(model);
+	}
+
+	@Override
+	public void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, Callback callback) {
+		String key = keyFor(prompt, model, canvasWidth, canvasHeight);
+
+		if (key.equals(inFlightKey)) {
+			merged++;
+			waiters.add(callback);
+			return;
+		}
+
+		// A different request supersedes the one in flight
+		if (inFlightKey != null) {
+			delegate.cancel();
+		}
+		inFlightKey = key;
+		waiters = new ArrayList<>();
+		waiters.add(callback);
+
+		executorService.execute(() -> {
+			String cached = cache.get(key);
+			Log.d(TAG, cache.getStats() + " merged=" + merged);
+			mainHandler.post(() -> {
+				if (!key.equals(inFlightKey)) {
+					return;
+				}
+				if (cached != null) {
+					finish(key, cached, null);
+					return;
+				}
+				delegate.generateSlide(prompt, model, canvasWidth, canvasHeight, streamListener, new Callback() {
+					@Override
+					public void onSuccess(String slideJson) {
+						executorService.execute(() -> cache.put(key, slideJson));
+						finish(key, slideJson, null);
+					}
+
+					@Override
+					public void onError(String message) {
+						finish(key, null, message);
+					}
+				});
+			});
+		});
+	}
+
+	@Override
+	public void generateText(String prompt, String model, Callback callback) {
+		// Free-form answers are not cached, but still take over the delegate
+		inFlightKey = null;
+		waiters = new ArrayList<>();
+		delegate.generateText(prompt, model, callback);
+	}
+
+	@Override
+	public void cancel() {
+		inFlightKey = null;
+		waiters = new ArrayList<>();
+		delegate.cancel();
+	}
+
+	public GenerationCache getCache() {
+		return cache;
+	}
+
+	/**
+	* @return the key a slide generated for this request is stored under
+	*/
+	public String keyFor(String prompt, String model, float canvasWidth, float canvasHeight) {
+		return GenerationCache.keyFor(delegate.getClass().getName(), model, prompt,
+		canvasWidth, canvasHeight, PROMPT_TEMPLATE_VERSION);
+	}
+
+	private void finish(String key, String slideJson, String error) {
+		if (!key.equals(inFlightKey)) {
+			return;
+		}
+		List<Callback> done = waiters;
+		inFlightKey = null;
+		waiters = new ArrayList<>();
+		for (Callback waiter : done) {
+			if (slideJson != null) {
+				waiter.onSuccess(slideJson);
+			} else {
+				waiter.onError(error);
+			}
+		}
+	}
+}
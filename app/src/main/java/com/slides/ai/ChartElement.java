@@ -55,6 +55,14 @@ public class ChartElement extends SlideElement {
 		return (int) (dp * context.getResources().getDisplayMetrics().density);
 	}
 	
+	@Override
+	protected void detachDrawingState() {
+		values = new ArrayList<>(values);
+		colors = new ArrayList<>(colors);
+		labels = new ArrayList<>(labels);
+		chartPaint = new Paint(chartPaint);
+	}
+	
 	@Override
 	public void draw(Canvas canvas) {
 		canvas.save();
@@ -142,10 +150,12 @@ public class ChartElement extends SlideElement {
 	public JSONObject toJson() throws JSONException {
 		JSONObject json = new JSONObject();
 		json.put("type", "chart");
+		json.put("id", id);
 		json.put("x", x);
 		json.put("y", y);
 		json.put("width", width);
 		json.put("height", height);
+		json.put("rotation", rotation);
 		json.put("chartType", chartType);
 		json.put("showLegend", showLegend);
 		
@@ -162,6 +172,15 @@ public class ChartElement extends SlideElement {
 		return json;
 	}
 	
+	@Override
+	public boolean setProperty(String property, Object value) {
+		switch (property) {
+			case "chartType": chartType = String.valueOf(value); return true;
+			case "showLegend": showLegend = toBoolean(value); return true;
+			default: return super.setProperty(property, value);
+		}
+	}
+	
 	public void setData(JSONArray data) {
 		// Parse and update chart data
 	}
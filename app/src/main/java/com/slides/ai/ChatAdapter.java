@@ -17,7 +17,11 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
     private static final int VIEW_TYPE_USER = 1;
     private static final int VIEW_TYPE_AI = 2;
 
+    // Rebinds only the text of a streaming message, skipping markdown and listeners
+    public static final Object PAYLOAD_TEXT = new Object();
+
     private List<ChatMessage> messages;
+    private Markwon markwon;
 
     public ChatAdapter(List<ChatMessage> messages) {
         this.messages = messages;
@@ -45,13 +49,25 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
         return new MessageViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position, @NonNull List<Object> payloads) {
+        ChatMessage message = messages.get(position);
+        if (payloads.contains(PAYLOAD_TEXT) && message.isStreaming()) {
+            holder.messageText.setText(message.getText());
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
         ChatMessage message = messages.get(position);
-        if (message.isUser()) {
+        if (message.isUser() || message.isStreaming()) {
             holder.messageText.setText(message.getText());
         } else {
-            Markwon markwon = Markwon.create(holder.itemView.getContext());
+            if (markwon == null) {
+                markwon = Markwon.create(holder.itemView.getContext());
+            }
             markwon.setMarkdown(holder.messageText, message.getText());
             holder.messageText.setOnLongClickListener(v -> {
                 android.content.ClipboardManager clipboard = (android.content.ClipboardManager) v.getContext().getSystemService(android.content.Context.CLIPBOARD_SERVICE);
@@ -1,6 +1,7 @@
 package com.slides.ai;
 
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -19,6 +20,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class ChatFragment extends Fragment {
 
@@ -29,6 +31,46 @@ public class ChatFragment extends Fragment {
     private ImageButton sendButton;
     private Button modelSelectorButton;
     private String selectedModel = "gemini-2.0-flash";
+    private static final String TYPING_SLIDE = "Creating your slide...";
+    // Longest tail of the streamed model text shown in the typing bubble
+    private static final int MAX_STREAMED_CHARS = 600;
+    private static final String DECK_COMMAND = "/deck";
+    private static final String TYPING_DECK = "Planning your deck...";
+    private static final int DEFAULT_DECK_SLIDES = 5;
+    private static final String VARIANTS_COMMAND = "/variants";
+    private static final String TYPING_VARIANTS = "Generating variants...";
+    // Routes each prompt to the fastest healthy model, see ModelRouter
+    public static final String AUTO_MODEL = "auto";
+    public static final String[] MODELS = {
+        "gemini-2.0-flash",
+        "qwen3-coder-plus",
+        "qwen3-235b-a22b",
+        "qwen3-30b-a3b",
+        "qwen3-32b",
+        "qwen-max-latest",
+        "qwen-plus-2025-01-25",
+        "qwq-32b",
+        "qwen-turbo-2025-02-11",
+        "qwen2.5-omni-7b",
+        "qvq-72b-preview-0310",
+        "qwen2.5-vl-32b-instruct",
+        "qwen2.5-14b-instruct-1m",
+        "qwen2.5-coder-32b-instruct",
+        "qwen2.5-72b-instruct"
+    };
+
+    // What an answer replies to; each kind of request has its own typing bubble
+    public static final int REPLY_SLIDE = 0;
+    public static final int REPLY_DECK = 1;
+    public static final int REPLY_VARIANTS = 2;
+    private final ChatMessage[] typingMessages = new ChatMessage[3];
+
+    // The model's text streams into the slide's typing bubble: what it shows and what is still to show
+    private final StringBuilder streamedText = new StringBuilder();
+    private final StringBuilder pendingText = new StringBuilder();
+    private boolean streamedTextCut = false;
+    private boolean frameScheduled = false;
+    private final Choreographer.FrameCallback streamFrame = frameTimeNanos -> flushStreamedText();
 
     public String getSelectedModel() {
         return selectedModel;
@@ -38,6 +80,8 @@ public class ChatFragment extends Fragment {
 
     public interface ChatInteractionListener {
         void onChatPromptSent(String prompt, float canvasWidth, float canvasHeight);
+        void onDeckPromptSent(String topic, int slideCount);
+        void onVariantsPromptSent(String prompt, int variantCount);
     }
 
     public void setChatInteractionListener(ChatInteractionListener listener) {
@@ -79,15 +123,24 @@ public class ChatFragment extends Fragment {
     }
 
     private void addWelcomeMessage() {
-        addAiMessage("Hello! I'm here to help you create amazing presentations. Just describe what kind of slide you want and I'll generate it for you!\n\nFor example, try:\n• \"Create a slide about renewable energy\"\n• \"Make a presentation slide for our company overview\"\n• \"Generate a slide about machine learning basics\"");
+        addAiMessage("Hello! I'm here to help you create amazing presentations. Just describe what kind of slide you want and I'll generate it for you!\n\nFor example, try:\n• \"Create a slide about renewable energy\"\n• \"Make a presentation slide for our company overview\"\n• \"Generate a slide about machine learning basics\"\n\nTo create a whole deck at once, type \"/deck 6 renewable energy\". To compare a few layouts of one slide, type \"/variants 3 renewable energy\".");
     }
 
     private void sendMessage(String message) {
         // Add user message to chat
         addUserMessage(message);
 
-        // Show typing indicator
-        addAiMessage("Creating your slide...");
+        if (message.startsWith(DECK_COMMAND)) {
+            sendDeckCommand(message.substring(DECK_COMMAND.length()).trim());
+            return;
+        }
+        if (message.startsWith(VARIANTS_COMMAND)) {
+            sendVariantsCommand(message.substring(VARIANTS_COMMAND.length()).trim());
+            return;
+        }
+
+        // Show typing indicator, which the model's text streams into
+        showTyping(REPLY_SLIDE, TYPING_SLIDE);
 
         // Send to parent activity for processing
         if (chatInteractionListener != null) {
@@ -99,6 +152,50 @@ public class ChatFragment extends Fragment {
         }
     }
 
+    /**
+     * Handles "/deck [count] topic", which generates a whole deck in one go.
+     */
+    private void sendDeckCommand(String arguments) {
+        int slideCount = DEFAULT_DECK_SLIDES;
+        String topic = arguments;
+        String[] parts = arguments.split("\\s+", 2);
+        if (parts.length == 2 && parts[0].matches("\\d{1,2}")) {
+            slideCount = Integer.parseInt(parts[0]);
+            topic = parts[1];
+        }
+        if (topic.isEmpty()) {
+            addAiMessage("Tell me what the deck is about, e.g. \"/deck 6 renewable energy\".");
+            return;
+        }
+
+        showTyping(REPLY_DECK, TYPING_DECK);
+        if (chatInteractionListener != null) {
+            chatInteractionListener.onDeckPromptSent(topic, slideCount);
+        }
+    }
+
+    /**
+     * Handles "/variants [count] prompt", which generates several versions of a
+     * slide at once to pick from.
+     */
+    private void sendVariantsCommand(String arguments) {
+        int count = VariantGenerator.DEFAULT_VARIANTS;
+        String prompt = arguments;
+        String[] parts = arguments.split("\\s+", 2);
+        if (parts.length == 2 && parts[0].matches("\\d")) {
+            count = Math.max(2, Math.min(VariantGenerator.MAX_VARIANTS, Integer.parseInt(parts[0])));
+            prompt = parts[1];
+        }
+        if (prompt.isEmpty()) {
+            addAiMessage("Tell me what the slide is about, e.g. \"/variants 3 our quarterly results\".");
+            return;
+        }
+
+        showTyping(REPLY_VARIANTS, TYPING_VARIANTS);
+        if (chatInteractionListener != null) {
+            chatInteractionListener.onVariantsPromptSent(prompt, count);
+        }
+    }
 
     private void addUserMessage(String message) {
         chatMessages.add(new ChatMessage(message, true));
@@ -106,59 +203,153 @@ public class ChatFragment extends Fragment {
         chatRecyclerView.scrollToPosition(chatMessages.size() - 1);
     }
 
+    /**
+     * Appends a message that answers no pending request, e.g. deck progress. Typing
+     * bubbles and the text streaming into them are left alone.
+     */
     public void addAiMessage(String message) {
-        // Remove the last "Creating your slide..." message if it exists
-        if (!chatMessages.isEmpty()) {
-            ChatMessage lastMessage = chatMessages.get(chatMessages.size() - 1);
-            if (!lastMessage.isUser() && lastMessage.getText().equals("Creating your slide...")) {
-                chatMessages.remove(chatMessages.size() - 1);
-                chatAdapter.notifyItemRemoved(chatMessages.size());
-            }
-        }
-        
         chatMessages.add(new ChatMessage(message, false));
         chatAdapter.notifyItemInserted(chatMessages.size() - 1);
         chatRecyclerView.scrollToPosition(chatMessages.size() - 1);
     }
 
+    private void showTyping(int reply, String text) {
+        if (reply == REPLY_SLIDE) {
+            stopStreaming();
+        }
+        addAiMessage(text);
+        typingMessages[reply] = chatMessages.get(chatMessages.size() - 1);
+    }
+
+    /**
+     * Answers a request: the answer takes the place of that request's typing bubble,
+     * wherever it is in the chat, or is appended if there is none.
+     *
+     * @param reply REPLY_SLIDE, REPLY_DECK or REPLY_VARIANTS
+     */
+    public void addAiResponse(int reply, String message) {
+        ChatMessage typing = typingMessages[reply];
+        typingMessages[reply] = null;
+        if (reply == REPLY_SLIDE) {
+            stopStreaming();
+        }
+
+        int index = typing != null ? chatMessages.indexOf(typing) : -1;
+        if (index < 0) {
+            addAiMessage(message);
+            return;
+        }
+        typing.setText(message);
+        typing.setStreaming(false);
+        chatAdapter.notifyItemChanged(index);
+        chatRecyclerView.scrollToPosition(index);
+    }
+
+    /**
+     * Shows model text as it streams in, in the typing bubble of the prompt being
+     * answered. Updates are batched to at most one per frame, however fast the
+     * text arrives.
+     */
+    public void appendStreamedText(String delta) {
+        if (typingMessages[REPLY_SLIDE] == null || delta == null) {
+            return;
+        }
+        pendingText.append(delta);
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(streamFrame);
+        }
+    }
+
+    private void flushStreamedText() {
+        frameScheduled = false;
+        ChatMessage streamingMessage = typingMessages[REPLY_SLIDE];
+        if (streamingMessage == null || pendingText.length() == 0) {
+            return;
+        }
+        streamedText.append(pendingText);
+        pendingText.setLength(0);
+        if (streamedText.length() > MAX_STREAMED_CHARS) {
+            streamedText.delete(0, streamedText.length() - MAX_STREAMED_CHARS);
+            streamedTextCut = true;
+        }
+
+        boolean first = !streamingMessage.isStreaming();
+        streamingMessage.setStreaming(true);
+        streamingMessage.setText(TYPING_SLIDE + "\n\n" + (streamedTextCut ? "…" : "") + streamedText);
+        int index = chatMessages.size() - 1;
+        if (chatMessages.get(index) != streamingMessage) {
+            index = chatMessages.indexOf(streamingMessage);
+            if (index < 0) {
+                typingMessages[REPLY_SLIDE] = null;
+                stopStreaming();
+                return;
+            }
+        }
+        chatAdapter.notifyItemChanged(index, ChatAdapter.PAYLOAD_TEXT);
+        if (first) {
+            chatRecyclerView.scrollToPosition(index);
+        }
+    }
+
+    private void stopStreaming() {
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(streamFrame);
+            frameScheduled = false;
+        }
+        streamedText.setLength(0);
+        pendingText.setLength(0);
+        streamedTextCut = false;
+    }
+
+    @Override
+    public void onDestroyView() {
+        stopStreaming();
+        super.onDestroyView();
+    }
+
+    /**
+     * Answers the pending slide request.
+     */
     public void addAiResponse(String response) {
-        addAiMessage(response);
+        addAiResponse(REPLY_SLIDE, response);
     }
 
     private void showModelSelectionDialog() {
-        final String[] models = {
-            "gemini-2.0-flash",
-            "qwen3-coder-plus",
-            "qwen3-235b-a22b",
-            "qwen3-30b-a3b",
-            "qwen3-32b",
-            "qwen-max-latest",
-            "qwen-plus-2025-01-25",
-            "qwq-32b",
-            "qwen-turbo-2025-02-11",
-            "qwen2.5-omni-7b",
-            "qvq-72b-preview-0310",
-            "qwen2.5-vl-32b-instruct",
-            "qwen2.5-14b-instruct-1m",
-            "qwen2.5-coder-32b-instruct",
-            "qwen2.5-72b-instruct"
-        };
-        int checkedItem = -1;
-        for (int i = 0; i < models.length; i++) {
+        final String[] models = new String[MODELS.length + 1];
+        models[0] = AUTO_MODEL;
+        System.arraycopy(MODELS, 0, models, 1, MODELS.length);
+
+        // Each model shows how it has been doing lately
+        ModelTelemetry telemetry = ModelTelemetry.getInstance(requireContext());
+        final String[] labels = new String[models.length];
+        labels[0] = "Auto (fastest healthy model)";
+        int checkedItem = models[0].equals(selectedModel) ? 0 : -1;
+        for (int i = 1; i < models.length; i++) {
+            labels[i] = models[i] + describe(telemetry.getStats(models[i]));
             if (models[i].equals(selectedModel)) {
                 checkedItem = i;
-                break;
             }
         }
 
-
         new MaterialAlertDialogBuilder(getContext())
                 .setTitle("Select Model")
-                .setSingleChoiceItems(models, checkedItem, (dialog, which) -> {
+                .setSingleChoiceItems(labels, checkedItem, (dialog, which) -> {
                     selectedModel = models[which];
-                    modelSelectorButton.setText(selectedModel);
+                    modelSelectorButton.setText(which == 0 ? "Auto" : selectedModel);
                     dialog.dismiss();
                 })
                 .show();
     }
+
+    private static String describe(ModelTelemetry.Stats stats) {
+        if (stats.samples == 0) {
+            return "";
+        }
+        if (stats.errorRate >= 1f) {
+            return "\nfailing";
+        }
+        return String.format(Locale.US, "\n%.1fs · %.0f%% valid%s", stats.totalP50 / 1000f,
+                stats.validityRate * 100, stats.errorRate > 0 ? String.format(Locale.US, " · %.0f%% errors", stats.errorRate * 100) : "");
+    }
 }
@@ -3,6 +3,8 @@ package com.slides.ai;
 public class ChatMessage {
     private String text;
     private boolean isUser;
+    // While true the text is still arriving and is shown without markdown
+    private boolean streaming;
 
     public ChatMessage(String text, boolean isUser) {
         this.text = text;
@@ -13,6 +15,18 @@ public class ChatMessage {
         return text;
     }
 
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public boolean isUser() {
         return isUser;
     }
@@ -177,6 +177,19 @@ public class CodeFragment extends Fragment {
         }
     }
 
+    /**
+     * Replaces the code of a slide, e.g. after ids were added to it.
+     */
+    public void setSlideCode(int index, String json) {
+        if (index < 0 || index >= slideJsonList.size()) {
+            return;
+        }
+        slideJsonList.set(index, json);
+        if (index == currentSlideIndex && codeInput != null) {
+            codeInput.setText(json);
+        }
+    }
+
     public String getCode() {
         saveCurrentSlideContent(); // Ensure current content is saved
         return codeInput != null ? codeInput.getText().toString() : "";
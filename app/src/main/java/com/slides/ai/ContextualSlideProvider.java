@@ -0,0 +1,47 @@
+package com.slides.ai;
+
+/**
+* ContextualSlideProvider adds the deck context to each slide prompt right before
+* it is sent to another provider.
+*
+* It sits below the {@link CachingSlideProvider}, so the cache and the merging of
+* identical requests see the user's prompt alone: the context changes with every
+* prompt sent, and would otherwise make a resend or a double-tap a new request.
+*/
+public class ContextualSlideProvider implements SlideGenerationProvider {
+	private final SlideGenerationProvider delegate;
+	private final ContextSource contextSource;
+
+	public interface ContextSource {
+		/**
+		* @return the prompt with the current context added. Called on the main thread.
+		*/
+		String withContext(String prompt);
+	}
+
+	public ContextualSlideProvider(SlideGenerationProvider delegate, ContextSource contextSource) {
+		this.delegate = delegate;
+		this.contextSource = contextSource;
+	}
+
+	@Override
+	public boolean supportsModel(String model) {
+		return delegate.supportsModel(model);
+	}
+
+	@Override
+	public void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, Callback callback) {
+		delegate.generateSlide(contextSource.withContext(prompt), model, canvasWidth, canvasHeight, streamListener, callback);
+	}
+
+	@Override
+	public void generateText(String prompt, String model, Callback callback) {
+		delegate.generateText(prompt, model, callback);
+	}
+
+	@Override
+	public void cancel() {
+		delegate.cancel();
+	}
+}
@@ -0,0 +1,238 @@
+package com.slides.ai;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* ConversationContext builds the context sent along with a prompt, for every provider.
+*
+* Instead of replaying earlier answers, each slide of the deck is described by a
+* one-line structural summary and recent requests are listed in a few words. The
+* current slide's full JSON is only included when the prompt edits it. Everything
+* but that JSON is dropped, oldest first, once the token budget is used up.
+*/
+public class ConversationContext {
+	private static final int TOKEN_BUDGET = 600;
+	// Rough size of a token in English text and JSON
+	private static final int CHARS_PER_TOKEN = 4;
+	private static final int MAX_PROMPTS = 5;
+	private static final int MAX_TEXT_CHARS = 40;
+	// A prompt with any of these asks for another slide, whatever else it mentions
+	private static final String[] NEW_SLIDE_PHRASES = {
+		"a slide", "new slide", "another slide", "next slide", "slide about", "slide on ", "slide for ", "slides"
+	};
+	private static final String[] CURRENT_SLIDE_PHRASES = {
+		"this slide", "current slide", "the slide", "this page", "the background"
+	};
+	// "the title", "this chart": a determiner followed by a word naming a part of the slide
+	private static final Pattern ELEMENT_REFERENCE = Pattern.compile("\\b(?:the|this|that|these|those)\\s+(\\w+)");
+	private static final Map<String, String> ELEMENT_NOUNS = new HashMap<>();
+
+	static {
+		for (String noun : new String[]{"title", "heading", "subtitle", "text", "caption", "bullet", "bullets", "paragraph", "label"}) {
+			ELEMENT_NOUNS.put(noun, "text");
+		}
+		for (String noun : new String[]{"image", "picture", "photo", "logo"}) {
+			ELEMENT_NOUNS.put(noun, "image");
+		}
+		for (String noun : new String[]{"shape", "box", "rectangle", "circle", "oval", "line", "triangle"}) {
+			ELEMENT_NOUNS.put(noun, "shape");
+		}
+		ELEMENT_NOUNS.put("chart", "chart");
+		ELEMENT_NOUNS.put("graph", "chart");
+		ELEMENT_NOUNS.put("table", "table");
+		ELEMENT_NOUNS.put("icon", "icon");
+	}
+
+	private final ArrayDeque<String> recentPrompts = new ArrayDeque<>();
+
+	public void recordPrompt(String prompt) {
+		recentPrompts.addLast(prompt.trim());
+		while (recentPrompts.size() > MAX_PROMPTS) {
+			recentPrompts.removeFirst();
+		}
+	}
+
+	public void clear() {
+		recentPrompts.clear();
+	}
+
+	/**
+	* Tells an edit of the current slide from a request for a new one. Only a prompt
+	* that clearly refers to the current slide, or to one of its elements by id or by
+	* type ("the title", "this chart"), is an edit; how it starts does not matter, so
+	* "Make a slide about Q3 revenue" still asks for a new slide.
+	*
+	* @param currentSlide the JSON of the slide shown to the user, or null if there is none
+	* @return true if the prompt asks to change the current slide rather than create one
+	*/
+	public static boolean isEditPrompt(String prompt, String currentSlide) {
+		if (currentSlide == null) {
+			return false;
+		}
+		String text = prompt.trim().toLowerCase(Locale.US);
+		for (String phrase : NEW_SLIDE_PHRASES) {
+			if (text.contains(phrase)) {
+				return false;
+			}
+		}
+		for (String phrase : CURRENT_SLIDE_PHRASES) {
+			if (text.contains(phrase)) {
+				return true;
+			}
+		}
+
+		Set<String> types = new HashSet<>();
+		try {
+			JSONArray elements = new JSONObject(currentSlide).optJSONArray("elements");
+			for (int i = 0; elements != null && i < elements.length(); i++) {
+				JSONObject element = elements.optJSONObject(i);
+				if (element == null) {
+					continue;
+				}
+				String id = element.optString("id", "").toLowerCase(Locale.US);
+				if (id.length() > 1 && text.contains(id)) {
+					return true;
+				}
+				types.add(element.optString("type"));
+			}
+		} catch (JSONException e) {
+			return false;
+		}
+		Matcher reference = ELEMENT_REFERENCE.matcher(text);
+		while (reference.find()) {
+			String type = ELEMENT_NOUNS.get(reference.group(1));
+			if (type != null && types.contains(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* Appends the context to a prompt. Returns the prompt unchanged if there is none.
+	*
+	* @param slides the JSON of every slide in the deck
+	* @param currentIndex the slide shown to the user
+	*/
+	public String build(String prompt, List<String> slides, int currentIndex) {
+		int budget = TOKEN_BUDGET * CHARS_PER_TOKEN;
+		StringBuilder context = new StringBuilder();
+
+		if (currentIndex >= 0 && currentIndex < slides.size() && isEditPrompt(prompt, slides.get(currentIndex))) {
+			String current = minify(slides.get(currentIndex));
+			context.append("Current slide JSON (change it as asked and keep everything else): ")
+			.append(current).append('\n');
+			budget -= current.length();
+		}
+
+		StringBuilder prompts = new StringBuilder();
+		Iterator<String> newestFirst = recentPrompts.descendingIterator();
+		while (newestFirst.hasNext()) {
+			String earlier = newestFirst.next();
+			if (earlier.equals(prompt.trim())) {
+				// The prompt itself, recorded before its context was built
+				continue;
+			}
+			String line = "- " + truncate(earlier, MAX_TEXT_CHARS * 2) + '\n';
+			if (line.length() > budget) {
+				break;
+			}
+			prompts.insert(0, line);
+			budget -= line.length();
+		}
+		if (prompts.length() > 0) {
+			context.append("Earlier requests:\n").append(prompts);
+		}
+
+		// Slides nearest to the current one matter most
+		String[] summaries = new String[slides.size()];
+		for (int distance = 0; distance < slides.size(); distance++) {
+			for (int index : new int[]{currentIndex - distance, currentIndex + distance}) {
+				if (index < 0 || index >= slides.size() || summaries[index] != null) {
+					continue;
+				}
+				String line = (index + 1) + ". " + summarizeSlide(slides.get(index)) + '\n';
+				if (line.length() > budget) {
+					continue;
+				}
+				summaries[index] = line;
+				budget -= line.length();
+			}
+		}
+		StringBuilder deck = new StringBuilder();
+		for (String line : summaries) {
+			if (line != null) {
+				deck.append(line);
+			}
+		}
+		if (deck.length() > 0) {
+			context.append("Slides already in the deck:\n").append(deck);
+		}
+
+		if (context.length() == 0) {
+			return prompt;
+		}
+		return prompt + "\n\nContext:\n" + context;
+	}
+
+	/**
+	* Describes a slide in one line: background and each element's type, id,
+	* geometry and a few words of its text.
+	*/
+	public static String summarizeSlide(String slideJson) {
+		try {
+			JSONObject slide = new JSONObject(slideJson);
+			StringBuilder out = new StringBuilder("bg ").append(slide.optString("backgroundColor", "#FFFFFF"));
+			JSONArray elements = slide.optJSONArray("elements");
+			if (elements == null) {
+				return out.toString();
+			}
+			for (int i = 0; i < elements.length(); i++) {
+				JSONObject element = elements.optJSONObject(i);
+				if (element == null) {
+					continue;
+				}
+				out.append("; ").append(element.optString("type", "?"));
+				if (element.has("id")) {
+					out.append(" #").append(element.optString("id"));
+				}
+				String text = element.optString("text", element.optString("content", ""));
+				if (!text.isEmpty()) {
+					out.append(" \"").append(truncate(text, MAX_TEXT_CHARS)).append('"');
+				}
+				out.append(String.format(Locale.US, " @%d,%d %dx%d",
+				element.optInt("x"), element.optInt("y"), element.optInt("width"), element.optInt("height")));
+			}
+			return out.toString();
+		} catch (JSONException e) {
+			// Not a slide, e.g. a deck outline
+			return truncate(slideJson, MAX_TEXT_CHARS * 2);
+		}
+	}
+
+	private static String minify(String json) {
+		try {
+			return new JSONObject(json).toString();
+		} catch (JSONException e) {
+			return json.trim();
+		}
+	}
+
+	private static String truncate(String text, int max) {
+		String flat = text.replace('\n', ' ').trim();
+		return flat.length() <= max ? flat : flat.substring(0, max - 1) + "…";
+	}
+}
@@ -68,10 +68,14 @@ public class CustomizationManager {
 		MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(context, 
 		R.style.ThemeOverlay_Material3_MaterialAlertDialog_Centered);
 		
+		// Everything changed while the dialog is open becomes a single edit
+		slideRenderer.beginEdit(element);
+		
 		builder.setTitle("Customize Element")
 		.setView(createCustomizationView(element))
 		.setPositiveButton("Close", null)
 		.setNegativeButton("Copy JSON", (dialog, which) -> copyElementToClipboard(element))
+		.setOnDismissListener(dialog -> slideRenderer.endEdit())
 		.show();
 	}
 	
@@ -154,6 +158,7 @@ public class CustomizationManager {
 			public void afterTextChanged(Editable s) {
 				textElement.content = s.toString();
 				textElement.createTextLayout();
+				slideRenderer.recordEdit(textElement, "text", textElement.content);
 				slideRenderer.slideView.invalidate();
 			}
 		});
@@ -163,6 +168,7 @@ public class CustomizationManager {
 				try {
 					textElement.fontSize = Float.parseFloat(s.toString());
 					textElement.createTextLayout();
+					slideRenderer.recordEdit(textElement, "fontSize", textElement.fontSize);
 					slideRenderer.slideView.invalidate();
 				} catch (NumberFormatException ignored) {}
 			}
@@ -172,6 +178,7 @@ public class CustomizationManager {
 			textElement.color = color;
 			colorButton.setBackgroundTintList(ColorStateList.valueOf(color));
 			textElement.createTextLayout();
+			slideRenderer.recordEdit(textElement, "color", toHex(color));
 			slideRenderer.slideView.invalidate();
 		}));
 		
@@ -179,6 +186,8 @@ public class CustomizationManager {
 			textElement.bold = checkedIds.contains(R.id.radio_bold);
 			textElement.medium = checkedIds.contains(R.id.radio_medium);
 			textElement.createTextLayout();
+			slideRenderer.recordEdit(textElement, "bold", textElement.bold);
+			slideRenderer.recordEdit(textElement, "medium", textElement.medium);
 			slideRenderer.slideView.invalidate();
 		});
 		
@@ -191,6 +200,7 @@ public class CustomizationManager {
 				textElement.alignment = "left";
 			}
 			textElement.createTextLayout();
+			slideRenderer.recordEdit(textElement, "alignment", textElement.alignment);
 			slideRenderer.slideView.invalidate();
 		});
 	}
@@ -219,6 +229,7 @@ public class CustomizationManager {
 				String newUrl = s.toString();
 				if (!newUrl.equals(imageElement.url)) {
 					imageElement.url = newUrl;
+					slideRenderer.recordEdit(imageElement, "url", newUrl);
 					if (imageSelectionCallback != null) {
 						imageSelectionCallback.onImageSelectionRequested(imageElement);
 					}
@@ -230,6 +241,7 @@ public class CustomizationManager {
 		cornerRadiusSlider.addOnChangeListener((slider, value, fromUser) -> {
 			imageElement.cornerRadius = dpToPx(value);
 			imageElement.updatePath();
+			slideRenderer.recordEdit(imageElement, "cornerRadius", imageElement.cornerRadius);
 			slideRenderer.slideView.invalidate();
 		});
 
@@ -289,33 +301,39 @@ public class CustomizationManager {
 				case 5: shapeElement.shapeType = "hexagon"; break;
 			}
 			shapeElement.createShapePath();
+			slideRenderer.recordEdit(shapeElement, "shapeType", shapeElement.shapeType);
 			slideRenderer.slideView.invalidate();
 		});
 		
 		colorButton.setOnClickListener(v -> showColorPickerDialog(color -> {
 			shapeElement.color = color;
 			colorButton.setBackgroundTintList(ColorStateList.valueOf(color));
+			slideRenderer.recordEdit(shapeElement, "color", toHex(color));
 			slideRenderer.slideView.invalidate();
 		}));
 		
 		strokeColorButton.setOnClickListener(v -> showColorPickerDialog(color -> {
 			shapeElement.strokeColor = color;
 			strokeColorButton.setBackgroundTintList(ColorStateList.valueOf(color));
+			slideRenderer.recordEdit(shapeElement, "strokeColor", toHex(color));
 			slideRenderer.slideView.invalidate();
 		}));
 		
 		opacitySlider.addOnChangeListener((slider, value, fromUser) -> {
 			shapeElement.opacity = value / 100f;
+			slideRenderer.recordEdit(shapeElement, "opacity", shapeElement.opacity);
 			slideRenderer.slideView.invalidate();
 		});
 		
 		cornerRadiusSlider.addOnChangeListener((slider, value, fromUser) -> {
 			shapeElement.cornerRadius = dpToPx(value);
+			slideRenderer.recordEdit(shapeElement, "cornerRadius", shapeElement.cornerRadius);
 			slideRenderer.slideView.invalidate();
 		});
 		
 		strokeWidthSlider.addOnChangeListener((slider, value, fromUser) -> {
 			shapeElement.strokeWidth = dpToPx(value);
+			slideRenderer.recordEdit(shapeElement, "strokeWidth", shapeElement.strokeWidth);
 			slideRenderer.slideView.invalidate();
 		});
 
@@ -345,6 +363,7 @@ public class CustomizationManager {
 		// Set up listeners
 		headerColorButton.setOnClickListener(v -> showColorPickerDialog(color -> {
 			tableElement.headerColor = color;
+			slideRenderer.recordEdit(tableElement, "headerColor", toHex(color));
 			headerColorButton.setBackgroundTintList(ColorStateList.valueOf(color));
 			tableElement.initializePaints();
 			slideRenderer.slideView.invalidate();
@@ -352,6 +371,7 @@ public class CustomizationManager {
 		
 		cellColorButton.setOnClickListener(v -> showColorPickerDialog(color -> {
 			tableElement.cellColor = color;
+			slideRenderer.recordEdit(tableElement, "cellColor", toHex(color));
 			cellColorButton.setBackgroundTintList(ColorStateList.valueOf(color));
 			tableElement.initializePaints();
 			slideRenderer.slideView.invalidate();
@@ -359,6 +379,7 @@ public class CustomizationManager {
 		
 		borderColorButton.setOnClickListener(v -> showColorPickerDialog(color -> {
 			tableElement.borderColor = color;
+			slideRenderer.recordEdit(tableElement, "borderColor", toHex(color));
 			borderColorButton.setBackgroundTintList(ColorStateList.valueOf(color));
 			tableElement.initializePaints();
 			slideRenderer.slideView.invalidate();
@@ -366,6 +387,7 @@ public class CustomizationManager {
 		
 		borderWidthSlider.addOnChangeListener((slider, value, fromUser) -> {
 			tableElement.borderWidth = dpToPx(value);
+			slideRenderer.recordEdit(tableElement, "borderWidth", tableElement.borderWidth);
 			tableElement.initializePaints();
 			slideRenderer.slideView.invalidate();
 		});
@@ -393,6 +415,7 @@ public class CustomizationManager {
 			} else if (checkedIds.contains(R.id.chip_pie)) {
 				chartElement.setChartType("pie");
 			}
+			slideRenderer.recordEdit(chartElement, "chartType", chartElement.getChartType());
 			slideRenderer.slideView.invalidate();
 		});
 		
@@ -429,11 +452,13 @@ public class CustomizationManager {
 		// Set up listeners
 		iconSelector.setOnItemClickListener((parent, view, position, id) -> {
 			iconElement.setIconName(icons[position]);
+			slideRenderer.recordEdit(iconElement, "iconName", icons[position]);
 			slideRenderer.slideView.invalidate();
 		});
 
 		colorButton.setOnClickListener(v -> showColorPickerDialog(color -> {
 			iconElement.setColor(color);
+			slideRenderer.recordEdit(iconElement, "color", toHex(color));
 			colorButton.setBackgroundTintList(ColorStateList.valueOf(color));
 			slideRenderer.slideView.invalidate();
 		}));
@@ -451,6 +476,7 @@ public class CustomizationManager {
 
 		rotationSlider.addOnChangeListener((slider, value, fromUser) -> {
 			element.rotation = value;
+			slideRenderer.recordEdit(element, "rotation", value);
 			slideRenderer.slideView.invalidate();
 		});
 
@@ -591,6 +617,10 @@ public class CustomizationManager {
 		builder.show();
 	}
 	
+	private static String toHex(int color) {
+		return String.format("#%06X", (0xFFFFFF & color));
+	}
+	
 	private int dpToPx(float dp) {
 		return (int) (dp * context.getResources().getDisplayMetrics().density);
 	}
@@ -0,0 +1,313 @@
+package com.slides.ai;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* DeckGenerator builds a whole deck from one topic: a single outline request, then
+* one slide request per outline entry, run in parallel.
+*
+* At most maxConcurrency slide requests are in flight, and consecutive starts are
+* spaced by minStartIntervalMs to stay under the provider's rate limit. Every
+* worker gets its own provider instance from the factory, since a provider serves
+* one request at a time. Slides are reported in outline order however the requests
+* finish. Must be used from the main thread.
+*/
+public class DeckGenerator {
+	private static final String TAG = "DeckGenerator";
+	public static final int DEFAULT_MAX_CONCURRENCY = 4;
+	public static final int MAX_SLIDES = 15;
+
+	public interface ProviderFactory {
+		SlideGenerationProvider create();
+	}
+
+	public interface Listener {
+		void onOutline(List<String> titles);
+		void onSlideReady(int index, String slideJson);
+		void onSlideFailed(int index, String title, String error);
+		void onComplete(int generated, int failed);
+		void onError(String message);
+	}
+
+	private static class OutlineEntry {
+		final String title;
+		final String points;
+
+		OutlineEntry(String title, String points) {
+			this.title = title;
+			this.points = points;
+		}
+	}
+
+	private final ProviderFactory factory;
+	private final Handler mainHandler;
+	private final int maxConcurrency;
+	private final long minStartIntervalMs;
+
+	private final ArrayDeque<SlideGenerationProvider> idle = new ArrayDeque<>();
+	private final List<SlideGenerationProvider> busy = new ArrayList<>();
+	private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+	// Bumped on every generate() and cancel() so late callbacks of an old run are dropped
+	private int run = 0;
+	private boolean running = false;
+
+	private String topic;
+	private String model;
+	private float canvasWidth;
+	private float canvasHeight;
+	private Listener listener;
+	private List<OutlineEntry> outline;
+	private String[] results;
+	private String[] errors;
+	private int nextToDeliver;
+	private int failedCount;
+	private long lastStartAt;
+	private final Runnable pumpRunnable = this::pump;
+
+	public DeckGenerator(ProviderFactory factory, Handler mainHandler, int maxConcurrency, long minStartIntervalMs) {
+		this.factory = factory;
+		this.mainHandler = mainHandler;
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.minStartIntervalMs = Math.max(0, minStartIntervalMs);
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	* Starts generating a deck of up to slideCount slides, cancelling any deck still
+	* being generated.
+	*/
+	public void generate(String topic, int slideCount, String model, float canvasWidth, float canvasHeight, Listener listener) {
+		cancel();
+		final int current = run;
+		running = true;
+		this.topic = topic;
+		this.model = model;
+		this.canvasWidth = canvasWidth;
+		this.canvasHeight = canvasHeight;
+		this.listener = listener;
+
+		int count = Math.max(1, Math.min(MAX_SLIDES, slideCount));
+		SlideGenerationProvider provider = obtainProvider();
+		busy.add(provider);
+		provider.generateText(createOutlinePrompt(topic, count), model, new SlideGenerationProvider.Callback() {
+			@Override
+			public void onSuccess(String text) {
+				if (current != run) {
+					return;
+				}
+				release(provider);
+				List<OutlineEntry> entries = parseOutline(text, count);
+				if (entries.isEmpty()) {
+					fail("The model did not return a usable outline.");
+					return;
+				}
+				startSlides(entries);
+			}
+
+			@Override
+			public void onError(String message) {
+				if (current == run) {
+					release(provider);
+					fail(message);
+				}
+			}
+		});
+	}
+
+	/**
+	* Cancels the outline or slide requests in flight. No further listener calls are made.
+	*/
+	public void cancel() {
+		run++;
+		running = false;
+		mainHandler.removeCallbacks(pumpRunnable);
+		for (SlideGenerationProvider provider : busy) {
+			provider.cancel();
+			idle.push(provider);
+		}
+		busy.clear();
+		pending.clear();
+		listener = null;
+	}
+
+	private void startSlides(List<OutlineEntry> entries) {
+		outline = entries;
+		results = new String[entries.size()];
+		errors = new String[entries.size()];
+		nextToDeliver = 0;
+		failedCount = 0;
+		for (int i = 0; i < entries.size(); i++) {
+			pending.add(i);
+		}
+
+		List<String> titles = new ArrayList<>();
+		for (OutlineEntry entry : entries) {
+			titles.add(entry.title);
+		}
+		listener.onOutline(titles);
+		pump();
+	}
+
+	/**
+	* Starts queued slides while there is a free slot, deferring the next start when
+	* the minimum interval since the previous one has not passed yet.
+	*/
+	private void pump() {
+		if (!running) {
+			return;
+		}
+		while (busy.size() < maxConcurrency && !pending.isEmpty()) {
+			long wait = lastStartAt + minStartIntervalMs - SystemClock.uptimeMillis();
+			if (wait > 0) {
+				mainHandler.removeCallbacks(pumpRunnable);
+				mainHandler.postDelayed(pumpRunnable, wait);
+				return;
+			}
+			lastStartAt = SystemClock.uptimeMillis();
+			startSlide(pending.poll());
+		}
+	}
+
+	private void startSlide(int index) {
+		final int current = run;
+		SlideGenerationProvider provider = obtainProvider();
+		busy.add(provider);
+		provider.generateSlide(createSlidePrompt(index), model, canvasWidth, canvasHeight, null, new SlideGenerationProvider.Callback() {
+			@Override
+			public void onSuccess(String slideJson) {
+				if (current == run) {
+					release(provider);
+					results[index] = slideJson;
+					deliver();
+					pump();
+				}
+			}
+
+			@Override
+			public void onError(String message) {
+				if (current == run) {
+					Log.w(TAG, "Slide " + (index + 1) + " failed: " + message);
+					release(provider);
+					errors[index] = message != null ? message : "Unknown error";
+					deliver();
+					pump();
+				}
+			}
+		});
+	}
+
+	/**
+	* Reports every finished slide at the head of the outline, so the deck grows in order.
+	*/
+	private void deliver() {
+		while (nextToDeliver < outline.size() && (results[nextToDeliver] != null || errors[nextToDeliver] != null)) {
+			int index = nextToDeliver++;
+			if (results[index] != null) {
+				listener.onSlideReady(index, results[index]);
+			} else {
+				failedCount++;
+				listener.onSlideFailed(index, outline.get(index).title, errors[index]);
+			}
+			// Drop delivered slides; the renderer owns them now
+			results[index] = null;
+		}
+		if (nextToDeliver == outline.size()) {
+			Listener done = listener;
+			running = false;
+			listener = null;
+			done.onComplete(outline.size() - failedCount, failedCount);
+		}
+	}
+
+	private void fail(String message) {
+		Listener failed = listener;
+		running = false;
+		listener = null;
+		if (failed != null) {
+			failed.onError(message);
+		}
+	}
+
+	private SlideGenerationProvider obtainProvider() {
+		return idle.isEmpty() ? factory.create() : idle.pop();
+	}
+
+	private void release(SlideGenerationProvider provider) {
+		busy.remove(provider);
+		idle.push(provider);
+	}
+
+	private String createOutlinePrompt(String topic, int count) {
+		return "Plan a presentation of exactly " + count + " slides about: \"" + topic + "\".\n" +
+		"Return ONLY a JSON array with one object per slide, in presentation order, like:\n" +
+		"[{\"title\": \"Slide title\", \"points\": [\"key point\", \"key point\"]}]\n" +
+		"Start with a title slide and end with a summary slide. Use at most 4 short points per slide.";
+	}
+
+	private String createSlidePrompt(int index) {
+		OutlineEntry entry = outline.get(index);
+		StringBuilder deck = new StringBuilder();
+		for (int i = 0; i < outline.size(); i++) {
+			deck.append(i + 1).append(". ").append(outline.get(i).title).append('\n');
+		}
+		return "Slide " + (index + 1) + " of " + outline.size() + " of a presentation about \"" + topic + "\". " +
+		"Title: \"" + entry.title + "\". " +
+		(entry.points.isEmpty() ? "" : "Cover these points: " + entry.points + ". ") +
+		"Use a consistent, professional style that fits the rest of the deck, whose slides are:\n" + deck;
+	}
+
+	/**
+	* Reads the outline array out of the model answer, tolerating text or a markdown
+	* fence around it. Entries may be objects with title and points, or plain titles.
+	*/
+	private static List<OutlineEntry> parseOutline(String text, int maxEntries) {
+		List<OutlineEntry> entries = new ArrayList<>();
+		if (text == null) {
+			return entries;
+		}
+		try {
+			JSONArray array = (JSONArray) JsonExtractor.extractArray(text).value;
+			for (int i = 0; i < array.length() && entries.size() < maxEntries; i++) {
+				JSONObject item = array.optJSONObject(i);
+				if (item == null) {
+					String title = array.optString(i, "").trim();
+					if (!title.isEmpty()) {
+						entries.add(new OutlineEntry(title, ""));
+					}
+					continue;
+				}
+				String title = item.optString("title", "").trim();
+				if (title.isEmpty()) {
+					continue;
+				}
+				JSONArray points = item.optJSONArray("points");
+				StringBuilder joined = new StringBuilder();
+				if (points != null) {
+					for (int p = 0; p < points.length(); p++) {
+						if (joined.length() > 0) joined.append("; ");
+						joined.append(points.optString(p));
+					}
+				} else {
+					joined.append(item.optString("points", ""));
+				}
+				entries.add(new OutlineEntry(title, joined.toString()));
+			}
+		} catch (JSONException e) {
+			Log.w(TAG, "Unreadable outline: " + e.getMessage());
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,300 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+* EditJournal is an append-only write-ahead log of property edits of elements and
+* slides. Structural changes, such as added, removed or reordered elements, are
+* recorded as a new value of the slide's "elements" property.
+*
+* Edits are coalesced in memory by (slide, element, property) so a long drag
+* turns into a single record, then appended to disk by a background writer once
+* a time or size threshold is reached. The journal is folded back into the saved
+* slides by a {@link Compactor} and replayed over them after a crash.
+*/
+public class EditJournal {
+	private static final String TAG = "EditJournal";
+	private static final long FLUSH_DELAY_MS = 1000;
+	private static final int FLUSH_THRESHOLD = 32;
+	private static final long COMPACT_THRESHOLD_BYTES = 64 * 1024;
+	// Element id of entries that set a property of the slide itself
+	public static final String SLIDE = "";
+
+	private final File journalFile;
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+	private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+	private boolean flushScheduled = false;
+	private volatile boolean closed = false;
+	private Compactor compactor;
+
+	/**
+	* Folds journal entries into the persistent slide store.
+	* Called on the writer thread.
+	*/
+	public interface Compactor {
+		/**
+		* @return the entries whose slide is not in the store yet, which stay in the
+		* journal, or null if the store could not be written
+		*/
+		List<Entry> compact(List<Entry> entries);
+	}
+
+	public static class Entry {
+		public final String slideId;
+		public final String elementId;
+		public final String property;
+		public final Object value;
+		public final long timestamp;
+
+		public Entry(String slideId, String elementId, String property, Object value, long timestamp) {
+			this.slideId = slideId;
+			this.elementId = elementId;
+			this.property = property;
+			this.value = value;
+			this.timestamp = timestamp;
+		}
+
+		JSONObject toJson() throws JSONException {
+			JSONObject json = new JSONObject();
+			json.put("s", slideId);
+			json.put("e", elementId);
+			json.put("p", property);
+			json.put("v", value);
+			json.put("t", timestamp);
+			return json;
+		}
+
+		static Entry fromJson(JSONObject json) throws JSONException {
+			return new Entry(json.getString("s"), json.getString("e"), json.getString("p"),
+			json.get("v"), json.optLong("t"));
+		}
+	}
+
+	public EditJournal(File directory, String stackId) {
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		this.journalFile = new File(directory, stackId + ".journal");
+	}
+
+	public void setCompactor(Compactor compactor) {
+		this.compactor = compactor;
+	}
+
+	/**
+	* Records an edit. Cheap enough to call on every touch event: it only replaces
+	* the pending value for the same property and possibly schedules a flush.
+	*/
+	public void record(String slideId, String elementId, String property, Object value) {
+		if (closed || slideId == null || elementId == null) {
+			return;
+		}
+		String key = slideId + '\u0000' + elementId + '\u0000' + property;
+		boolean flushNow;
+		synchronized (pending) {
+			pending.remove(key);
+			pending.put(key, new Entry(slideId, elementId, property, value, System.currentTimeMillis()));
+			flushNow = pending.size() >= FLUSH_THRESHOLD;
+			if (!flushNow && flushScheduled) {
+				return;
+			}
+			flushScheduled = true;
+		}
+		if (flushNow) {
+			writer.execute(this::flushPending);
+		} else {
+			writer.schedule(this::flushPending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	* Asks the writer to persist pending edits right away, e.g. when the editor is paused.
+	*/
+	public void flush() {
+		if (!closed) {
+			writer.execute(this::flushPending);
+		}
+	}
+
+	/**
+	* Flushes pending edits and folds the whole journal into the slide store.
+	*/
+	public void compact() {
+		if (!closed) {
+			writer.execute(() -> {
+				flushPending();
+				compactNow();
+			});
+		}
+	}
+
+	/**
+	* Reads every record currently on disk. Used for crash recovery before the
+	* editor shows the saved slides. A torn trailing line is ignored.
+	*/
+	public List<Entry> readEntries() {
+		List<Entry> entries = new ArrayList<>();
+		if (!journalFile.exists()) {
+			return entries;
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+		new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) continue;
+				try {
+					entries.add(Entry.fromJson(new JSONObject(line)));
+				} catch (JSONException e) {
+					Log.w(TAG, "Skipping unreadable journal record");
+				}
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Error reading journal", e);
+		}
+		return entries;
+	}
+
+	/**
+	* Applies journal entries to a list of slide JSON objects in place. Entries of an
+	* element the slide no longer has are dropped.
+	*
+	* @return the entries whose slide is not in the list
+	*/
+	public static List<Entry> apply(List<JSONObject> slides, List<Entry> entries) {
+		List<Entry> unapplied = new ArrayList<>();
+		for (Entry entry : entries) {
+			JSONObject slide = findById(slides, entry.slideId);
+			if (slide == null) {
+				unapplied.add(entry);
+				continue;
+			}
+			if (SLIDE.equals(entry.elementId)) {
+				try {
+					// A copy, so later entries do not change the entry's own value
+					slide.put(entry.property, entry.value instanceof JSONArray
+					? new JSONArray(entry.value.toString()) : entry.value);
+				} catch (JSONException e) {
+					Log.w(TAG, "Could not apply " + entry.property + " to slide " + entry.slideId);
+				}
+				continue;
+			}
+			JSONArray elements = slide.optJSONArray("elements");
+			for (int j = 0; elements != null && j < elements.length(); j++) {
+				JSONObject element = elements.optJSONObject(j);
+				if (element != null && entry.elementId.equals(element.optString("id"))) {
+					try {
+						element.put(entry.property, entry.value);
+					} catch (JSONException e) {
+						Log.w(TAG, "Could not apply " + entry.property + " to " + entry.elementId);
+					}
+					break;
+				}
+			}
+		}
+		return unapplied;
+	}
+
+	private static JSONObject findById(List<JSONObject> slides, String slideId) {
+		for (JSONObject slide : slides) {
+			if (slideId.equals(slide.optString("id"))) {
+				return slide;
+			}
+		}
+		return null;
+	}
+
+	public void close() {
+		closed = true;
+		writer.execute(this::flushPending);
+		writer.shutdown();
+	}
+
+	private void flushPending() {
+		List<Entry> batch;
+		synchronized (pending) {
+			flushScheduled = false;
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = new ArrayList<>(pending.values());
+			pending.clear();
+		}
+
+		try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+			Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			for (Entry entry : batch) {
+				w.write(entry.toJson().toString());
+				w.write('\n');
+			}
+			w.flush();
+			out.getFD().sync();
+		} catch (IOException | JSONException e) {
+			Log.e(TAG, "Error writing journal", e);
+			return;
+		}
+
+		if (journalFile.length() > COMPACT_THRESHOLD_BYTES) {
+			compactNow();
+		}
+	}
+
+	private void compactNow() {
+		if (compactor == null || !journalFile.exists()) {
+			return;
+		}
+		List<Entry> entries = readEntries();
+		List<Entry> kept = entries.isEmpty() ? entries : compactor.compact(entries);
+		if (kept == null) {
+			return;
+		}
+		if (kept.isEmpty()) {
+			if (!journalFile.delete()) {
+				Log.w(TAG, "Could not truncate journal after compaction");
+			}
+			return;
+		}
+		// Keep only the latest record per property of the entries still waiting for their slide
+		LinkedHashMap<String, Entry> latest = new LinkedHashMap<>();
+		for (Entry entry : kept) {
+			String key = entry.slideId + '\u0000' + entry.elementId + '\u0000' + entry.property;
+			latest.remove(key);
+			latest.put(key, entry);
+		}
+		File rewritten = new File(journalFile.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(rewritten)) {
+			Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			for (Entry entry : latest.values()) {
+				w.write(entry.toJson().toString());
+				w.write('\n');
+			}
+			w.flush();
+			out.getFD().sync();
+		} catch (IOException | JSONException e) {
+			Log.e(TAG, "Error rewriting journal", e);
+			return;
+		}
+		if (!rewritten.renameTo(journalFile)) {
+			Log.w(TAG, "Could not replace journal after compaction");
+		}
+	}
+}
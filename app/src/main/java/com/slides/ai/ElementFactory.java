@@ -12,12 +12,15 @@ import java.util.ArrayList;
 import java.util.List;
 import android.graphics.Bitmap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
 * ElementFactory handles the creation of slide elements from JSON data
 */
 public class ElementFactory {
+	private static final AtomicInteger nextId = new AtomicInteger();
 	
 	/**
 	* Creates a list of slide elements from JSON data
@@ -40,98 +43,9 @@ public class ElementFactory {
 			Log.d("ElementFactory", "Found " + jsonElements.length() + " elements in JSON.");
 
 			for (int i = 0; i < jsonElements.length(); i++) {
-				JSONObject element = jsonElements.getJSONObject(i);
-				String type = element.optString("type", "unknown");
-
-				Log.d("ElementFactory", "Processing element " + i + ": " + element.toString());
-				Log.d("ElementFactory", "Creating element type: " + type + " at position (" +
-					element.optInt("x", 0) + "," + element.optInt("y", 0) + ")");
-
-				try {
-					SlideElement newElement = null;
-					switch (type.toLowerCase()) {
-						case "text":
-							newElement = new TextElement(element, context);
-							Log.i("ElementFactory", "Successfully created TextElement: " + element.optString("content", ""));
-							break;
-						case "image":
-							newElement = new ImageElement(element, context);
-							Log.i("ElementFactory", "Successfully created ImageElement");
-							break;
-						case "shape":
-							if (element.has("shape")) {
-								element.put("shapeType", element.getString("shape"));
-							}
-							newElement = new ShapeElement(element, context);
-							Log.i("ElementFactory", "Successfully created ShapeElement: " + element.optString("shapeType", ""));
-							break;
-						// Handle Qwen format - convert rectangle to shape
-						case "rectangle":
-							element.put("type", "shape");
-							element.put("shapeType", "rectangle");
-							if (element.optInt("height", 0) < 2) {
-								element.put("height", 2);
-							}
-							newElement = new ShapeElement(element, context);
-							Log.i("ElementFactory", "Successfully created ShapeElement from rectangle");
-							break;
-						// Handle Qwen format - convert oval to shape
-						case "oval":
-							element.put("type", "shape");
-							element.put("shapeType", "oval");
-							if (element.optInt("width", 0) < 2) {
-								element.put("width", 2);
-							}
-							if (element.optInt("height", 0) < 2) {
-								element.put("height", 2);
-							}
-							newElement = new ShapeElement(element, context);
-							Log.i("ElementFactory", "Successfully created ShapeElement from oval");
-							break;
-						case "circle":
-							element.put("type", "shape");
-							element.put("shapeType", "oval");
-							newElement = new ShapeElement(element, context);
-							Log.i("ElementFactory", "Successfully created ShapeElement from circle");
-							break;
-						case "line":
-							element.put("type", "shape");
-							element.put("shapeType", "line");
-							newElement = new ShapeElement(element, context);
-							Log.i("ElementFactory", "Successfully created ShapeElement from line");
-							break;
-						case "triangle":
-							element.put("type", "shape");
-							element.put("shapeType", "triangle");
-							newElement = new ShapeElement(element, context);
-							Log.i("ElementFactory", "Successfully created ShapeElement from triangle");
-							break;
-						case "table":
-							newElement = new TableElement(element, context);
-							Log.i("ElementFactory", "Successfully created TableElement");
-							break;
-						case "chart":
-							newElement = new ChartElement(element, context);
-							Log.i("ElementFactory", "Successfully created ChartElement");
-							break;
-						case "icon":
-							newElement = new IconElement(element, context);
-							Log.i("ElementFactory", "Successfully created IconElement");
-							break;
-						default:
-							Log.w("ElementFactory", "Unknown element type: " + type + ". Creating a fallback error element.");
-							newElement = createErrorTextElement(context, "Unknown type: " + type);
-							break;
-					}
-					if (newElement != null) {
-						elements.add(newElement);
-					}
-				} catch (Exception e) {
-					Log.e("ElementFactory", "Error creating element of type " + type, e);
-					SlideElement errorElement = createErrorTextElement(context, "Error parsing " + type);
-					if (errorElement != null) {
-						elements.add(errorElement);
-					}
+				SlideElement newElement = createElementFromJSON(jsonElements.getJSONObject(i), i, context);
+				if (newElement != null) {
+					elements.add(newElement);
 				}
 			}
 		} catch (Exception e) {
@@ -142,6 +56,142 @@ public class ElementFactory {
 		return elements;
 	}
 
+	/**
+	* Creates one element from its JSON, normalizing the type aliases models emit.
+	* Falls back to an error element when the JSON cannot be used.
+	*
+	* @param element The JSON object of the element; gets a new id if it has none
+	* @param index Position of the element in the slide's elements array
+	* @param context The application context
+	* @return The SlideElement, or null if not even an error element could be created
+	*/
+	public static SlideElement createElementFromJSON(JSONObject element, int index, Context context) throws JSONException {
+		String type = element.optString("type", "unknown");
+
+		Log.d("ElementFactory", "Processing element " + index + ": " + element.toString());
+		Log.d("ElementFactory", "Creating element type: " + type + " at position (" +
+			element.optInt("x", 0) + "," + element.optInt("y", 0) + ")");
+
+		try {
+			SlideElement newElement = null;
+			switch (type.toLowerCase()) {
+				case "text":
+					newElement = new TextElement(element, context);
+					Log.i("ElementFactory", "Successfully created TextElement: " + element.optString("content", ""));
+					break;
+				case "image":
+					newElement = new ImageElement(element, context);
+					Log.i("ElementFactory", "Successfully created ImageElement");
+					break;
+				case "shape":
+					if (element.has("shape")) {
+						element.put("shapeType", element.getString("shape"));
+					}
+					newElement = new ShapeElement(element, context);
+					Log.i("ElementFactory", "Successfully created ShapeElement: " + element.optString("shapeType", ""));
+					break;
+				// Handle Qwen format - convert rectangle to shape
+				case "rectangle":
+					element.put("type", "shape");
+					element.put("shapeType", "rectangle");
+					if (element.optInt("height", 0) < 2) {
+						element.put("height", 2);
+					}
+					newElement = new ShapeElement(element, context);
+					Log.i("ElementFactory", "Successfully created ShapeElement from rectangle");
+					break;
+				// Handle Qwen format - convert oval to shape
+				case "oval":
+					element.put("type", "shape");
+					element.put("shapeType", "oval");
+					if (element.optInt("width", 0) < 2) {
+						element.put("width", 2);
+					}
+					if (element.optInt("height", 0) < 2) {
+						element.put("height", 2);
+					}
+					newElement = new ShapeElement(element, context);
+					Log.i("ElementFactory", "Successfully created ShapeElement from oval");
+					break;
+				case "circle":
+					element.put("type", "shape");
+					element.put("shapeType", "oval");
+					newElement = new ShapeElement(element, context);
+					Log.i("ElementFactory", "Successfully created ShapeElement from circle");
+					break;
+				case "line":
+					element.put("type", "shape");
+					element.put("shapeType", "line");
+					newElement = new ShapeElement(element, context);
+					Log.i("ElementFactory", "Successfully created ShapeElement from line");
+					break;
+				case "triangle":
+					element.put("type", "shape");
+					element.put("shapeType", "triangle");
+					newElement = new ShapeElement(element, context);
+					Log.i("ElementFactory", "Successfully created ShapeElement from triangle");
+					break;
+				case "table":
+					newElement = new TableElement(element, context);
+					Log.i("ElementFactory", "Successfully created TableElement");
+					break;
+				case "chart":
+					newElement = new ChartElement(element, context);
+					Log.i("ElementFactory", "Successfully created ChartElement");
+					break;
+				case "icon":
+					newElement = new IconElement(element, context);
+					Log.i("ElementFactory", "Successfully created IconElement");
+					break;
+				default:
+					Log.w("ElementFactory", "Unknown element type: " + type + ". Creating a fallback error element.");
+					newElement = createErrorTextElement(context, "Unknown type: " + type);
+					break;
+			}
+			return newElement;
+		} catch (Exception e) {
+			Log.e("ElementFactory", "Error creating element of type " + type, e);
+			return createErrorTextElement(context, "Error parsing " + type);
+		}
+	}
+
+	/**
+	* Returns a new id for a slide or element, unique across the app's lifetime and
+	* unlike the short ids models tend to emit.
+	*/
+	public static String newId(String prefix) {
+		return prefix + "_" + Long.toString(System.currentTimeMillis(), 36) + "_" + nextId.incrementAndGet();
+	}
+	
+	/**
+	* Gives a slide, and each of its elements, an id if it has none or shares one with
+	* an earlier element. Ids are assigned once and travel with the JSON, so journal
+	* and undo records keep their targets when slides or elements move.
+	*
+	* @return true if any id was assigned
+	*/
+	public static boolean assignIds(JSONObject slideData) throws JSONException {
+		boolean changed = false;
+		if (slideData.optString("id", "").isEmpty()) {
+			slideData.put("id", newId("slide"));
+			changed = true;
+		}
+		JSONArray elements = slideData.optJSONArray("elements");
+		HashSet<String> seen = new HashSet<>();
+		for (int i = 0; elements != null && i < elements.length(); i++) {
+			JSONObject element = elements.optJSONObject(i);
+			if (element == null) continue;
+			String id = element.optString("id", "");
+			if (id.isEmpty() || !seen.add(id)) {
+				id = newId("el");
+				element.put("id", id);
+				seen.add(id);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
 	private static TextElement createErrorTextElement(Context context, String errorMessage) {
 		try {
 			JSONObject json = new JSONObject();
@@ -0,0 +1,29 @@
+package com.slides.ai;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+* ExtractedSlide is slide JSON read from a model answer, together with what had to
+* be fixed to make it renderable. Produced by {@link NetworkManager#extractSlideJson}.
+*/
+public class ExtractedSlide {
+	public final String json;
+	// True if the answer was cut off and the JSON had to be closed
+	public final boolean repaired;
+	// What SlideSchema fixed or dropped, empty if the slide matched it
+	public final List<String> problems;
+
+	ExtractedSlide(String json, boolean repaired, List<String> problems) {
+		this.json = json;
+		this.repaired = repaired;
+		this.problems = Collections.unmodifiableList(problems);
+	}
+
+	/**
+	* @return true if the model answered a complete slide that matched the schema as is
+	*/
+	public boolean isValid() {
+		return !repaired && problems.isEmpty();
+	}
+}
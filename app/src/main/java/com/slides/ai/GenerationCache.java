@@ -0,0 +1,164 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* GenerationCache is an on-disk LRU store of extracted slide JSON, keyed by a
+* canonical hash of everything that determines a generation.
+*
+* Entries are files named by their key; reads refresh the file's timestamp, and
+* the least recently used files are evicted once the store passes its size cap.
+* Not thread-confined, but meant to be called from a worker thread.
+*/
+public class GenerationCache {
+	private static final String TAG = "GenerationCache";
+	private static final long MAX_BYTES = 2 * 1024 * 1024;
+
+	private final File directory;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger evictions = new AtomicInteger();
+
+	public GenerationCache(File directory) {
+		this.directory = directory;
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+	}
+
+	/**
+	* Builds the cache key of a generation request. Free text is length-prefixed so
+	* different splits of the same characters cannot collide.
+	*/
+	public static String keyFor(String provider, String model, String prompt, float canvasWidth, float canvasHeight, int templateVersion) {
+		StringBuilder canonical = new StringBuilder();
+		for (String part : new String[]{provider, model, prompt.trim()}) {
+			canonical.append(part.length()).append(':').append(part).append('|');
+		}
+		canonical.append(Math.round(canvasWidth)).append('x').append(Math.round(canvasHeight))
+		.append("|v").append(templateVersion);
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	* @return the cached slide JSON, or null on a miss
+	*/
+	public String get(String key) {
+		File file = new File(directory, key + ".json");
+		if (!file.exists()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] data = new byte[(int) file.length()];
+			int read = 0;
+			while (read < data.length) {
+				int n = in.read(data, read, data.length - read);
+				if (n < 0) break;
+				read += n;
+			}
+			file.setLastModified(System.currentTimeMillis());
+			hits.incrementAndGet();
+			return new String(data, 0, read, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			Log.w(TAG, "Unreadable cache entry " + key, e);
+			file.delete();
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	public void put(String key, String slideJson) {
+		File file = new File(directory, key + ".json");
+		File temp = new File(directory, key + ".tmp");
+		try (OutputStream out = new FileOutputStream(temp)) {
+			out.write(slideJson.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			Log.w(TAG, "Could not write cache entry " + key, e);
+			temp.delete();
+			return;
+		}
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			return;
+		}
+		trim();
+	}
+
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	public int getEvictions() {
+		return evictions.get();
+	}
+
+	public float getHitRate() {
+		int total = hits.get() + misses.get();
+		return total == 0 ? 0f : hits.get() / (float) total;
+	}
+
+	public String getStats() {
+		return String.format(java.util.Locale.US, "hits=%d misses=%d hitRate=%.2f evictions=%d",
+		hits.get(), misses.get(), getHitRate(), evictions.get());
+	}
+
+	private synchronized void trim() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+		if (files == null) {
+			return;
+		}
+		long total = 0;
+		for (File file : files) {
+			total += file.length();
+		}
+		if (total <= MAX_BYTES) {
+			return;
+		}
+		Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+		for (File file : files) {
+			if (total <= MAX_BYTES) {
+				break;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+				evictions.incrementAndGet();
+			}
+		}
+	}
+}
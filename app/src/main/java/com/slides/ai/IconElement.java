@@ -36,6 +36,11 @@ public class IconElement extends SlideElement {
 		iconPaint.setTextAlign(Paint.Align.CENTER);
 	}
 	
+	@Override
+	protected void detachDrawingState() {
+		iconPaint = new Paint(iconPaint);
+	}
+	
 	@Override
 	public void draw(Canvas canvas) {
 		canvas.save();
@@ -56,10 +61,12 @@ public class IconElement extends SlideElement {
 	public JSONObject toJson() throws JSONException {
 		JSONObject json = new JSONObject();
 		json.put("type", "icon");
+		json.put("id", id);
 		json.put("x", x);
 		json.put("y", y);
 		json.put("width", width);
 		json.put("height", height);
+		json.put("rotation", rotation);
 		json.put("iconName", iconName);
 		json.put("color", String.format("#%06X", (0xFFFFFF & iconColor)));
 		return json;
@@ -76,6 +83,20 @@ public class IconElement extends SlideElement {
 		iconPaint.setColor(color);
 	}
 	
+	@Override
+	public boolean setProperty(String property, Object value) {
+		switch (property) {
+			case "iconName": setIconName(String.valueOf(value)); return true;
+			case "color": setColor(toColor(value)); return true;
+			case "width":
+			case "height":
+			if (!super.setProperty(property, value)) return false;
+			iconPaint.setTextSize(Math.min(width, height));
+			return true;
+			default: return super.setProperty(property, value);
+		}
+	}
+	
 	private String getIconChar(String name) {
 		// Map icon names to Unicode characters
 		switch (name.toLowerCase()) {
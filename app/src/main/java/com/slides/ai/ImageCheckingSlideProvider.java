@@ -0,0 +1,72 @@
+package com.slides.ai;
+
+import android.os.Handler;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+* ImageCheckingSlideProvider runs the slides of another provider through an
+* {@link ImageUrlValidator} before reporting them, so dead image URLs are replaced
+* by a placeholder instead of stalling on a timeout when the slide is drawn.
+*/
+public class ImageCheckingSlideProvider implements SlideGenerationProvider {
+	private final SlideGenerationProvider delegate;
+	private final ImageUrlValidator validator;
+	private final Handler mainHandler;
+	private final ExecutorService executorService;
+
+	// Bumped by cancel() so slides still being checked are dropped. New requests do
+	// not bump it: the cache below merges identical requests, and each of them must
+	// still get its answer.
+	private int cancelled = 0;
+
+	public ImageCheckingSlideProvider(SlideGenerationProvider delegate, ImageUrlValidator validator,
+	Handler mainHandler, ExecutorService executorService) {
+		this.delegate = delegate;
+		this.validator = validator;
+		this.mainHandler = mainHandler;
+		this.executorService = executorService;
+	}
+
+	@Override
+	public boolean supportsModel(String model) {
+		return delegate.supportsModel(model);
+	}
+
+	@Override
+	public void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, Callback callback) {
+		final int current = cancelled;
+		delegate.generateSlide(prompt, model, canvasWidth, canvasHeight, streamListener, new Callback() {
+			@Override
+			public void onSuccess(String slideJson) {
+				executorService.execute(() -> {
+					String checked = validator.validate(slideJson);
+					mainHandler.post(() -> {
+						if (current == cancelled) {
+							callback.onSuccess(checked);
+						}
+					});
+				});
+			}
+
+			@Override
+			public void onError(String message) {
+				if (current == cancelled) {
+					callback.onError(message);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void generateText(String prompt, String model, Callback callback) {
+		delegate.generateText(prompt, model, callback);
+	}
+
+	@Override
+	public void cancel() {
+		cancelled++;
+		delegate.cancel();
+	}
+}
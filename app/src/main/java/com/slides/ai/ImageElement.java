@@ -67,10 +67,12 @@ public class ImageElement extends SlideElement {
 	public JSONObject toJson() throws JSONException {
 		JSONObject json = new JSONObject();
 		json.put("type", "image");
+		json.put("id", id);
 		json.put("x", x);
 		json.put("y", y);
 		json.put("width", width);
 		json.put("height", height);
+		json.put("rotation", rotation);
 		json.put("url", url);
 		json.put("cornerRadius", cornerRadius);
 		if (customImageKey != null) {
@@ -79,6 +81,19 @@ public class ImageElement extends SlideElement {
 		return json;
 	}
 	
+	@Override
+	public boolean setProperty(String property, Object value) {
+		switch (property) {
+			case "url": url = String.valueOf(value); break;
+			case "cornerRadius": cornerRadius = toFloat(value); break;
+			default:
+			if (!super.setProperty(property, value)) return false;
+			break;
+		}
+		updatePath();
+		return true;
+	}
+	
 	@Override
 	public void draw(Canvas canvas) {
 		Log.d("ImageElement", "Drawing image element: " + url + " at (" + x + ", " + y + ") with width " + width + " and height " + height);
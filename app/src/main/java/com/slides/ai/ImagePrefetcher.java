@@ -0,0 +1,97 @@
+package com.slides.ai;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+* ImagePrefetcher downloads and decodes slide images into Glide's caches while the
+* slide is still being generated, so {@link ImageElement} finds them ready when it
+* draws.
+*
+* Images load at their original size, as ImageElement requests them, so the decoded
+* bitmap is served from the memory cache. At most a few downloads run at once and
+* the rest wait in order. {@link #prefetch} may be called from any thread.
+*/
+public class ImagePrefetcher {
+	private static final String TAG = "ImagePrefetcher";
+	private static final int MAX_IN_FLIGHT = 3;
+	// URLs already requested, so repeats across a stream and its retries are skipped
+	private static final int MAX_REMEMBERED = 128;
+
+	private final Context context;
+	private final Handler mainHandler;
+
+	// Main thread only
+	private final ArrayDeque<String> queue = new ArrayDeque<>();
+	private final Set<String> requested = new LinkedHashSet<>();
+	private int inFlight = 0;
+
+	public ImagePrefetcher(Context context, Handler mainHandler) {
+		this.context = context.getApplicationContext();
+		this.mainHandler = mainHandler;
+	}
+
+	public void prefetch(String url) {
+		mainHandler.post(() -> {
+			if (!requested.add(url)) {
+				return;
+			}
+			if (requested.size() > MAX_REMEMBERED) {
+				requested.remove(requested.iterator().next());
+			}
+			queue.add(url);
+			startNext();
+		});
+	}
+
+	/**
+	* Drops the images still waiting. Downloads already running finish into the cache.
+	*/
+	public void cancel() {
+		mainHandler.post(queue::clear);
+	}
+
+	private void startNext() {
+		while (inFlight < MAX_IN_FLIGHT && !queue.isEmpty()) {
+			String url = queue.poll();
+			inFlight++;
+			Glide.with(context)
+			.asBitmap()
+			.load(url)
+			.listener(new RequestListener<Bitmap>() {
+				@Override
+				public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Bitmap> target, boolean isFirstResource) {
+					Log.w(TAG, "Could not prefetch " + url + ": " + (e != null ? e.getMessage() : "unknown error"));
+					finished();
+					return false;
+				}
+
+				@Override
+				public boolean onResourceReady(Bitmap resource, Object model, Target<Bitmap> target, DataSource dataSource, boolean isFirstResource) {
+					finished();
+					return false;
+				}
+			})
+			.preload();
+		}
+	}
+
+	private void finished() {
+		inFlight--;
+		startNext();
+	}
+}
@@ -0,0 +1,99 @@
+package com.slides.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* ImageUrlSniffer picks "url" values out of slide JSON while it streams in, as soon
+* as each string is closed, long before the element around it is complete.
+*
+* It does not parse the JSON: it only looks for the "url" key followed by a string,
+* keeping just the unfinished tail of the text between chunks. Not thread-safe; one
+* instance per stream.
+*/
+public class ImageUrlSniffer {
+	private static final String KEY = "\"url\"";
+
+	private final StringBuilder pending = new StringBuilder();
+
+	/**
+	* @return the http(s) URLs completed by this chunk, in order; often empty
+	*/
+	public List<String> feed(CharSequence chunk) {
+		List<String> urls = new ArrayList<>(0);
+		if (chunk == null) {
+			return urls;
+		}
+		pending.append(chunk);
+		int from = 0;
+		while (true) {
+			int key = pending.indexOf(KEY, from);
+			if (key < 0) {
+				// Keep what could be the start of a key split across chunks
+				from = Math.max(from, pending.length() - (KEY.length() - 1));
+				break;
+			}
+			int end = readValue(key + KEY.length(), urls);
+			if (end < 0) {
+				// The value is not complete yet
+				from = key;
+				break;
+			}
+			from = end;
+		}
+		pending.delete(0, from);
+		return urls;
+	}
+
+	/**
+	* Reads the value after a "url" key, adding it to urls if it is an http(s) URL.
+	*
+	* @return the index after the value, or -1 if the text ends before it does
+	*/
+	private int readValue(int i, List<String> urls) {
+		i = skipWhitespace(i);
+		if (i >= pending.length()) {
+			return -1;
+		}
+		if (pending.charAt(i) != ':') {
+			// "url" was a value, not a key
+			return i;
+		}
+		i = skipWhitespace(i + 1);
+		if (i >= pending.length()) {
+			return -1;
+		}
+		if (pending.charAt(i) != '"') {
+			return i;
+		}
+		StringBuilder url = new StringBuilder();
+		for (i++; i < pending.length(); i++) {
+			char c = pending.charAt(i);
+			if (c == '"') {
+				String value = url.toString().trim();
+				if (value.startsWith("http://") || value.startsWith("https://")) {
+					urls.add(value);
+				}
+				return i + 1;
+			}
+			if (c == '\\') {
+				if (i + 1 >= pending.length()) {
+					return -1;
+				}
+				char escaped = pending.charAt(++i);
+				// Other escapes do not occur in usable URLs; keeping the character is enough
+				url.append(escaped == 'n' || escaped == 't' ? ' ' : escaped);
+			} else {
+				url.append(c);
+			}
+		}
+		return -1;
+	}
+
+	private int skipWhitespace(int i) {
+		while (i < pending.length() && Character.isWhitespace(pending.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,350 @@
+package com.slides.ai;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+* ImageUrlValidator checks the image URLs of a generated slide before it is shown
+* and swaps the dead ones, which models often make up, for a local placeholder.
+*
+* All URLs of a slide are checked at once with a HEAD request, or a one-byte ranged
+* GET where HEAD is refused, under tight timeouts. A URL passes if it answers 2xx
+* with an image (or unspecified) content type. Only a definite failure replaces it:
+* another answer, or a host that cannot be resolved or connected to while other
+* hosts do answer. Offline or behind a captive portal every host fails that way,
+* so host failures only count once some host answered recently. A URL that times
+* out or whose connection drops is kept, since that may just be a slow network.
+* Results are remembered for a while, and bad hosts are skipped without a request.
+* A replaced URL is kept in the element's "originalUrl", and checked again the
+* next time the slide is validated.
+*/
+public class ImageUrlValidator {
+	private static final String TAG = "ImageUrlValidator";
+	private static final int CONNECT_TIMEOUT_MS = 1500;
+	private static final int READ_TIMEOUT_MS = 1500;
+	// The slide waits at most this long for all checks together
+	private static final int DEADLINE_MS = 2500;
+	private static final long REMEMBER_MS = 10 * 60 * 1000;
+	private static final int MAX_REMEMBERED = 256;
+	// A host failure is trusted if any host answered within this long
+	private static final long NETWORK_PROOF_MS = 60 * 1000;
+	static final String ORIGINAL_URL = "originalUrl";
+
+	private final OkHttpClient client;
+	private final String placeholderUrl;
+	// Null when the system cannot be asked, e.g. in tests
+	private final ConnectivityManager connectivity;
+
+	// Uptime until which a URL's result, or a host's failure, is trusted
+	private final Map<String, Boolean> urlResults = new LinkedHashMap<>();
+	private final Map<String, Long> urlExpiry = new LinkedHashMap<>();
+	private final Map<String, Long> badHosts = new LinkedHashMap<>();
+
+	private int checked = 0;
+	private int replaced = 0;
+	// Uptime of the last HTTP answer from any host, proof that the network works
+	private long lastAnswerAt = -NETWORK_PROOF_MS;
+
+	public ImageUrlValidator(Context context) {
+		this(SharedHttpClient.getInstance(), "android.resource://" + context.getPackageName() + "/drawable/ic_image_placeholder",
+		(ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE));
+	}
+
+	ImageUrlValidator(OkHttpClient client, String placeholderUrl) {
+		this(client, placeholderUrl, null);
+	}
+
+	/**
+	* @param client shares its connection pool; the tight timeouts are applied on top
+	*/
+	private ImageUrlValidator(OkHttpClient client, String placeholderUrl, ConnectivityManager connectivity) {
+		this.connectivity = connectivity;
+		this.client = client.newBuilder()
+		.connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+		.readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+		.callTimeout(DEADLINE_MS, TimeUnit.MILLISECONDS)
+		.build();
+		this.placeholderUrl = placeholderUrl;
+	}
+
+	public String getPlaceholderUrl() {
+		return placeholderUrl;
+	}
+
+	/**
+	* Replaces the image URLs of a slide that are known not to lead to an image.
+	* Blocks for at most a few seconds; call from a worker thread.
+	*
+	* @return the slide JSON with dead URLs replaced, or slideJson itself if all are fine
+	*/
+	public String validate(String slideJson) {
+		JSONObject slide;
+		try {
+			slide = new JSONObject(slideJson);
+		} catch (JSONException e) {
+			return slideJson;
+		}
+		JSONArray elements = slide.optJSONArray("elements");
+		if (elements == null) {
+			return slideJson;
+		}
+
+		List<JSONObject> images = new ArrayList<>();
+		List<String> unknown = new ArrayList<>();
+		for (int i = 0; i < elements.length(); i++) {
+			JSONObject element = elements.optJSONObject(i);
+			if (element == null || !"image".equals(element.optString("type"))) {
+				continue;
+			}
+			String url = urlOf(element);
+			if (HttpUrl.parse(url) == null) {
+				continue;
+			}
+			images.add(element);
+			if (known(url) == null && !unknown.contains(url)) {
+				unknown.add(url);
+			}
+		}
+		if (images.isEmpty()) {
+			return slideJson;
+		}
+		if (!hasValidatedNetwork()) {
+			// Offline or behind a captive portal no answer says anything about the images
+			return slideJson;
+		}
+
+		Map<String, Boolean> results = check(unknown);
+		boolean changed = false;
+		for (JSONObject element : images) {
+			String url = urlOf(element);
+			Boolean ok = results.containsKey(url) ? results.get(url) : known(url);
+			try {
+				if (ok != null && !ok && !placeholderUrl.equals(element.optString("url"))) {
+					element.put(ORIGINAL_URL, url);
+					element.put("url", placeholderUrl);
+					changed = true;
+					synchronized (this) {
+						replaced++;
+					}
+				} else if (ok != null && ok && element.has(ORIGINAL_URL)) {
+					// A URL replaced earlier works again
+					element.put("url", element.remove(ORIGINAL_URL));
+					changed = true;
+				}
+				// Unchecked in time is not a failure, the image loader gets its own chance
+			} catch (JSONException e) {
+				Log.w(TAG, "Could not replace " + url + ": " + e.getMessage());
+			}
+		}
+		Log.d(TAG, getStats());
+		return changed ? slide.toString() : slideJson;
+	}
+
+	public synchronized String getStats() {
+		return "checked=" + checked + " replaced=" + replaced + " badHosts=" + badHosts.size();
+	}
+
+	/**
+	* @return the URL to check: the original one of an element replaced earlier
+	*/
+	private static String urlOf(JSONObject element) {
+		String original = element.optString(ORIGINAL_URL);
+		return original.isEmpty() ? element.optString("url") : original;
+	}
+
+	/**
+	* Checks URLs in parallel. A URL missing from the result did not answer in time,
+	* or failed in a way that says nothing about the image.
+	*/
+	private Map<String, Boolean> check(List<String> urls) {
+		Map<String, Boolean> results = new LinkedHashMap<>();
+		if (urls.isEmpty()) {
+			return results;
+		}
+		// Decided once every check is done, when it is known whether any host answered
+		Map<String, IOException> hostFailures = new LinkedHashMap<>();
+		CountDownLatch done = new CountDownLatch(urls.size());
+		List<Call> calls = new ArrayList<>();
+		for (String url : urls) {
+			Call call = client.newCall(new Request.Builder().url(url).head().build());
+			calls.add(call);
+			call.enqueue(new Callback() {
+				@Override
+				public void onResponse(@NonNull Call call, @NonNull Response response) {
+					onAnswer();
+					Boolean ok;
+					try {
+						ok = isImage(response);
+						response.close();
+						if (!ok && (response.code() == 403 || response.code() == 405 || response.code() == 501)) {
+							// Some servers refuse HEAD but serve the image
+							ok = checkWithRangedGet(url);
+						}
+					} catch (IOException e) {
+						Log.d(TAG, "Ranged check of " + url + " failed: " + e);
+						ok = null;
+					}
+					finish(url, ok);
+				}
+
+				@Override
+				public void onFailure(@NonNull Call call, @NonNull IOException e) {
+					if (isHostFailure(e)) {
+						synchronized (results) {
+							hostFailures.put(url, e);
+						}
+					}
+					finish(url, null);
+				}
+
+				private void finish(String url, Boolean ok) {
+					if (ok != null) {
+						synchronized (results) {
+							results.put(url, ok);
+						}
+						remember(url, ok);
+					}
+					done.countDown();
+				}
+			});
+		}
+		try {
+			if (!done.await(DEADLINE_MS, TimeUnit.MILLISECONDS)) {
+				Log.w(TAG, done.getCount() + " image checks did not finish in time");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Call call : calls) {
+			call.cancel();
+		}
+		synchronized (results) {
+			if (!hostFailures.isEmpty() && !networkWorks()) {
+				Log.w(TAG, "No host answered, keeping " + hostFailures.size() + " image URLs that may just be offline");
+				hostFailures.clear();
+			}
+			for (Map.Entry<String, IOException> failure : hostFailures.entrySet()) {
+				HttpUrl parsed = HttpUrl.parse(failure.getKey());
+				if (parsed != null) {
+					rememberBadHost(parsed, failure.getValue());
+				}
+				results.put(failure.getKey(), false);
+				remember(failure.getKey(), false);
+			}
+			return new LinkedHashMap<>(results);
+		}
+	}
+
+	private boolean checkWithRangedGet(String url) throws IOException {
+		Request request = new Request.Builder().url(url).header("Range", "bytes=0-0").build();
+		try (Response response = client.newCall(request).execute()) {
+			return isImage(response);
+		}
+	}
+
+	private static boolean isImage(Response response) {
+		if (!response.isSuccessful()) {
+			return false;
+		}
+		String type = response.header("Content-Type");
+		return type == null || type.startsWith("image/") || type.startsWith("application/octet-stream");
+	}
+
+	/**
+	* @return the remembered result of a URL, false for a known-bad host, or null if unknown
+	*/
+	private synchronized Boolean known(String url) {
+		long now = SystemClock.uptimeMillis();
+		HttpUrl parsed = HttpUrl.parse(url);
+		Long hostExpiry = parsed != null ? badHosts.get(hostOf(parsed)) : null;
+		if (hostExpiry != null && hostExpiry > now) {
+			return false;
+		}
+		Long expiry = urlExpiry.get(url);
+		return expiry != null && expiry > now ? urlResults.get(url) : null;
+	}
+
+	/**
+	* Remembers a definite result. Timeouts and resets may just be a slow network,
+	* so they are not remembered.
+	*/
+	private synchronized void remember(String url, boolean ok) {
+		checked++;
+		urlResults.put(url, ok);
+		urlExpiry.put(url, SystemClock.uptimeMillis() + REMEMBER_MS);
+		trim(urlResults);
+		trim(urlExpiry);
+	}
+
+	/**
+	* @return false if the system knows there is no working internet connection, e.g.
+	* offline or behind a captive portal; true when it cannot tell
+	*/
+	private boolean hasValidatedNetwork() {
+		if (connectivity == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+			return true;
+		}
+		Network network = connectivity.getActiveNetwork();
+		NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+		return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+	}
+
+	private synchronized void onAnswer() {
+		lastAnswerAt = SystemClock.uptimeMillis();
+	}
+
+	private synchronized boolean networkWorks() {
+		return SystemClock.uptimeMillis() - lastAnswerAt < NETWORK_PROOF_MS;
+	}
+
+	private synchronized void rememberBadHost(HttpUrl url, IOException error) {
+		Log.w(TAG, "Skipping images from " + hostOf(url) + " for a while: " + error);
+		badHosts.put(hostOf(url), SystemClock.uptimeMillis() + REMEMBER_MS);
+		trim(badHosts);
+	}
+
+	private static boolean isHostFailure(IOException error) {
+		return error instanceof UnknownHostException || error instanceof ConnectException
+		|| error instanceof SSLException;
+	}
+
+	private static String hostOf(HttpUrl url) {
+		return url.host() + ':' + url.port();
+	}
+
+	private static void trim(Map<String, ?> map) {
+		while (map.size() > MAX_REMEMBERED) {
+			map.remove(map.keySet().iterator().next());
+		}
+	}
+}
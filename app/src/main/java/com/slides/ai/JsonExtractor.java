@@ -0,0 +1,149 @@
+package com.slides.ai;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+* JsonExtractor pulls the first top-level JSON object or array out of a model answer.
+*
+* One pass over the text tracks strings, escapes and the stack of open scopes, so
+* braces inside string values do not confuse it and markdown fences or prose around
+* the JSON are skipped. If the answer ends while scopes are still open, as happens
+* when the model hits its token limit, the JSON is cut back to the last complete
+* value and the open scopes are closed. The matched text is parsed exactly once.
+*/
+public final class JsonExtractor {
+
+	public static class Result {
+		// A JSONObject or a JSONArray
+		public final Object value;
+		public final String json;
+		// True if the answer was truncated and had to be closed
+		public final boolean repaired;
+
+		Result(Object value, String json, boolean repaired) {
+			this.value = value;
+			this.json = json;
+			this.repaired = repaired;
+		}
+	}
+
+	private JsonExtractor() {
+	}
+
+	public static Result extractObject(String text) throws JSONException {
+		return extract(text, '{');
+	}
+
+	public static Result extractArray(String text) throws JSONException {
+		return extract(text, '[');
+	}
+
+	/**
+	* @param open '{' for an object, '[' for an array
+	* @throws JSONException if the text holds no such JSON value, even after repair
+	*/
+	public static Result extract(String text, char open) throws JSONException {
+		if (text != null) {
+			// A candidate that fails to parse, e.g. "{placeholder}" in prose, is skipped
+			for (int from = text.indexOf(open); from >= 0; from = text.indexOf(open, from + 1)) {
+				Result result = scan(text, from);
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+		throw new JSONException("No JSON " + (open == '{' ? "object" : "array") + " found in response");
+	}
+
+	private static Result scan(String text, int start) {
+		char[] scopes = new char[16];
+		int depth = 0;
+		boolean inString = false;
+		boolean escaped = false;
+		// Whether the next string in the current object is a key
+		boolean keyPosition = false;
+		// End of the longest prefix that is complete up to its open scopes
+		int safeEnd = -1;
+		int safeDepth = 0;
+
+		for (int i = start; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (inString) {
+				if (escaped) {
+					escaped = false;
+				} else if (c == '\\') {
+					escaped = true;
+				} else if (c == '"') {
+					inString = false;
+					if (!keyPosition) {
+						safeEnd = i + 1;
+						safeDepth = depth;
+					}
+				}
+				continue;
+			}
+			switch (c) {
+				case '"':
+					inString = true;
+					break;
+				case '{':
+				case '[':
+					if (depth == scopes.length) {
+						scopes = Arrays.copyOf(scopes, depth * 2);
+					}
+					scopes[depth++] = c;
+					keyPosition = c == '{';
+					safeEnd = i + 1;
+					safeDepth = depth;
+					break;
+				case '}':
+				case ']':
+					if (depth == 0 || scopes[depth - 1] != (c == '}' ? '{' : '[')) {
+						return null;
+					}
+					depth--;
+					keyPosition = false;
+					if (depth == 0) {
+						return parse(text.substring(start, i + 1), false);
+					}
+					safeEnd = i + 1;
+					safeDepth = depth;
+					break;
+				case ',':
+					safeEnd = i;
+					safeDepth = depth;
+					keyPosition = scopes[depth - 1] == '{';
+					break;
+				case ':':
+					keyPosition = false;
+					break;
+				default:
+					break;
+			}
+		}
+
+		// Truncated: keep what is complete and close the scopes open at that point
+		if (safeEnd < 0) {
+			return null;
+		}
+		StringBuilder repaired = new StringBuilder(text.length() - start + safeDepth);
+		repaired.append(text, start, safeEnd);
+		for (int d = safeDepth - 1; d >= 0; d--) {
+			repaired.append(scopes[d] == '{' ? '}' : ']');
+		}
+		return parse(repaired.toString(), true);
+	}
+
+	private static Result parse(String json, boolean repaired) {
+		try {
+			Object value = json.charAt(0) == '{' ? new JSONObject(json) : new JSONArray(json);
+			return new Result(value, json, repaired);
+		} catch (JSONException e) {
+			return null;
+		}
+	}
+}
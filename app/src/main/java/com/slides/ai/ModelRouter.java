@@ -0,0 +1,95 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import java.util.List;
+
+/**
+* ModelRouter picks the model for the "Auto" choice of the chat: the fastest model
+* that is currently healthy according to {@link ModelTelemetry}.
+*
+* A model is healthy when its recent error rate is low and enough of its answers
+* were valid slide JSON. Models with too few samples to judge, and unhealthy models
+* not tried for a while, are tried now and then, so a model that was never used or
+* has recovered gets a chance to prove itself. When no model is healthy, the one
+* with the fewest errors is used.
+*/
+public class ModelRouter {
+	private static final String TAG = "ModelRouter";
+
+	static final int MIN_SAMPLES = 3;
+	static final float MAX_ERROR_RATE = 0.2f;
+	static final float MIN_VALIDITY_RATE = 0.8f;
+	// Every this many routed requests, an unjudged model is tried if there is one
+	static final int EXPLORE_EVERY = 5;
+	// An unhealthy model is tried again once its newest sample is this old
+	static final long RETRY_UNHEALTHY_AFTER_MS = 10 * 60 * 1000;
+
+	private final ModelTelemetry telemetry;
+	private int routed = 0;
+
+	public ModelRouter(ModelTelemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+
+	/**
+	* @param candidates the usable models, in order of preference when nothing is known
+	* @return the model to send the next request to, or null if there are no candidates
+	*/
+	public synchronized String choose(List<String> candidates) {
+		if (candidates.isEmpty()) {
+			return null;
+		}
+		routed++;
+		String fastest = null;
+		long fastestLatency = Long.MAX_VALUE;
+		String unjudged = null;
+		long now = System.currentTimeMillis();
+		long oldestRetry = Long.MAX_VALUE;
+		String retry = null;
+		String leastFailing = null;
+		float leastErrorRate = Float.MAX_VALUE;
+		for (String model : candidates) {
+			ModelTelemetry.Stats stats = telemetry.getStats(model);
+			if (stats.samples < MIN_SAMPLES) {
+				if (unjudged == null) {
+					unjudged = model;
+				}
+				continue;
+			}
+			if (!isHealthy(stats) && stats.lastSampleAt < now - RETRY_UNHEALTHY_AFTER_MS
+			&& stats.lastSampleAt < oldestRetry) {
+				oldestRetry = stats.lastSampleAt;
+				retry = model;
+			}
+			if (stats.errorRate < leastErrorRate) {
+				leastErrorRate = stats.errorRate;
+				leastFailing = model;
+			}
+			if (isHealthy(stats) && stats.totalP50 < fastestLatency) {
+				fastestLatency = stats.totalP50;
+				fastest = model;
+			}
+		}
+
+		String choice;
+		boolean explore = fastest == null || routed % EXPLORE_EVERY == 0;
+		if (unjudged != null && explore) {
+			choice = unjudged;
+		} else if (retry != null && explore) {
+			choice = retry;
+		} else if (fastest != null) {
+			choice = fastest;
+		} else {
+			choice = leastFailing;
+		}
+		Log.d(TAG, "Routing to " + choice + ": " + telemetry.getStats(choice));
+		return choice;
+	}
+
+	public static boolean isHealthy(ModelTelemetry.Stats stats) {
+		return stats.samples >= MIN_SAMPLES
+		&& stats.errorRate <= MAX_ERROR_RATE
+		&& stats.validityRate >= MIN_VALIDITY_RATE;
+	}
+}
@@ -0,0 +1,225 @@
+package com.slides.ai;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+* ModelTelemetry keeps the recent slide generations of every model: time to first
+* token, total latency, output speed, whether the answer was valid slide JSON and
+* whether the request failed.
+*
+* Each model has a rolling window of its last samples, and samples older than a
+* day are ignored so an outage does not count against a model forever. The windows
+* are saved to shared preferences after every sample and survive restarts.
+*/
+public class ModelTelemetry {
+	private static final String TAG = "ModelTelemetry";
+	private static final String PREFS_NAME = "model_telemetry";
+	private static final String KEY_WINDOWS = "windows";
+
+	static final int WINDOW_SIZE = 30;
+	private static final long MAX_SAMPLE_AGE_MS = 24 * 60 * 60 * 1000;
+	// Rough characters per token of slide JSON, for the output speed
+	private static final float CHARS_PER_TOKEN = 4f;
+
+	private static ModelTelemetry instance;
+
+	/**
+	* One generation. ttfbMillis is -1 when the request failed before any output.
+	*/
+	public static class Sample {
+		final long timestamp;
+		final long ttfbMillis;
+		final long totalMillis;
+		final int outputChars;
+		final boolean valid;
+		final boolean error;
+
+		public Sample(long timestamp, long ttfbMillis, long totalMillis, int outputChars, boolean valid, boolean error) {
+			this.timestamp = timestamp;
+			this.ttfbMillis = ttfbMillis;
+			this.totalMillis = totalMillis;
+			this.outputChars = outputChars;
+			this.valid = valid;
+			this.error = error;
+		}
+	}
+
+	/**
+	* Summary of a model's window. Latencies only count successful requests.
+	*/
+	public static class Stats {
+		public int samples;
+		public float errorRate;
+		public float validityRate;
+		public long ttfbP50;
+		public long totalP50;
+		public long totalP90;
+		public float tokensPerSecond;
+		// Wall clock time of the newest sample
+		public long lastSampleAt;
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "n=%d errors=%.0f%% valid=%.0f%% ttfb50=%dms p50=%dms p90=%dms %.0f tok/s",
+			samples, errorRate * 100, validityRate * 100, ttfbP50, totalP50, totalP90, tokensPerSecond);
+		}
+	}
+
+	private final SharedPreferences prefs;
+	private final Map<String, List<Sample>> windows = new HashMap<>();
+
+	public static synchronized ModelTelemetry getInstance(Context context) {
+		if (instance == null) {
+			instance = new ModelTelemetry(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+		}
+		return instance;
+	}
+
+	/**
+	* @param prefs where the windows are kept, or null to keep them in memory only
+	*/
+	ModelTelemetry(SharedPreferences prefs) {
+		this.prefs = prefs;
+		if (prefs != null) {
+			load(prefs.getString(KEY_WINDOWS, null));
+		}
+	}
+
+	public synchronized void record(String model, Sample sample) {
+		List<Sample> window = windows.get(model);
+		if (window == null) {
+			window = new ArrayList<>();
+			windows.put(model, window);
+		}
+		window.add(sample);
+		if (window.size() > WINDOW_SIZE) {
+			window.remove(0);
+		}
+		if (prefs != null) {
+			prefs.edit().putString(KEY_WINDOWS, save()).apply();
+		}
+	}
+
+	/**
+	* @return the stats of the model's recent samples; samples is 0 if there are none
+	*/
+	public synchronized Stats getStats(String model) {
+		Stats stats = new Stats();
+		List<Sample> window = windows.get(model);
+		if (window == null) {
+			return stats;
+		}
+		long cutoff = System.currentTimeMillis() - MAX_SAMPLE_AGE_MS;
+		long[] ttfb = new long[window.size()];
+		long[] total = new long[window.size()];
+		int successes = 0;
+		int errors = 0;
+		int valid = 0;
+		long outputChars = 0;
+		long streamingMillis = 0;
+		for (Sample sample : window) {
+			if (sample.timestamp < cutoff) {
+				continue;
+			}
+			stats.samples++;
+			stats.lastSampleAt = Math.max(stats.lastSampleAt, sample.timestamp);
+			if (sample.error) {
+				errors++;
+				continue;
+			}
+			if (sample.valid) {
+				valid++;
+			}
+			ttfb[successes] = Math.max(0, sample.ttfbMillis);
+			total[successes] = sample.totalMillis;
+			successes++;
+			outputChars += sample.outputChars;
+			streamingMillis += Math.max(1, sample.totalMillis - Math.max(0, sample.ttfbMillis));
+		}
+		if (stats.samples == 0) {
+			return stats;
+		}
+		stats.errorRate = errors / (float) stats.samples;
+		if (successes > 0) {
+			stats.validityRate = valid / (float) successes;
+			stats.ttfbP50 = percentile(ttfb, successes, 0.5f);
+			stats.totalP50 = percentile(total, successes, 0.5f);
+			stats.totalP90 = percentile(total, successes, 0.9f);
+			stats.tokensPerSecond = outputChars / CHARS_PER_TOKEN * 1000f / streamingMillis;
+		}
+		return stats;
+	}
+
+	public synchronized void clear() {
+		windows.clear();
+		if (prefs != null) {
+			prefs.edit().remove(KEY_WINDOWS).apply();
+		}
+	}
+
+	private static long percentile(long[] values, int count, float p) {
+		long[] sorted = Arrays.copyOf(values, count);
+		Arrays.sort(sorted);
+		int index = Math.min(count - 1, (int) Math.ceil(p * count) - 1);
+		return sorted[Math.max(0, index)];
+	}
+
+	private String save() {
+		JSONObject json = new JSONObject();
+		try {
+			for (Map.Entry<String, List<Sample>> entry : windows.entrySet()) {
+				JSONArray samples = new JSONArray();
+				for (Sample sample : entry.getValue()) {
+					samples.put(new JSONArray()
+					.put(sample.timestamp)
+					.put(sample.ttfbMillis)
+					.put(sample.totalMillis)
+					.put(sample.outputChars)
+					.put(sample.valid)
+					.put(sample.error));
+				}
+				json.put(entry.getKey(), samples);
+			}
+		} catch (JSONException e) {
+			Log.w(TAG, "Could not save telemetry: " + e.getMessage());
+		}
+		return json.toString();
+	}
+
+	private void load(String saved) {
+		if (saved == null) {
+			return;
+		}
+		try {
+			JSONObject json = new JSONObject(saved);
+			JSONArray models = json.names();
+			for (int i = 0; models != null && i < models.length(); i++) {
+				String model = models.getString(i);
+				JSONArray samples = json.getJSONArray(model);
+				List<Sample> window = new ArrayList<>();
+				for (int j = Math.max(0, samples.length() - WINDOW_SIZE); j < samples.length(); j++) {
+					JSONArray sample = samples.getJSONArray(j);
+					window.add(new Sample(sample.getLong(0), sample.getLong(1), sample.getLong(2),
+					sample.getInt(3), sample.getBoolean(4), sample.getBoolean(5)));
+				}
+				windows.put(model, window);
+			}
+		} catch (JSONException e) {
+			Log.w(TAG, "Discarding unreadable telemetry: " + e.getMessage());
+			windows.clear();
+		}
+	}
+}
@@ -3,31 +3,45 @@ package com.slides.ai;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
 
 /**
-* NetworkManager handles all API interactions and image loading operations
+* NetworkManager handles all API interactions and image loading operations.
+* It is the Gemini {@link SlideGenerationProvider}.
 */
-public class NetworkManager {
-	private final String GEMINI_API_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent";
+public class NetworkManager implements SlideGenerationProvider {
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+	private static final String DEFAULT_MODEL_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash";
+	private static final double DEFAULT_TEMPERATURE = 0.7;
+	private String modelUrl = DEFAULT_MODEL_URL;
+	private double temperature = DEFAULT_TEMPERATURE;
 	private ApiKeyManager apiKeyManager;
 	private HashMap<String, Bitmap> imageCache;
 	private Handler mainHandler;
-	private Thread networkThread;
+	private volatile Call currentCall;
+	// Bumped by cancel() so a request retrying on another key stops, and its callbacks are dropped
+	private final AtomicInteger requestSerial = new AtomicInteger();
 	private ExecutorService executorService;
+	private volatile ImagePrefetcher imagePrefetcher;
 	
 	// Callback interface for API responses
 	public interface ApiResponseCallback {
@@ -35,6 +49,14 @@ public class NetworkManager {
 		void onError(String errorMessage);
 	}
 	
+	/**
+	* Response callback of a slide request that is also told how the slide was read
+	* from the answer, right before onSuccess.
+	*/
+	public interface SlideResponseCallback extends ApiResponseCallback {
+		void onExtracted(ExtractedSlide slide);
+	}
+	
 	// Callback interface for image loading
 	public interface ImageLoadCallback {
 		void onImageLoaded();
@@ -49,232 +71,379 @@ public class NetworkManager {
 		this.executorService = executorService;
 	}
 	
+	/**
+	* Points Gemini calls at another model endpoint, e.g. a local stand-in server
+	* that replays recorded responses.
+	*/
+	public void setModelUrl(String modelUrl) {
+		this.modelUrl = modelUrl != null ? modelUrl : DEFAULT_MODEL_URL;
+	}
+	
+	/**
+	* Starts downloading the images of streamed slides as soon as their URLs appear
+	* in the answer, instead of once the slide is drawn. Null turns it off.
+	*/
+	public void setImagePrefetcher(ImagePrefetcher imagePrefetcher) {
+		this.imagePrefetcher = imagePrefetcher;
+	}
+	
+	/**
+	* Sets the sampling temperature of later requests, e.g. to spread out slide variants.
+	*/
+	public void setTemperature(double temperature) {
+		this.temperature = temperature;
+	}
+	
+	@Override
+	public boolean supportsModel(String model) {
+		return model != null && model.startsWith("gemini");
+	}
+	
+	@Override
+	public void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, SlideGenerationProvider.Callback callback) {
+		sendPromptToGemini(prompt, canvasWidth, canvasHeight, new SlideResponseCallback() {
+			@Override
+			public void onExtracted(ExtractedSlide slide) {
+				if (callback instanceof ExtractionCallback) {
+					((ExtractionCallback) callback).onExtracted(slide);
+				}
+			}
+			
+			@Override
+			public void onSuccess(String jsonStr) {
+				callback.onSuccess(jsonStr);
+			}
+			
+			@Override
+			public void onError(String errorMessage) {
+				callback.onError(errorMessage);
+			}
+		}, streamListener);
+	}
+	
+	@Override
+	public void generateText(String prompt, String model, SlideGenerationProvider.Callback callback) {
+		sendTextPromptToGemini(prompt, new ApiResponseCallback() {
+			@Override
+			public void onSuccess(String text) {
+				callback.onSuccess(text);
+			}
+			
+			@Override
+			public void onError(String errorMessage) {
+				callback.onError(errorMessage);
+			}
+		});
+	}
+	
+	@Override
+	public void cancel() {
+		requestSerial.incrementAndGet();
+		Call call = currentCall;
+		if (call != null) {
+			call.cancel();
+		}
+	}
+	
 	public void sendPromptToGemini(String prompt, float canvasWidth, float canvasHeight, final ApiResponseCallback callback) {
-		// Cancel any previous network operation
-		if (networkThread != null && networkThread.isAlive()) {
-			networkThread.interrupt();
+		sendPromptToGemini(prompt, canvasWidth, canvasHeight, callback, null);
+	}
+	
+	/**
+	* Sends a prompt to Gemini on the shared HTTP client, cancelling any request still
+	* in flight. With a stream listener the streamGenerateContent endpoint is used over
+	* SSE: chunks are decoded on the worker thread and fed to a {@link SlideStreamParser},
+	* so the listener gets each element on the main thread as soon as it is complete.
+	* Either way the callback receives the full validated slide JSON at the end.
+	*/
+	public void sendPromptToGemini(String prompt, float canvasWidth, float canvasHeight, final ApiResponseCallback callback,
+	final SlideStreamParser.Listener streamListener) {
+		final JSONObject requestBody;
+		try {
+			requestBody = createRequestBody(prompt, canvasWidth, canvasHeight);
+		} catch (JSONException e) {
+			mainHandler.post(() -> callback.onError("ERROR: " + e.getMessage()));
+			return;
+		}
+		execute(requestBody, streamListener, true, callback);
+	}
+	
+	/**
+	* Sends a free-form prompt to Gemini and returns the raw text of the answer, e.g.
+	* a deck outline. Like slide requests it replaces any request in flight.
+	*/
+	public void sendTextPromptToGemini(String prompt, final ApiResponseCallback callback) {
+		final JSONObject requestBody;
+		try {
+			requestBody = createTextRequestBody(prompt);
+		} catch (JSONException e) {
+			mainHandler.post(() -> callback.onError("ERROR: " + e.getMessage()));
+			return;
 		}
+		execute(requestBody, null, false, callback);
+	}
+	
+	private void execute(JSONObject requestBody, SlideStreamParser.Listener streamListener, boolean extractSlide,
+	ApiResponseCallback callback) {
+		cancel();
+		final int serial = requestSerial.get();
 		
-		networkThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				String result;
-				try {
-					// Construct the structured prompt with improved guidance for layout
-					String structuredPrompt = "Create a professional presentation slide based on this prompt: \"" + prompt + "\". " +
-					"The canvas size is " + canvasWidth + "x" + canvasHeight + " pixels. Please generate the slide elements accordingly." +
-					"You must respond with ONLY a valid JSON object (no markdown, no explanation) that contains:\n" +
-					"{\n" +
-					"  \"backgroundColor\": \"#FFFFFF\",\n" +
-					"  \"elements\": [\n" +
-					"    {\n" +
-					"      \"type\": \"text\",\n" +
-					"      \"content\": \"Slide Title\",\n" +
-					"      \"x\": 20,\n" +
-					"      \"y\": 20,\n" +
-					"      \"width\": 280,\n" +
-					"      \"height\": 40,\n" +
-					"      \"fontSize\": 24,\n" +
-					"      \"color\": \"#000000\",\n" +
-					"      \"bold\": true,\n" +
-					"      \"alignment\": \"center\"\n" +
-					"    }\n" +
-					"  ]\n" +
-					"}\n" +
-					"Guidelines:\n" +
-					"- Use slide dimensions " + canvasWidth + "x" + canvasHeight + "dp\n" +
-					"- Position elements with proper spacing\n" +
-					"- Include title, content, and optionally images/shapes\n" +
-					"- Use readable fonts (fontSize 12-24)\n" +
-					"- Choose professional colors\n" +
-					"- For images, use real public URLs\n" +
-					"- For shapes: type can be 'rectangle', 'oval', 'line'\n" +
-					"- Ensure no element overlap\n" +
-					"IMPORTANT: Return ONLY the JSON object, nothing else.";
-					
-					// Create JSON request body
-					JSONObject requestBody = new JSONObject();
-					JSONArray contents = new JSONArray();
-					
-					// Add the role and content
-					JSONObject content = new JSONObject();
-					content.put("role", "user");
-					JSONObject part = new JSONObject();
-					part.put("text", structuredPrompt);
-					JSONArray parts = new JSONArray();
-					parts.put(part);
-					content.put("parts", parts);
-					contents.put(content);
-					
-					requestBody.put("contents", contents);
-					
-					// Add generation config
-					JSONObject generationConfig = new JSONObject();
-					generationConfig.put("temperature", 0.7);
-					generationConfig.put("topK", 40);
-					generationConfig.put("topP", 0.95);
-					generationConfig.put("maxOutputTokens", 8192);
-					requestBody.put("generationConfig", generationConfig);
-					
-					// Get API key from manager
-					String apiKey = apiKeyManager.getActiveApiKey();
-					if (apiKey == null) {
-						result = "ERROR: No API key available";
+		final ApiKeyPool keyPool = apiKeyManager.getKeyPool();
+		if (keyPool.isEmpty()) {
+			mainHandler.post(() -> callback.onError("ERROR: No API key available"));
+			return;
+		}
+		
+		executorService.execute(() -> {
+			// A throttled key cools down and the request moves on to the next one
+			int attempts = keyPool.size();
+			for (int attempt = 1; ; attempt++) {
+				if (serial != requestSerial.get()) {
+					return;
+				}
+				String apiKey = keyPool.acquire();
+				if (apiKey == null) {
+					postError(serial, callback, "ERROR: No API key available");
+					return;
+				}
+				String payload = requestBody.toString();
+				String url = streamListener != null
+				? modelUrl + ":streamGenerateContent?alt=sse&key=" + apiKey
+				: modelUrl + ":generateContent?key=" + apiKey;
+				Request request = new Request.Builder()
+				.url(url)
+				.header("Accept", streamListener != null ? "text/event-stream" : "application/json")
+				.post(RequestBody.create(payload, JSON))
+				.build();
+				Call call = SharedHttpClient.getInstance().newCall(request);
+				currentCall = call;
+				// cancel() may have run before currentCall was set
+				if (serial != requestSerial.get()) {
+					call.cancel();
+				}
+				
+				int status = 0;
+				String retryAfter = null;
+				long startedAt = SystemClock.uptimeMillis();
+				try (Response response = call.execute()) {
+					status = response.code();
+					retryAfter = response.header("Retry-After");
+					ResponseBody body = response.body();
+					if (!response.isSuccessful()) {
+						if (ApiKeyPool.isRateLimited(status) && attempt < attempts) {
+							Log.w("NetworkManager", "Key throttled with " + status + ", retrying with the next key; " + keyPool.getStats());
+							continue;
+						}
+						String error = body != null ? body.string() : "";
+						postError(serial, callback, "ERROR: " + status + " - " + error);
+						return;
+					}
+					if (body == null) {
+						postError(serial, callback, "Empty response from server");
 						return;
 					}
-
-					// Create URL with API key
-					URL url = new URL(GEMINI_API_URL + "?key=" + apiKey);
-					
-					// Create connection
-					HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-					connection.setRequestMethod("POST");
-					connection.setRequestProperty("Content-Type", "application/json");
-					connection.setDoOutput(true);
-					
-					// Write request body
-					OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-					writer.write(requestBody.toString());
-					writer.flush();
-					writer.close();
 					
-					// Read response
-					int responseCode = connection.getResponseCode();
-					if (responseCode == HttpURLConnection.HTTP_OK) {
-						BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-						StringBuilder response = new StringBuilder();
-						String line;
-						while ((line = reader.readLine()) != null) {
-							response.append(line);
-						}
-						reader.close();
-						
-						result = response.toString();
+					JSONObject[] usage = new JSONObject[1];
+					String text;
+					if (streamListener != null) {
+						text = readStream(serial, body, streamListener, usage);
 					} else {
-						BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-						StringBuilder response = new StringBuilder();
-						String line;
-						while ((line = reader.readLine()) != null) {
-							response.append(line);
-						}
-						reader.close();
-						
-						result = "ERROR: " + responseCode + " - " + response.toString();
+						JSONObject result = new JSONObject(body.string());
+						usage[0] = result.optJSONObject("usageMetadata");
+						text = extractCandidateText(result);
+					}
+					Log.d("NetworkManager", "Gemini: request " + payload.length() + " chars"
+					+ (usage[0] != null ? ", " + usage[0].optInt("promptTokenCount") + " prompt tokens ("
+					+ usage[0].optInt("cachedContentTokenCount") + " cached)" : "")
+					+ ", headers " + (response.receivedResponseAtMillis() - response.sentRequestAtMillis()) + "ms, total "
+					+ (SystemClock.uptimeMillis() - startedAt) + "ms");
+					if (serial != requestSerial.get()) {
+						return;
+					}
+					if (text == null || text.isEmpty()) {
+						postError(serial, callback, "No candidates in response");
+						return;
 					}
 					
-					connection.disconnect();
+					// Extract JSON from the response text
+					ExtractedSlide slide = extractSlide ? extractSlideJson(text) : null;
+					String jsonStr = slide != null ? slide.json : text;
+					postIfCurrent(serial, () -> {
+						if (slide != null && callback instanceof SlideResponseCallback) {
+							((SlideResponseCallback) callback).onExtracted(slide);
+						}
+						callback.onSuccess(jsonStr);
+					});
+					return;
 				} catch (Exception e) {
-					result = "ERROR: " + e.getMessage();
-					e.printStackTrace();
+					if (serial == requestSerial.get()) {
+						Log.e("NetworkManager", "Gemini request failed", e);
+						postError(serial, callback, "Error processing response: " + e.getMessage());
+					}
+					return;
+				} finally {
+					keyPool.release(apiKey, status, retryAfter);
+					if (currentCall == call) {
+						currentCall = null;
+					}
 				}
-				
-				// Process result on main thread
-                final String finalResult = result;
-                mainHandler.post(() -> {
-                    if (finalResult != null && finalResult.startsWith("ERROR:")) {
-                        callback.onError(finalResult);
-                    } else if (finalResult != null) {
-                        try {
-                            // Parse the Gemini API response
-                            JSONObject response = new JSONObject(finalResult);
-                            JSONArray candidates = response.getJSONArray("candidates");
-                            if (candidates.length() > 0) {
-                                JSONObject firstCandidate = candidates.getJSONObject(0);
-                                JSONObject content = firstCandidate.getJSONObject("content");
-                                JSONArray parts = content.getJSONArray("parts");
-                                if (parts.length() > 0) {
-                                    JSONObject firstPart = parts.getJSONObject(0);
-                                    String text = firstPart.getString("text");
-
-                                    // Extract JSON from the response text
-                                    String jsonStr = extractJsonFromResponse(text);
-                                    callback.onSuccess(jsonStr);
-                                } else {
-                                    callback.onError("Empty parts in response");
-                                }
-                            } else {
-                                callback.onError("No candidates in response");
-                            }
-
-                        } catch (Exception e) {
-                            callback.onError("Error processing response: " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    } else {
-                        callback.onError("Empty response from server");
-                    }
-                });
 			}
 		});
-		
-		networkThread.start();
 	}
 	
-	private String extractJsonFromResponse(String response) {
-		// First try to find JSON wrapped in markdown code blocks
-		if (response.contains("```json")) {
-			int startIdx = response.indexOf("```json") + 7;
-			int endIdx = response.lastIndexOf("```");
-			if (endIdx > startIdx) {
-				String jsonStr = response.substring(startIdx, endIdx).trim();
-				if (isValidJson(jsonStr)) {
-					return jsonStr;
-				}
+	private void postError(int serial, ApiResponseCallback callback, String message) {
+		postIfCurrent(serial, () -> callback.onError(message));
+	}
+	
+	/**
+	* Runs an event on the main thread unless another request or cancel() came first.
+	*/
+	private void postIfCurrent(int serial, Runnable event) {
+		mainHandler.post(() -> {
+			if (serial == requestSerial.get()) {
+				event.run();
 			}
-		}
-
-		// Try to find JSON wrapped in any code blocks
-		if (response.contains("```")) {
-			int startIdx = response.indexOf("```");
-			int secondStart = response.indexOf('\n', startIdx);
-			if (secondStart > startIdx) {
-				int endIdx = response.lastIndexOf("```");
-				if (endIdx > secondStart) {
-					String jsonStr = response.substring(secondStart + 1, endIdx).trim();
-					if (isValidJson(jsonStr)) {
-						return jsonStr;
-					}
-				}
+		});
+	}
+	
+	/**
+	* Reads an SSE body of streamGenerateContent chunks, feeding each chunk's text to
+	* a slide parser as it arrives, and returns the concatenated text.
+	*
+	* @param serial the request's serial; events still queued when it is replaced are dropped
+	* @param usage receives the last usageMetadata of the stream
+	*/
+	private String readStream(int serial, ResponseBody body, SlideStreamParser.Listener streamListener, JSONObject[] usage) throws IOException {
+		SlideStreamParser parser = new SlideStreamParser(new SlideStreamParser.Listener() {
+			@Override
+			public void onBackgroundColor(String color) {
+				postIfCurrent(serial, () -> streamListener.onBackgroundColor(color));
 			}
-		}
-
-		// Find the first complete JSON object
-		int startIdx = response.indexOf('{');
-		if (startIdx != -1) {
-			int braceCount = 0;
-			int endIdx = startIdx;
 			
-			for (int i = startIdx; i < response.length(); i++) {
-				char c = response.charAt(i);
-				if (c == '{') {
-					braceCount++;
-				} else if (c == '}') {
-					braceCount--;
-					if (braceCount == 0) {
-						endIdx = i;
-						break;
-					}
-				}
+			@Override
+			public void onElement(int index, JSONObject element) {
+				postIfCurrent(serial, () -> streamListener.onElement(index, element));
 			}
-			
-			if (braceCount == 0 && endIdx > startIdx) {
-				String jsonStr = response.substring(startIdx, endIdx + 1);
-				if (isValidJson(jsonStr)) {
-					return jsonStr;
+		});
+		
+		ImagePrefetcher prefetcher = imagePrefetcher;
+		ImageUrlSniffer sniffer = prefetcher != null ? new ImageUrlSniffer() : null;
+		StringBuilder text = new StringBuilder();
+		SseDecoder events = new SseDecoder(body.source(), 0);
+		Buffer data;
+		while ((data = events.nextEvent()) != null) {
+			if (data.size() == 0) {
+				continue;
+			}
+			try {
+				JSONObject response = new JSONObject(data.readUtf8());
+				if (response.has("usageMetadata")) {
+					usage[0] = response.optJSONObject("usageMetadata");
+				}
+				String chunk = extractCandidateText(response);
+				if (chunk != null) {
+					text.append(chunk);
+					parser.feed(chunk);
+					postIfCurrent(serial, () -> streamListener.onText(chunk));
+					if (sniffer != null) {
+						for (String url : sniffer.feed(chunk)) {
+							prefetcher.prefetch(url);
+						}
+					}
 				}
+			} catch (JSONException e) {
+				Log.w("NetworkManager", "Skipping malformed stream chunk: " + e.getMessage());
 			}
 		}
-
-		throw new IllegalArgumentException("No valid JSON found in response: " + response);
+		return text.toString();
 	}
-
-	private boolean isValidJson(String jsonStr) {
-		try {
-			new JSONObject(jsonStr);
-			return true;
-		} catch (JSONException e) {
-			return false;
+	
+	/**
+	* Concatenates the text parts of the first candidate of a response chunk.
+	*/
+	private String extractCandidateText(JSONObject response) throws JSONException {
+		JSONArray candidates = response.optJSONArray("candidates");
+		if (candidates == null || candidates.length() == 0) {
+			return null;
+		}
+		JSONObject content = candidates.getJSONObject(0).optJSONObject("content");
+		JSONArray parts = content != null ? content.optJSONArray("parts") : null;
+		if (parts == null) {
+			return null;
 		}
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < parts.length(); i++) {
+			text.append(parts.getJSONObject(i).optString("text", ""));
+		}
+		return text.toString();
+	}
+	
+	private JSONObject createRequestBody(String prompt, float canvasWidth, float canvasHeight) throws JSONException {
+		String structuredPrompt = SlidePrompts.request(prompt, canvasWidth, canvasHeight);
+		
+		JSONObject requestBody = createTextRequestBody(structuredPrompt);
+		// Sent inline with every request: at about 700 tokens the instructions are below
+		// the minimum size of Gemini's cachedContents, so registering them always fails
+		requestBody.put("systemInstruction", new JSONObject()
+		.put("parts", new JSONArray().put(new JSONObject().put("text", SlidePrompts.SYSTEM_INSTRUCTIONS))));
+		// Constrain decoding to the slide schema so the answer always parses
+		JSONObject generationConfig = requestBody.getJSONObject("generationConfig");
+		generationConfig.put("responseMimeType", "application/json");
+		generationConfig.put("responseSchema", SlideSchema.geminiResponseSchema());
+		return requestBody;
+	}
+	
+	private JSONObject createTextRequestBody(String structuredPrompt) throws JSONException {
+		// Create JSON request body
+		JSONObject requestBody = new JSONObject();
+		JSONArray contents = new JSONArray();
+		
+		// Add the role and content
+		JSONObject content = new JSONObject();
+		content.put("role", "user");
+		JSONObject part = new JSONObject();
+		part.put("text", structuredPrompt);
+		JSONArray parts = new JSONArray();
+		parts.put(part);
+		content.put("parts", parts);
+		contents.put(content);
+		
+		requestBody.put("contents", contents);
+		
+		// Add generation config
+		JSONObject generationConfig = new JSONObject();
+		generationConfig.put("temperature", temperature);
+		generationConfig.put("topK", 40);
+		generationConfig.put("topP", 0.95);
+		generationConfig.put("maxOutputTokens", 8192);
+		requestBody.put("generationConfig", generationConfig);
+		
+		return requestBody;
+	}
+	
+	/**
+	* Extracts the slide object from a model answer, closing it if the answer was
+	* cut off at the token limit, and validates it against {@link SlideSchema}.
+	*
+	* @return the renderable slide JSON and what had to be fixed to get it
+	* @throws JSONException if no element of the slide can be rendered
+	*/
+	static ExtractedSlide extractSlideJson(String text) throws JSONException {
+		JsonExtractor.Result result = JsonExtractor.extractObject(text);
+		if (result.repaired) {
+			Log.w("NetworkManager", "Repaired a truncated slide JSON answer");
+		}
+		JSONObject slide = (JSONObject) result.value;
+		List<String> problems = SlideSchema.validate(slide);
+		if (problems.isEmpty()) {
+			return new ExtractedSlide(result.json, result.repaired, problems);
+		}
+		Log.w("NetworkManager", "Slide JSON did not match the schema: " + problems);
+		if (slide.getJSONArray("elements").length() == 0) {
+			throw new JSONException("The slide has no valid elements");
+		}
+		return new ExtractedSlide(slide.toString(), result.repaired, problems);
 	}
 	
 	public void loadImage(String url, final ImageLoadCallback callback) {
@@ -291,14 +460,14 @@ public class NetworkManager {
 		executorService.execute(new Runnable() {
 			@Override
 			public void run() {
-				try {
+				Request request = new Request.Builder().url(url).build();
+				try (Response response = SharedHttpClient.getInstance().newCall(request).execute()) {
+					ResponseBody body = response.body();
+					if (!response.isSuccessful() || body == null) {
+						throw new IOException("HTTP " + response.code());
+					}
 					// Download image
-					URL imageUrl = new URL(url);
-					HttpURLConnection connection = (HttpURLConnection) imageUrl.openConnection();
-					connection.setDoInput(true);
-					connection.connect();
-					InputStream input = connection.getInputStream();
-					final Bitmap bitmap = BitmapFactory.decodeStream(input);
+					final Bitmap bitmap = BitmapFactory.decodeStream(body.byteStream());
 					
 					// Cache and refresh view on UI thread
 					mainHandler.post(new Runnable() {
@@ -321,8 +490,6 @@ public class NetworkManager {
 	}
 	
 	public void cleanup() {
-		if (networkThread != null && networkThread.isAlive()) {
-			networkThread.interrupt();
-		}
+		cancel();
 	}
 }
@@ -0,0 +1,80 @@
+package com.slides.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* PromptTemplate is a prompt with {{name}} placeholders, split into its literal
+* parts once when compiled, so rendering is a single pass into a presized builder.
+*/
+public final class PromptTemplate {
+	private final String[] literals;
+	// Index into names of the placeholder following each literal but the last
+	private final int[] slots;
+	private final List<String> names;
+	private final int literalLength;
+
+	private PromptTemplate(String[] literals, int[] slots, List<String> names) {
+		this.literals = literals;
+		this.slots = slots;
+		this.names = names;
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+	}
+
+	/**
+	* @throws IllegalArgumentException if a placeholder is not closed
+	*/
+	public static PromptTemplate compile(String template) {
+		List<String> literals = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		int from = 0;
+		for (int open = template.indexOf("{{"); open >= 0; open = template.indexOf("{{", from)) {
+			int close = template.indexOf("}}", open + 2);
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed placeholder at " + open);
+			}
+			String name = template.substring(open + 2, close).trim();
+			if (!names.contains(name)) {
+				names.add(name);
+			}
+			literals.add(template.substring(from, open));
+			slots.add(names.indexOf(name));
+			from = close + 2;
+		}
+		literals.add(template.substring(from));
+
+		int[] slotArray = new int[slots.size()];
+		for (int i = 0; i < slotArray.length; i++) {
+			slotArray[i] = slots.get(i);
+		}
+		return new PromptTemplate(literals.toArray(new String[0]), slotArray, names);
+	}
+
+	/**
+	* @param values one value per placeholder name, in the order the names first
+	* appear in the template
+	*/
+	public String render(Object... values) {
+		if (values.length != names.size()) {
+			throw new IllegalArgumentException("Expected values for " + names + ", got " + values.length);
+		}
+		String[] strings = new String[values.length];
+		int length = literalLength;
+		for (int i = 0; i < values.length; i++) {
+			strings[i] = String.valueOf(values[i]);
+		}
+		for (int slot : slots) {
+			length += strings[slot].length();
+		}
+		StringBuilder out = new StringBuilder(length);
+		for (int i = 0; i < slots.length; i++) {
+			out.append(literals[i]).append(strings[slots[i]]);
+		}
+		return out.append(literals[literals.length - 1]).toString();
+	}
+}
@@ -0,0 +1,183 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import com.slides.ai.qwen.QwenManager;
+import com.slides.ai.qwen.QwenNewChatResponse;
+import com.slides.ai.qwen.QwenSessionManager;
+
+/**
+* QwenSlideProvider is the Qwen {@link SlideGenerationProvider}: it resumes or opens
+* the deck's chat session, streams the completion and extracts the slide JSON
+* from the answer.
+*
+* Without a session manager every request runs in a chat of its own, which is
+* what independent workers such as a {@link DeckGenerator}'s need. Such workers can
+* share one QwenManager, since its state is kept per chat.
+*/
+public class QwenSlideProvider implements SlideGenerationProvider {
+	private final QwenManager qwenManager;
+	private final QwenSessionManager sessionManager;
+	private String deckId;
+	// Chat of the latest request, so cancel() stops only this provider's work
+	private String activeChatId;
+	// Bumped on every request so callbacks of a cancelled one are dropped
+	private int generation = 0;
+
+	public QwenSlideProvider(QwenManager qwenManager, QwenSessionManager sessionManager) {
+		this.qwenManager = qwenManager;
+		this.sessionManager = sessionManager;
+	}
+
+	/**
+	* Sets the deck whose conversation follow-up prompts continue.
+	*/
+	public void setDeckId(String deckId) {
+		if (sessionManager != null && this.deckId != null && deckId != null && !this.deckId.equals(deckId)) {
+			sessionManager.renameSession(this.deckId, deckId);
+		}
+		this.deckId = deckId;
+	}
+
+	/**
+	* Gets a midtoken and a spare chat ready before the first prompt.
+	*/
+	public void prewarm() {
+		if (sessionManager != null) {
+			sessionManager.prewarm();
+		}
+	}
+
+	@Override
+	public boolean supportsModel(String model) {
+		return model != null && (model.startsWith("qwen") || model.startsWith("qwq"));
+	}
+
+	@Override
+	public void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, Callback callback) {
+		cancel();
+		final int request = generation;
+		final String deck = deckId;
+		openChat(deck, new QwenManager.QwenCallback<String>() {
+			@Override
+			public void onSuccess(String chatId) {
+				if (request != generation) {
+					return;
+				}
+				activeChatId = chatId;
+				qwenManager.getCompletion(chatId, prompt, model, canvasWidth, canvasHeight, new QwenManager.QwenCallback<String>() {
+					@Override
+					public void onSuccess(String answer) {
+						if (request != generation) {
+							return;
+						}
+						if (sessionManager != null) {
+							sessionManager.onCompletion(deck, chatId);
+						}
+						try {
+							ExtractedSlide slide = NetworkManager.extractSlideJson(answer);
+							if (callback instanceof ExtractionCallback) {
+								((ExtractionCallback) callback).onExtracted(slide);
+							}
+							callback.onSuccess(slide.json);
+						} catch (Exception e) {
+							Log.e("QwenSlideProvider", "Error extracting JSON from Qwen response", e);
+							callback.onError("Error extracting JSON from Qwen response: " + e.getMessage() + "\n\n" + answer);
+						}
+					}
+
+					@Override
+					public void onError(String error) {
+						if (request == generation) {
+							Log.e("QwenSlideProvider", "Qwen completion error: " + error);
+							// The chat may have expired on the server; start a fresh one next time
+							if (sessionManager != null) {
+								sessionManager.resetSession(deck);
+							}
+							callback.onError("Qwen API error: " + error);
+						}
+					}
+				}, streamListener);
+			}
+
+			@Override
+			public void onError(String error) {
+				if (request == generation) {
+					Log.e("QwenSlideProvider", "Qwen new chat error: " + error);
+					callback.onError("Qwen API error: " + error);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void generateText(String prompt, String model, Callback callback) {
+		cancel();
+		final int request = generation;
+		// A one-off question, kept out of the deck's conversation
+		openChat(null, new QwenManager.QwenCallback<String>() {
+			@Override
+			public void onSuccess(String chatId) {
+				if (request != generation) {
+					return;
+				}
+				activeChatId = chatId;
+				qwenManager.getTextCompletion(chatId, prompt, model, new QwenManager.QwenCallback<String>() {
+					@Override
+					public void onSuccess(String answer) {
+						if (request == generation) {
+							callback.onSuccess(answer);
+						}
+					}
+
+					@Override
+					public void onError(String error) {
+						if (request == generation) {
+							callback.onError("Qwen API error: " + error);
+						}
+					}
+				});
+			}
+
+			@Override
+			public void onError(String error) {
+				if (request == generation) {
+					callback.onError("Qwen API error: " + error);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void cancel() {
+		generation++;
+		// The manager may be shared with other providers; only this one's chat is stopped
+		if (activeChatId != null) {
+			qwenManager.cancel(activeChatId);
+			activeChatId = null;
+		}
+	}
+
+	private void openChat(String deck, QwenManager.QwenCallback<String> callback) {
+		if (sessionManager != null && deck != null) {
+			sessionManager.openSession(deck, callback);
+			return;
+		}
+		qwenManager.createNewChat(new QwenManager.QwenCallback<QwenNewChatResponse>() {
+			@Override
+			public void onSuccess(QwenNewChatResponse response) {
+				if (response == null || !response.success || response.data == null) {
+					callback.onError("Error creating new Qwen chat session.");
+					return;
+				}
+				callback.onSuccess(response.data.id);
+			}
+
+			@Override
+			public void onError(String message) {
+				callback.onError(message);
+			}
+		});
+	}
+}
@@ -0,0 +1,286 @@
+package com.slides.ai;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+* RequestHedger cuts the latency tail of slide generation by racing a backup model.
+*
+* The prompt goes to the primary model first. If no token has arrived within a
+* high percentile of that model's recent time-to-first-token, the same prompt is
+* sent to the backup model. The first attempt that returns valid slide JSON wins
+* and the other is cancelled, which aborts its HTTP call. Only the attempt that
+* streams first drives the live preview, and only streamed tokens count as
+* time-to-first-token samples. The backup provider must not be shared with other
+* requests, or cancelling it would cancel them too. Must be used from the main thread.
+*/
+public class RequestHedger {
+	private static final String TAG = "RequestHedger";
+	private static final String PREFS_NAME = "generation_settings";
+	private static final String KEY_ENABLED = "hedging_enabled";
+
+	private static final float HEDGE_PERCENTILE = 0.95f;
+	private static final int WINDOW_SIZE = 50;
+	private static final int MIN_SAMPLES = 5;
+	private static final long DEFAULT_DELAY_MS = 6000;
+	private static final long MIN_DELAY_MS = 1500;
+	private static final long MAX_DELAY_MS = 20000;
+
+	/**
+	* Recent time-to-first-token samples of one model, kept in a ring buffer.
+	*/
+	private static class LatencyWindow {
+		final long[] samples = new long[WINDOW_SIZE];
+		int count = 0;
+		int next = 0;
+
+		void add(long millis) {
+			samples[next] = millis;
+			next = (next + 1) % WINDOW_SIZE;
+			count = Math.min(count + 1, WINDOW_SIZE);
+		}
+
+		long percentile(float p) {
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			int index = Math.min(count - 1, (int) Math.ceil(p * count) - 1);
+			return sorted[Math.max(0, index)];
+		}
+	}
+
+	private class Attempt {
+		final SlideGenerationProvider provider;
+		final String model;
+		final long startedAt = SystemClock.uptimeMillis();
+		boolean firstToken = false;
+		boolean done = false;
+
+		Attempt(SlideGenerationProvider provider, String model) {
+			this.provider = provider;
+			this.model = model;
+		}
+
+		void onToken() {
+			if (!firstToken) {
+				firstToken = true;
+				windowFor(model).add(SystemClock.uptimeMillis() - startedAt);
+				if (this == primary) {
+					mainHandler.removeCallbacks(hedgeRunnable);
+				}
+			}
+		}
+	}
+
+	private final SharedPreferences prefs;
+	private final Handler mainHandler;
+	private final Map<String, LatencyWindow> windows = new HashMap<>();
+
+	// The request in flight
+	private int run = 0;
+	private Attempt primary;
+	private Attempt backup;
+	private Attempt previewOwner;
+	private Runnable hedgeRunnable;
+
+	private int requests = 0;
+	private int hedgesFired = 0;
+	private int hedgesWon = 0;
+
+	public RequestHedger(Context context, Handler mainHandler) {
+		this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+		this.mainHandler = mainHandler;
+	}
+
+	public boolean isEnabled() {
+		return prefs.getBoolean(KEY_ENABLED, false);
+	}
+
+	public void setEnabled(boolean enabled) {
+		prefs.edit().putBoolean(KEY_ENABLED, enabled).apply();
+	}
+
+	/**
+	* Generates a slide with the primary model, hedging with the backup model if the
+	* primary is slow to start. Replaces any hedged request still in flight.
+	*/
+	public void generate(SlideGenerationProvider primaryProvider, String primaryModel,
+	SlideGenerationProvider backupProvider, String backupModel,
+	String prompt, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, SlideGenerationProvider.Callback callback) {
+		cancel();
+		final int current = run;
+		requests++;
+
+		primary = new Attempt(primaryProvider, primaryModel);
+		start(current, primary, prompt, canvasWidth, canvasHeight, streamListener, callback);
+
+		long delay = hedgeDelay(primaryModel);
+		hedgeRunnable = () -> {
+			if (current != run || primary.done || primary.firstToken) {
+				return;
+			}
+			hedgesFired++;
+			Log.d(TAG, "Hedging " + primaryModel + " with " + backupModel + " after " + delay + "ms");
+			backup = new Attempt(backupProvider, backupModel);
+			start(current, backup, prompt, canvasWidth, canvasHeight, streamListener, callback);
+		};
+		mainHandler.postDelayed(hedgeRunnable, delay);
+	}
+
+	/**
+	* Cancels the hedged request in flight, if any, on both models.
+	*/
+	public void cancel() {
+		run++;
+		if (hedgeRunnable != null) {
+			mainHandler.removeCallbacks(hedgeRunnable);
+			hedgeRunnable = null;
+		}
+		for (Attempt attempt : new Attempt[]{primary, backup}) {
+			if (attempt != null && !attempt.done) {
+				attempt.done = true;
+				attempt.provider.cancel();
+			}
+		}
+		primary = null;
+		backup = null;
+		previewOwner = null;
+	}
+
+	public int getRequests() {
+		return requests;
+	}
+
+	public int getHedgesFired() {
+		return hedgesFired;
+	}
+
+	public int getHedgesWon() {
+		return hedgesWon;
+	}
+
+	public String getStats() {
+		return String.format(Locale.US, "requests=%d hedgesFired=%d hedgesWon=%d", requests, hedgesFired, hedgesWon);
+	}
+
+	/**
+	* @return the wait before hedging: a high percentile of the model's recent
+	* time-to-first-token, or a default until enough samples exist
+	*/
+	public long hedgeDelay(String model) {
+		LatencyWindow window = windows.get(model);
+		if (window == null || window.count < MIN_SAMPLES) {
+			return DEFAULT_DELAY_MS;
+		}
+		return Math.max(MIN_DELAY_MS, Math.min(MAX_DELAY_MS, window.percentile(HEDGE_PERCENTILE)));
+	}
+
+	private LatencyWindow windowFor(String model) {
+		LatencyWindow window = windows.get(model);
+		if (window == null) {
+			window = new LatencyWindow();
+			windows.put(model, window);
+		}
+		return window;
+	}
+
+	private void start(int current, Attempt attempt, String prompt, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, SlideGenerationProvider.Callback callback) {
+		SlideStreamParser.Listener attemptListener = new SlideStreamParser.Listener() {
+			@Override
+			public void onBackgroundColor(String color) {
+				if (owns(current, attempt)) {
+					streamListener.onBackgroundColor(color);
+				}
+			}
+
+			@Override
+			public void onElement(int index, JSONObject element) {
+				if (owns(current, attempt)) {
+					streamListener.onElement(index, element);
+				}
+			}
+
+			@Override
+			public void onText(String delta) {
+				if (owns(current, attempt)) {
+					streamListener.onText(delta);
+				}
+			}
+		};
+
+		attempt.provider.generateSlide(prompt, attempt.model, canvasWidth, canvasHeight,
+		streamListener != null ? attemptListener : null, new SlideGenerationProvider.Callback() {
+			@Override
+			public void onSuccess(String slideJson) {
+				if (current != run || attempt.done) {
+					return;
+				}
+				// Not a first token: an answer without streaming, e.g. from a cache, says
+				// nothing about the model's time-to-first-token
+				if (!isValidSlide(slideJson)) {
+					fail(attempt, "The model returned invalid slide JSON.", callback);
+					return;
+				}
+				attempt.done = true;
+				if (attempt == backup) {
+					hedgesWon++;
+				}
+				Log.d(TAG, getStats());
+				// Cancels the losing attempt's call
+				cancel();
+				callback.onSuccess(slideJson);
+			}
+
+			@Override
+			public void onError(String message) {
+				if (current == run && !attempt.done) {
+					fail(attempt, message, callback);
+				}
+			}
+		});
+	}
+
+	/**
+	* Reports an error only once no attempt is left that could still succeed.
+	*/
+	private void fail(Attempt attempt, String message, SlideGenerationProvider.Callback callback) {
+		attempt.done = true;
+		Attempt other = attempt == primary ? backup : primary;
+		if (other != null && !other.done) {
+			return;
+		}
+		cancel();
+		callback.onError(message);
+	}
+
+	private boolean owns(int current, Attempt attempt) {
+		if (current != run || attempt.done) {
+			return false;
+		}
+		attempt.onToken();
+		if (previewOwner == null) {
+			previewOwner = attempt;
+		}
+		return previewOwner == attempt;
+	}
+
+	private static boolean isValidSlide(String slideJson) {
+		try {
+			return new JSONObject(slideJson).optJSONArray("elements") != null;
+		} catch (JSONException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,394 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* SemanticPromptCache finds an earlier prompt that asked for nearly the same slide,
+* e.g. "slide about Q3 revenue" and "Q3 revenue slide", so its slide can be offered
+* instead of a new generation.
+*
+* Prompts are normalized (case, punctuation, filler words, plurals) and reduced to a
+* MinHash signature over their words and character trigrams. Signatures are indexed
+* with locality-sensitive hashing in bands, so a lookup only compares the few
+* entries sharing a band instead of every entry. Matches are scoped to the model
+* and canvas size. Runs entirely on the device; the index lives in memory and its
+* changes are appended to a file, which is compacted once it is mostly stale
+* records. The slides themselves are in the {@link GenerationCache}.
+*/
+public class SemanticPromptCache {
+	private static final String TAG = "SemanticPromptCache";
+	private static final int FILE_VERSION = 2;
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_REMOVE = 2;
+	// Stale records allowed in the file before it is rewritten with the live entries
+	private static final int MIN_STALE_RECORDS = 256;
+
+	static final int HASHES = 64;
+	static final int BANDS = 16;
+	static final int ROWS = HASHES / BANDS;
+	static final int MAX_ENTRIES = 10000;
+	// Only shown to the user, so long prompts are stored shortened
+	private static final int MAX_PROMPT_CHARS = 500;
+	// Estimated Jaccard similarity of the shingle sets needed to offer a match
+	public static final float MIN_SIMILARITY = 0.7f;
+
+	private static final Set<String> FILLER_WORDS = new HashSet<>(Arrays.asList(
+	"a", "an", "the", "of", "on", "about", "for", "to", "with", "and", "in", "our", "my", "me", "us",
+	"please", "make", "create", "generate", "give", "show", "build", "design", "add", "new",
+	"slide", "slides", "presentation", "deck", "page", "that", "this", "some", "i", "want", "need", "can", "you"));
+
+	// Odd multipliers and offsets of the hash family, fixed so signatures survive restarts
+	private static final int[] SEEDS_A = new int[HASHES];
+	private static final int[] SEEDS_B = new int[HASHES];
+
+	static {
+		long state = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < HASHES; i++) {
+			state = state * 6364136223846793005L + 1442695040888963407L;
+			SEEDS_A[i] = (int) (state >>> 32) | 1;
+			state = state * 6364136223846793005L + 1442695040888963407L;
+			SEEDS_B[i] = (int) (state >>> 32);
+		}
+	}
+
+	/**
+	* A cached prompt, with the generation cache key of its slide.
+	*/
+	public static class Entry {
+		public final String prompt;
+		public final String scope;
+		public final String slideKey;
+		final int[] signature;
+
+		Entry(String prompt, String scope, String slideKey, int[] signature) {
+			this.prompt = prompt;
+			this.scope = scope;
+			this.slideKey = slideKey;
+			this.signature = signature;
+		}
+
+		/**
+		* @return true if this entry was stored for exactly this prompt
+		*/
+		public boolean isFor(String prompt) {
+			return this.prompt.equals(stored(prompt));
+		}
+	}
+
+	public static class Match {
+		public final Entry entry;
+		public final float similarity;
+
+		Match(Entry entry, float similarity) {
+			this.entry = entry;
+			this.similarity = similarity;
+		}
+	}
+
+	private final File file;
+	// Insertion ordered by slide key, so the oldest entry is evicted first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+	private final Map<Long, List<Entry>> buckets = new HashMap<>();
+	private boolean loaded = false;
+	// Records in the index file, live or not
+	private int records = 0;
+
+	/**
+	* @param file where the index is saved, or null to keep it in memory only
+	*/
+	public SemanticPromptCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	* Builds the scope of a prompt: only prompts of the same scope can match.
+	*/
+	public static String scopeFor(String model, float canvasWidth, float canvasHeight, int templateVersion) {
+		return model + '|' + Math.round(canvasWidth) + 'x' + Math.round(canvasHeight) + "|v" + templateVersion;
+	}
+
+	/**
+	* @return the most similar earlier prompt of the scope, or null if none is similar enough
+	*/
+	public synchronized Match find(String prompt, String scope) {
+		ensureLoaded();
+		int[] signature = signatureOf(prompt);
+		if (signature == null) {
+			return null;
+		}
+		Entry best = null;
+		int bestAgreeing = -1;
+		for (int band = 0; band < BANDS; band++) {
+			List<Entry> bucket = buckets.get(bandKey(scope, signature, band));
+			if (bucket == null) {
+				continue;
+			}
+			for (Entry entry : bucket) {
+				int agreeing = 0;
+				for (int i = 0; i < HASHES; i++) {
+					if (entry.signature[i] == signature[i]) {
+						agreeing++;
+					}
+				}
+				if (agreeing > bestAgreeing && entry.scope.equals(scope)) {
+					bestAgreeing = agreeing;
+					best = entry;
+				}
+			}
+		}
+		float similarity = bestAgreeing / (float) HASHES;
+		return best != null && similarity >= MIN_SIMILARITY ? new Match(best, similarity) : null;
+	}
+
+	/**
+	* Indexes a prompt whose slide was stored in the generation cache under slideKey.
+	* Call from a worker thread; the entry is appended to the index file.
+	*/
+	public synchronized void put(String prompt, String scope, String slideKey) {
+		ensureLoaded();
+		int[] signature = signatureOf(prompt);
+		if (signature == null) {
+			return;
+		}
+		Entry entry = new Entry(stored(prompt), scope, slideKey, signature);
+		add(entry);
+		append(RECORD_PUT, entry);
+	}
+
+	/**
+	* Drops an entry whose slide is no longer in the generation cache.
+	*/
+	public synchronized void remove(Entry entry) {
+		if (entries.remove(entry.slideKey) != null) {
+			unindex(entry);
+			append(RECORD_REMOVE, entry);
+		}
+	}
+
+	public synchronized int size() {
+		ensureLoaded();
+		return entries.size();
+	}
+
+	private static String stored(String prompt) {
+		String stored = prompt.trim();
+		return stored.length() > MAX_PROMPT_CHARS ? stored.substring(0, MAX_PROMPT_CHARS) : stored;
+	}
+
+	/**
+	* @return the prompt's words without case, punctuation, filler words and plural
+	* endings, or an empty list when nothing meaningful is left
+	*/
+	static List<String> normalize(String prompt) {
+		List<String> words = new ArrayList<>();
+		for (String word : prompt.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+			if (word.isEmpty() || FILLER_WORDS.contains(word)) {
+				continue;
+			}
+			if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+				word = word.endsWith("ies") ? word.substring(0, word.length() - 3) + "y" : word.substring(0, word.length() - 1);
+			}
+			words.add(word);
+		}
+		return words;
+	}
+
+	/**
+	* @return the MinHash signature over the prompt's words and the character trigrams
+	* of each word, or null when the prompt has no meaningful words
+	*/
+	static int[] signatureOf(String prompt) {
+		List<String> words = normalize(prompt);
+		if (words.isEmpty()) {
+			return null;
+		}
+		int[] signature = new int[HASHES];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		for (String word : words) {
+			mix(signature, word.hashCode());
+			String padded = ' ' + word + ' ';
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				mix(signature, padded.substring(i, i + 3).hashCode() * 31 + 7);
+			}
+		}
+		return signature;
+	}
+
+	private static void mix(int[] signature, int shingle) {
+		for (int i = 0; i < HASHES; i++) {
+			int h = shingle * SEEDS_A[i] + SEEDS_B[i];
+			h ^= h >>> 16;
+			h *= 0x85EBCA6B;
+			h ^= h >>> 13;
+			if (h < signature[i]) {
+				signature[i] = h;
+			}
+		}
+	}
+
+	private static long bandKey(String scope, int[] signature, int band) {
+		long key = scope.hashCode() * 31L + band;
+		for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+			key = key * 1000003L + signature[i];
+		}
+		return key;
+	}
+
+	private void add(Entry entry) {
+		Entry previous = entries.remove(entry.slideKey);
+		if (previous != null) {
+			unindex(previous);
+		}
+		entries.put(entry.slideKey, entry);
+		for (int band = 0; band < BANDS; band++) {
+			long key = bandKey(entry.scope, entry.signature, band);
+			List<Entry> bucket = buckets.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<>(1);
+				buckets.put(key, bucket);
+			}
+			bucket.add(entry);
+		}
+		if (entries.size() > MAX_ENTRIES) {
+			Entry oldest = entries.values().iterator().next();
+			entries.remove(oldest.slideKey);
+			unindex(oldest);
+		}
+	}
+
+	private void unindex(Entry entry) {
+		for (int band = 0; band < BANDS; band++) {
+			long key = bandKey(entry.scope, entry.signature, band);
+			List<Entry> bucket = buckets.get(key);
+			if (bucket != null) {
+				bucket.remove(entry);
+				if (bucket.isEmpty()) {
+					buckets.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	* Replays the index file. A record cut off by a crash ends the replay, and the
+	* file is then rewritten without it.
+	*/
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (file == null || !file.exists()) {
+			return;
+		}
+		boolean complete = true;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FILE_VERSION) {
+				file.delete();
+				return;
+			}
+			while (true) {
+				int type = in.read();
+				if (type < 0) {
+					break;
+				}
+				String prompt = in.readUTF();
+				String scope = in.readUTF();
+				String slideKey = in.readUTF();
+				int[] signature = new int[HASHES];
+				for (int j = 0; j < HASHES; j++) {
+					signature[j] = in.readInt();
+				}
+				records++;
+				if (type == RECORD_PUT) {
+					add(new Entry(prompt, scope, slideKey, signature));
+				} else {
+					Entry removed = entries.remove(slideKey);
+					if (removed != null) {
+						unindex(removed);
+					}
+				}
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Prompt index ends in an unreadable record: " + e.getMessage());
+			complete = false;
+		}
+		if (!complete || records - entries.size() > Math.max(MIN_STALE_RECORDS, entries.size())) {
+			compact();
+		}
+	}
+
+	private void append(byte type, Entry entry) {
+		if (file == null) {
+			return;
+		}
+		boolean header = !file.exists() || file.length() == 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+			if (header) {
+				out.writeInt(FILE_VERSION);
+			}
+			write(out, type, entry);
+		} catch (IOException e) {
+			Log.w(TAG, "Could not save the prompt index: " + e.getMessage());
+			return;
+		}
+		records++;
+		// Replaced, removed and evicted entries pile up as stale records
+		if (records - entries.size() > Math.max(MIN_STALE_RECORDS, entries.size())) {
+			compact();
+		}
+	}
+
+	/**
+	* Rewrites the index file with only the live entries.
+	*/
+	private void compact() {
+		if (file == null) {
+			return;
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(FILE_VERSION);
+			for (Entry entry : entries.values()) {
+				write(out, RECORD_PUT, entry);
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Could not save the prompt index: " + e.getMessage());
+			temp.delete();
+			return;
+		}
+		if (temp.renameTo(file)) {
+			records = entries.size();
+		} else {
+			temp.delete();
+		}
+	}
+
+	private static void write(DataOutputStream out, byte type, Entry entry) throws IOException {
+		out.writeByte(type);
+		out.writeUTF(entry.prompt);
+		out.writeUTF(entry.scope);
+		out.writeUTF(entry.slideKey);
+		for (int value : entry.signature) {
+			out.writeInt(value);
+		}
+	}
+}
@@ -137,10 +137,12 @@ public class ShapeElement extends SlideElement {
 	public JSONObject toJson() throws JSONException {
 		JSONObject json = new JSONObject();
 		json.put("type", "shape");
+		json.put("id", id);
 		json.put("x", x);
 		json.put("y", y);
 		json.put("width", width);
 		json.put("height", height);
+		json.put("rotation", rotation);
 		json.put("shapeType", shapeType);
 		json.put("color", String.format("#%06X", (0xFFFFFF & color)));
 		json.put("cornerRadius", cornerRadius);
@@ -150,6 +152,33 @@ public class ShapeElement extends SlideElement {
 		return json;
 	}
 	
+	@Override
+	public boolean setProperty(String property, Object value) {
+		switch (property) {
+			case "shapeType": shapeType = String.valueOf(value); break;
+			case "color": color = toColor(value); break;
+			case "strokeColor": strokeColor = toColor(value); break;
+			case "opacity": opacity = toFloat(value); break;
+			case "cornerRadius": cornerRadius = toFloat(value); break;
+			case "strokeWidth": strokeWidth = toFloat(value); break;
+			default:
+			if (!super.setProperty(property, value)) return false;
+			break;
+		}
+		fillPaint.setColor(color);
+		fillPaint.setAlpha((int) (opacity * 255));
+		strokePaint.setColor(strokeColor);
+		strokePaint.setStrokeWidth(strokeWidth);
+		createShapePath();
+		return true;
+	}
+	
+	@Override
+	protected void detachDrawingState() {
+		fillPaint = new Paint(fillPaint);
+		strokePaint = new Paint(strokePaint);
+	}
+	
 	@Override
 	public void draw(Canvas canvas) {
 		Log.d("ShapeElement", "Drawing shape element: " + shapeType + " at (" + x + ", " + y + ") with width " + width + " and height " + height);
@@ -0,0 +1,40 @@
+package com.slides.ai;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+/**
+* SharedHttpClient holds the one OkHttpClient used for all model and image traffic.
+*
+* Sharing a client shares its connection pool, so repeat prompts reuse warm TLS
+* connections (multiplexed over HTTP/2 where the server supports it) instead of
+* paying a handshake per request. OkHttp negotiates gzip transparently.
+*/
+public class SharedHttpClient {
+	private static final int CONNECT_TIMEOUT = 15000;
+	// Generous read timeout: model streams can pause between chunks
+	private static final int READ_TIMEOUT = 60000;
+	private static final int WRITE_TIMEOUT = 30000;
+	// Upper bound for a whole call, including a full streamed generation
+	private static final int CALL_TIMEOUT = 180000;
+	private static final int MAX_IDLE_CONNECTIONS = 5;
+	private static final long KEEP_ALIVE_MINUTES = 5;
+
+	private static OkHttpClient mInstance;
+
+	public static synchronized OkHttpClient getInstance() {
+		if (mInstance == null) {
+			mInstance = new OkHttpClient.Builder()
+			.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+			.connectTimeout(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
+			.readTimeout(READ_TIMEOUT, TimeUnit.MILLISECONDS)
+			.writeTimeout(WRITE_TIMEOUT, TimeUnit.MILLISECONDS)
+			.callTimeout(CALL_TIMEOUT, TimeUnit.MILLISECONDS)
+			.retryOnConnectionFailure(true)
+			.build();
+		}
+		return mInstance;
+	}
+}
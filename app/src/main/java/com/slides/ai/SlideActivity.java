@@ -3,6 +3,7 @@ package com.slides.ai;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.Manifest;
+import android.widget.ImageView;
 import android.widget.LinearLayout;
 import androidx.appcompat.app.AppCompatActivity;
 import android.content.Context;
@@ -54,9 +55,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.io.IOException;
 
 import androidx.viewpager2.widget.ViewPager2;
@@ -64,6 +72,7 @@ import androidx.viewpager2.widget.ViewPager2;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
 import com.slides.ai.qwen.QwenManager;
+import com.slides.ai.qwen.QwenSessionManager;
 
 public class SlideActivity extends AppCompatActivity implements SlideRenderer.ElementSelectionListener,
 CustomizationManager.ImageSelectionCallback, CodeFragment.CodeInteractionListener,
@@ -87,11 +96,42 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 	private SlideRenderer slideRenderer;
 	private NetworkManager networkManager;
 	private QwenManager qwenManager;
+	private final List<SlideGenerationProvider> providers = new ArrayList<>();
+	// The cache of each provider, where its generated slides are stored
+	private final Map<SlideGenerationProvider, CachingSlideProvider> slideCaches = new HashMap<>();
+	private QwenSlideProvider qwenSlideProvider;
+	// Slide edits run on their own providers, created when first needed
+	private SlideGenerationProvider geminiEditProvider;
+	private SlideGenerationProvider qwenEditProvider;
+	private SlideGenerationProvider geminiHedgeProvider;
+	private SlideGenerationProvider qwenHedgeProvider;
+	private GenerationCache generationCache;
+	private SemanticPromptCache semanticCache;
+	private DeckGenerator deckGenerator;
+	private RequestHedger requestHedger;
+	private ModelRouter modelRouter;
+	private ImagePrefetcher imagePrefetcher;
+	private ImageUrlValidator imageUrlValidator;
+	private VariantGenerator variantGenerator;
+	private VariantPicker variantPicker;
+	private final ConversationContext conversationContext = new ConversationContext();
 	private CustomizationManager customizationManager;
 	private ApiKeyManager apiKeyManager;
+	private EditJournal editJournal;
+	// Every write of the saved stacks runs here, in order, so none is lost to another
+	private final ExecutorService stackWriter = Executors.newSingleThreadExecutor();
 
 	private static final int SLIDE_WIDTH = 320;
 	private static final int SLIDE_HEIGHT = 200;
+	// Minimum spacing between deck slide requests, per provider
+	private static final long GEMINI_DECK_START_INTERVAL_MS = 1000;
+	private static final long QWEN_DECK_START_INTERVAL_MS = 500;
+	// Backup models raced against a slow primary of the other family
+	private static final String GEMINI_HEDGE_MODEL = "gemini-2.0-flash";
+	private static final String QWEN_HEDGE_MODEL = "qwen-turbo-2025-02-11";
+	// Sampling temperatures of Gemini slide variants, one per variant
+	private static final double[] VARIANT_TEMPERATURES = {0.7, 1.0, 0.4, 1.3};
+	private static final float THUMBNAIL_SCALE = 1.5f;
 	private static final int PICK_IMAGE_REQUEST = 1;
 	private static final int WRITE_EXTERNAL_STORAGE_PERMISSION = 2;
 	private SlideElement selectedElement;
@@ -124,6 +164,31 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 		apiKeyManager = new ApiKeyManager(this);
 		networkManager = new NetworkManager(apiKeyManager, imageCache, mainHandler, executorService);
 		qwenManager = new QwenManager(apiKeyManager, mainHandler, executorService);
+		imagePrefetcher = new ImagePrefetcher(this, mainHandler);
+		networkManager.setImagePrefetcher(imagePrefetcher);
+		qwenManager.setImagePrefetcher(imagePrefetcher);
+		qwenSlideProvider = new QwenSlideProvider(qwenManager,
+		new QwenSessionManager(this, qwenManager, mainHandler, executorService));
+		qwenSlideProvider.setDeckId(stackId);
+		qwenSlideProvider.prewarm();
+		generationCache = new GenerationCache(new File(getCacheDir(), "generations"));
+		semanticCache = new SemanticPromptCache(new File(getCacheDir(), "prompt_index.bin"));
+		// Telemetry sits behind the cache so cache hits do not count as model latency, and
+		// the deck context is added behind it too so resends still hit the cache
+		ModelTelemetry telemetry = ModelTelemetry.getInstance(this);
+		imageUrlValidator = new ImageUrlValidator(this);
+		addCachedProvider(new CachingSlideProvider(new ContextualSlideProvider(
+		new TelemetrySlideProvider(networkManager, telemetry), this::buildContextualPrompt),
+		generationCache, mainHandler, executorService));
+		addCachedProvider(new CachingSlideProvider(new ContextualSlideProvider(
+		new TelemetrySlideProvider(qwenSlideProvider, telemetry), this::buildContextualPrompt),
+		generationCache, mainHandler, executorService));
+		modelRouter = new ModelRouter(telemetry);
+		requestHedger = new RequestHedger(this, mainHandler);
+
+		if (stackId != null && !stackId.startsWith("temp_")) {
+			openEditJournal();
+		}
 
 		// Initialize slide renderer once we have the slides fragment
 		setupSlideRenderer();
@@ -205,12 +270,207 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 			ensureFragmentReferences();
 			if (slidesFragment != null) {
 				slidesFragment.getSlideRenderer().setElementUpdateListener(this);
+				slidesFragment.getSlideRenderer().setEditJournal(editJournal);
 				customizationManager = new CustomizationManager(this, slidesFragment.getSlideRenderer());
 				customizationManager.setImageSelectionCallback(this);
+				restoreSavedSlides();
 			}
 		}, 500); // Increased delay to ensure fragments are ready
 	}
 
+	private void openEditJournal() {
+		editJournal = new EditJournal(new File(getFilesDir(), "journal"), stackId);
+		editJournal.setCompactor(this::compactJournal);
+		if (slidesFragment != null && slidesFragment.getSlideRenderer() != null) {
+			slidesFragment.getSlideRenderer().setEditJournal(editJournal);
+		}
+	}
+
+	/**
+	 * Loads the saved slides of this stack, replays any journaled edits that were
+	 * not compacted before the last exit and shows the result.
+	 */
+	private void restoreSavedSlides() {
+		if (editJournal == null) {
+			return;
+		}
+		executorService.execute(() -> {
+			List<JSONObject> slides = loadSavedSlides();
+			if (slides.isEmpty()) {
+				return;
+			}
+			boolean assigned = false;
+			for (JSONObject slide : slides) {
+				try {
+					assigned |= ElementFactory.assignIds(slide);
+				} catch (JSONException e) {
+					Log.w("SlideActivity", "Could not assign ids: " + e.getMessage());
+				}
+			}
+			if (assigned) {
+				// Stacks saved before slides had ids keep the ones given now
+				List<String> slideStrings = new ArrayList<>();
+				for (JSONObject slide : slides) {
+					slideStrings.add(slide.toString());
+				}
+				editSavedStacks(stacksArray -> {
+					JSONObject stackObj = findSavedStack(stacksArray);
+					if (stackObj == null) {
+						return false;
+					}
+					stackObj.put("slides", new JSONArray(slideStrings));
+					return true;
+				});
+			}
+			List<EditJournal.Entry> entries = editJournal.readEntries();
+			if (!entries.isEmpty()) {
+				EditJournal.apply(slides, entries);
+				editJournal.compact();
+			}
+			mainHandler.post(() -> {
+				ensureFragmentReferences();
+				if (codeFragment == null || slidesFragment == null) {
+					return;
+				}
+				codeFragment.setCode(slides.get(0).toString());
+				for (int i = 1; i < slides.size(); i++) {
+					codeFragment.addSlideFromJson(slides.get(i).toString());
+				}
+				codeFragment.navigateToSlide(0);
+				slidesFragment.setSlides(slides);
+				slidesFragment.navigateToSlide(0);
+			});
+		});
+	}
+
+	private List<JSONObject> loadSavedSlides() {
+		List<JSONObject> slides = new ArrayList<>();
+		try {
+			JSONObject stackObj = findSavedStack(new JSONArray(getSharedPreferences("slide_stacks", MODE_PRIVATE).getString("stacks", "[]")));
+			if (stackObj != null) {
+				JSONArray slidesArray = stackObj.getJSONArray("slides");
+				for (int i = 0; i < slidesArray.length(); i++) {
+					slides.add(new JSONObject(slidesArray.getString(i)));
+				}
+			}
+		} catch (JSONException e) {
+			Log.e("SlideActivity", "Error loading slide stack: " + e.getMessage());
+		}
+		return slides;
+	}
+
+	private JSONObject findSavedStack(JSONArray stacksArray) throws JSONException {
+		for (int i = 0; i < stacksArray.length(); i++) {
+			JSONObject stackObj = stacksArray.getJSONObject(i);
+			if (stackObj.optString("id").equals(stackId)) {
+				return stackObj;
+			}
+		}
+		return null;
+	}
+
+	private interface StacksEdit {
+		/**
+		 * Changes the saved stacks in place.
+		 *
+		 * @return true if they changed and should be written
+		 */
+		boolean edit(JSONArray stacksArray) throws JSONException;
+	}
+
+	/**
+	 * Reads, edits and writes the saved stacks on the stack writer.
+	 *
+	 * @return whether the stacks were changed and written
+	 */
+	private Future<Boolean> editSavedStacks(StacksEdit edit) {
+		return stackWriter.submit(() -> {
+			android.content.SharedPreferences sharedPreferences = getSharedPreferences("slide_stacks", MODE_PRIVATE);
+			try {
+				JSONArray stacksArray = new JSONArray(sharedPreferences.getString("stacks", "[]"));
+				if (!edit.edit(stacksArray)) {
+					return false;
+				}
+				return sharedPreferences.edit().putString("stacks", stacksArray.toString()).commit();
+			} catch (JSONException e) {
+				Log.e("SlideActivity", "Error updating slide stacks: " + e.getMessage());
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Folds journal entries into the saved stack. Runs on the journal writer thread
+	 * and waits for the stack writer.
+	 *
+	 * @return the entries of slides the saved stack does not have yet, or null on failure
+	 */
+	private List<EditJournal.Entry> compactJournal(List<EditJournal.Entry> entries) {
+		List<EditJournal.Entry> unapplied = new ArrayList<>();
+		Future<Boolean> written;
+		try {
+			written = editSavedStacks(stacksArray -> {
+				unapplied.clear();
+				JSONObject stackObj = findSavedStack(stacksArray);
+				if (stackObj == null) {
+					unapplied.addAll(entries);
+					return false;
+				}
+				JSONArray slidesArray = stackObj.getJSONArray("slides");
+				List<JSONObject> slides = new ArrayList<>();
+				for (int i = 0; i < slidesArray.length(); i++) {
+					slides.add(new JSONObject(slidesArray.getString(i)));
+				}
+				unapplied.addAll(EditJournal.apply(slides, entries));
+
+				JSONArray compacted = new JSONArray();
+				for (JSONObject slide : slides) {
+					compacted.put(slide.toString());
+				}
+				stackObj.put("slides", compacted);
+				stackObj.put("lastModified", System.currentTimeMillis());
+				return true;
+			});
+		} catch (RejectedExecutionException e) {
+			// The editor is closing; the journal is replayed when the stack is opened again
+			return null;
+		}
+		try {
+			if (!written.get() && unapplied.size() != entries.size()) {
+				return null;
+			}
+			return unapplied;
+		} catch (ExecutionException e) {
+			Log.e("SlideActivity", "Error compacting edit journal: " + e.getMessage());
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the slides of the code tab. Slides and elements without ids get them
+	 * there first, so the saved stack, the journal and the renderer agree on them.
+	 */
+	private List<JSONObject> collectSlides() {
+		List<String> allSlides = codeFragment.getAllSlides();
+		List<JSONObject> slideObjects = new ArrayList<>();
+		for (int i = 0; i < allSlides.size(); i++) {
+			try {
+				JSONObject slide = new JSONObject(allSlides.get(i));
+				if (ElementFactory.assignIds(slide)) {
+					codeFragment.setSlideCode(i, slide.toString(2));
+				}
+				slideObjects.add(slide);
+			} catch (JSONException e) {
+				Log.e("SlideActivity", "Invalid JSON for slide: " + e.getMessage());
+				// Skip invalid slides but continue processing
+			}
+		}
+		return slideObjects;
+	}
+
 	@Override
 	public void onElementUpdated() {
         ensureFragmentReferences();
@@ -231,16 +491,7 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 			ensureFragmentReferences(); // Make sure we have fragment references
 			if (slidesFragment != null && codeFragment != null) {
 				// Get all slides from code fragment and update slides fragment
-				List<String> allSlides = codeFragment.getAllSlides();
-				List<JSONObject> slideObjects = new ArrayList<>();
-				for (String slide : allSlides) {
-					try {
-						slideObjects.add(new JSONObject(slide));
-					} catch (JSONException e) {
-						Log.e("SlideActivity", "Invalid JSON for slide: " + e.getMessage());
-						// Skip invalid slides but continue processing
-					}
-				}
+				List<JSONObject> slideObjects = collectSlides();
 				if (!slideObjects.isEmpty()) {
 					slidesFragment.setSlides(slideObjects);
 					slidesFragment.navigateToSlide(slideIndex);
@@ -249,6 +500,7 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 			
 			// Save the slide stack if it's temporary
 			saveSlideStackIfTemporary();
+			saveNewSlides();
 			
 			// Switch to slides tab to show the rendered slide
 			viewPager.setCurrentItem(0);
@@ -285,187 +537,576 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 	@Override
 	public void onChatPromptSent(String prompt, float canvasWidth, float canvasHeight) {
         ensureFragmentReferences();
-        String selectedModel = chatFragment.getSelectedModel();
-
-		if (selectedModel.startsWith("gemini")) {
-            if (networkManager != null) {
-                networkManager.sendPromptToGemini(prompt, slidesFragment.getSlideRenderer().getCanvasWidth(), slidesFragment.getSlideRenderer().getCanvasHeight(), new NetworkManager.ApiResponseCallback() {
-                    @Override
-                    public void onSuccess(String jsonStr) {
-                        handleSuccessfulResponse(jsonStr);
-                    }
+        String selectedModel = resolveSelectedModel();
 
-                    @Override
-                    public void onError(String errorMessage) {
-                        handleErrorResponse(errorMessage);
-                    }
-                });
-            } else {
-                handleErrorResponse("Network manager not available.");
-            }
-        } else if (selectedModel.startsWith("qwen") || selectedModel.startsWith("qwq")) {
-            if (qwenManager != null) {
-                qwenManager.createNewChat(new QwenManager.QwenCallback<com.slides.ai.qwen.QwenNewChatResponse>() {
-                    @Override
-                    public void onSuccess(com.slides.ai.qwen.QwenNewChatResponse response) {
-                        if (response != null && response.success && response.data != null) {
-                            qwenManager.getCompletion(response.data.id, null, prompt, selectedModel, slidesFragment.getSlideRenderer().getCanvasWidth(), slidesFragment.getSlideRenderer().getCanvasHeight(), new QwenManager.QwenCallback<String>() {
-                                @Override
-                                public void onSuccess(String jsonResponse) {
-                                    try {
-                                        String jsonStr = extractJsonFromResponse(jsonResponse);
-                                        handleSuccessfulResponse(jsonStr);
-                                    } catch (Exception e) {
-                                        Log.e("SlideActivity", "Error extracting JSON from Qwen response", e);
-                                        handleErrorResponse("Error extracting JSON from Qwen response: " + e.getMessage() + "\n\n" + jsonResponse);
-                                    }
-                                }
-
-                                @Override
-                                public void onError(String error) {
-                                    Log.e("SlideActivity", "Qwen completion error: " + error);
-                                    handleErrorResponse("Qwen API error: " + error);
-                                }
-                            });
-                        } else {
-                            Log.e("SlideActivity", "Qwen new chat response invalid: " + (response != null ? response.toString() : "null"));
-                            handleErrorResponse("Error creating new Qwen chat session.");
-                        }
-                    }
-
-                    @Override
-                    public void onError(String error) {
-                        Log.e("SlideActivity", "Qwen new chat error: " + error);
-                        handleErrorResponse("Qwen API error: " + error);
-                    }
-                });
-            } else {
-                Log.e("SlideActivity", "QwenManager is null");
-                handleErrorResponse("Qwen manager not available. Please restart the app.");
-            }
+        SlideGenerationProvider provider = findProvider(selectedModel);
+        if (provider == null) {
+            handleErrorResponse("No provider available for model " + selectedModel + ".");
+            return;
         }
-	}
 
-    private void handleSuccessfulResponse(String jsonStr) {
-        try {
-            // Parse the JSON and add it as a new slide
-            JSONObject slideData = new JSONObject(jsonStr);
+        if (canEditInPlace() && ConversationContext.isEditPrompt(prompt, slidesFragment.getSlideRenderer().getSlideData().toString())) {
+            conversationContext.recordPrompt(prompt);
+            editCurrentSlide(prompt, selectedModel);
+            return;
+        }
 
-            // Add to code fragment
-            ensureFragmentReferences();
-            if (codeFragment != null) {
-                if (codeFragment.isCurrentSlideDefault()) {
-                    codeFragment.setCode(jsonStr);
-                    onCodeSaved(jsonStr, 0);
+        conversationContext.recordPrompt(prompt);
+        float slideWidth = slidesFragment.getSlideRenderer().getCanvasWidth();
+        float slideHeight = slidesFragment.getSlideRenderer().getCanvasHeight();
+
+        // Scoped to the chat's choice, so "Auto" prompts match whichever model served them
+        String scope = SemanticPromptCache.scopeFor(chatFragment.getSelectedModel(), slideWidth, slideHeight,
+                SlideGenerationProvider.PROMPT_TEMPLATE_VERSION);
+        executorService.execute(() -> {
+            SemanticPromptCache.Match match = semanticCache.find(prompt, scope);
+            String similarSlide = null;
+            if (match != null) {
+                similarSlide = generationCache.get(match.entry.slideKey);
+                if (similarSlide == null) {
+                    semanticCache.remove(match.entry);
+                } else {
+                    similarSlide = imageUrlValidator.validate(similarSlide);
+                }
+            }
+            String slideJson = similarSlide;
+            mainHandler.post(() -> {
+                Runnable generate = () -> generateSlide(prompt, scope, selectedModel, provider, slideWidth, slideHeight);
+                if (slideJson == null) {
+                    generate.run();
+                } else if (match.entry.isFor(prompt)) {
+                    // The same prompt again gets its slide right away, like an exact cache hit
+                    handleSuccessfulResponse(slideJson);
                 } else {
-                    codeFragment.addSlideFromJson(jsonStr);
+                    offerSimilarSlide(match, slideJson, generate);
                 }
+            });
+        });
+	}
 
-                // Update slides fragment
-                if (slidesFragment != null) {
-                    List<String> allSlides = codeFragment.getAllSlides();
-                    List<JSONObject> slideObjects = new ArrayList<>();
-                    for (String slide : allSlides) {
-                        try {
-                            slideObjects.add(new JSONObject(slide));
-                        } catch (JSONException e) {
-                            Log.e("SlideActivity", "Invalid JSON for slide: " + e.getMessage());
-                        }
-                    }
-                    if (!slideObjects.isEmpty()) {
-                        slidesFragment.setSlides(slideObjects);
-                        slidesFragment.navigateToSlide(slideObjects.size() - 1); // Navigate to new slide
-                    }
+    private void generateSlide(String prompt, String scope, String selectedModel,
+            SlideGenerationProvider provider, float slideWidth, float slideHeight) {
+        StreamingPreview preview = new StreamingPreview();
+        SlideGenerationProvider.Callback callback = new SlideGenerationProvider.Callback() {
+            @Override
+            public void onSuccess(String slideJson) {
+                handleSuccessfulResponse(slideJson);
+                rememberPrompt(prompt, scope, slideCaches.get(provider).keyFor(prompt, selectedModel, slideWidth, slideHeight));
+            }
+
+            @Override
+            public void onError(String message) {
+                preview.cancel();
+                handleErrorResponse(message);
+            }
+        };
+
+        String backupModel = hedgeModelFor(selectedModel);
+        SlideGenerationProvider backupProvider = requestHedger.isEnabled() && backupModel != null
+                ? hedgeProviderFor(backupModel) : null;
+        if (backupProvider != null) {
+            requestHedger.generate(provider, selectedModel, backupProvider, backupModel, prompt, slideWidth, slideHeight, preview, callback);
+        } else {
+            requestHedger.cancel();
+            provider.generateSlide(prompt, selectedModel, slideWidth, slideHeight, preview, callback);
+        }
+    }
+
+    /**
+     * Offers the slide of a similar earlier prompt instead of generating one; the
+     * user can use it as it is or generate a new slide anyway.
+     */
+    private void offerSimilarSlide(SemanticPromptCache.Match match, String slideJson, Runnable generate) {
+        ImageView preview = new ImageView(this);
+        preview.setAdjustViewBounds(true);
+        int padding = dpToPx(16);
+        preview.setPadding(padding, padding, padding, 0);
+        renderThumbnail(slideJson, preview::setImageBitmap);
+
+        new MaterialAlertDialogBuilder(this)
+                .setTitle("A similar slide is ready")
+                .setMessage(String.format(Locale.US, "You asked for \"%s\" before (%.0f%% similar). Use that slide?",
+                        match.entry.prompt, match.similarity * 100))
+                .setView(preview)
+                .setPositiveButton("Use it", (dialog, which) -> handleSuccessfulResponse(slideJson))
+                .setNegativeButton("Generate new", (dialog, which) -> generate.run())
+                .setOnCancelListener(dialog -> generate.run())
+                .show();
+    }
+
+    /**
+     * Indexes a prompt so similar prompts can be answered with its slide later. The
+     * slide itself is the one the provider's cache stored under slideKey.
+     */
+    private void rememberPrompt(String prompt, String scope, String slideKey) {
+        executorService.execute(() -> semanticCache.put(prompt, scope, slideKey));
+    }
+
+    private boolean canEditInPlace() {
+        if (codeFragment == null || codeFragment.isCurrentSlideDefault()
+                || slidesFragment == null || slidesFragment.getSlideRenderer() == null) {
+            return false;
+        }
+        JSONObject slide = slidesFragment.getSlideRenderer().getSlideData();
+        return slide != null && slide.optJSONArray("elements") != null;
+    }
+
+    /**
+     * Asks the model for a patch against the current slide and applies it to the
+     * live elements, instead of generating the whole slide again.
+     */
+    private void editCurrentSlide(String prompt, String model) {
+        SlideGenerationProvider provider = editProviderFor(model);
+        if (provider == null) {
+            handleErrorResponse("No provider available for model " + model + ".");
+            return;
+        }
+        SlideRenderer renderer = slidesFragment.getSlideRenderer();
+        JSONObject slide = renderer.getSlideData();
+        String patchPrompt = SlidePatch.createPrompt(prompt, slide, SLIDE_WIDTH, SLIDE_HEIGHT);
+        provider.generateText(patchPrompt, model, new SlideGenerationProvider.Callback() {
+            @Override
+            public void onSuccess(String answer) {
+                // Another slide may have been opened while the model was answering
+                if (renderer.getSlideData() != slide) {
+                    chatFragment.addAiResponse("The slide changed before the edit arrived, so it was not applied.");
+                    return;
+                }
+                try {
+                    int applied = renderer.applyPatch(SlidePatch.parse(answer, slide));
+                    viewPager.setCurrentItem(0);
+                    chatFragment.addAiResponse(applied > 0
+                            ? "Done! I updated the current slide (" + applied + (applied == 1 ? " change)." : " changes).")
+                            : "I couldn't apply that change to the slide.");
+                } catch (JSONException e) {
+                    Log.w("SlideActivity", "Invalid edit patch: " + e.getMessage() + "\n" + answer);
+                    handleErrorResponse("The edit could not be applied: " + e.getMessage());
                 }
             }
 
-            // Switch to slides tab to show the result
-            viewPager.setCurrentItem(0);
+            @Override
+            public void onError(String message) {
+                handleErrorResponse(message);
+            }
+        });
+    }
 
-            // Add AI response to chat
-            if (chatFragment != null) {
-                chatFragment.addAiResponse("Great! I've created a slide based on your request. You can view it in the Slides tab and edit the JSON code in the Code tab if needed.");
+    /**
+     * @return the provider for slide edits with the given model. Providers serve one
+     * request at a time, so edits get their own and a slide in flight keeps going.
+     */
+    private SlideGenerationProvider editProviderFor(String model) {
+        if (networkManager.supportsModel(model)) {
+            if (geminiEditProvider == null) {
+                geminiEditProvider = new NetworkManager(apiKeyManager, imageCache, mainHandler, executorService);
             }
+            return geminiEditProvider;
+        }
+        if (qwenSlideProvider.supportsModel(model)) {
+            if (qwenEditProvider == null) {
+                qwenEditProvider = new QwenSlideProvider(qwenManager, null);
+            }
+            return qwenEditProvider;
+        }
+        return null;
+    }
 
-        } catch (JSONException e) {
-            Log.e("SlideActivity", "Error parsing generated JSON: " + e.getMessage());
-            if (chatFragment != null) {
-                chatFragment.addAiResponse("I generated a slide, but there was an error parsing the JSON. Please check the Code tab and fix any formatting issues.");
+    /**
+     * Adds a compact description of the deck, and of the current slide when the
+     * prompt edits it, to a prompt.
+     */
+    private String buildContextualPrompt(String prompt) {
+        if (codeFragment == null) {
+            return prompt;
+        }
+        List<String> slides = codeFragment.getAllSlides();
+        if (slides.size() == 1 && codeFragment.isCurrentSlideDefault()) {
+            slides = new ArrayList<>();
+        }
+        return conversationContext.build(prompt, slides, codeFragment.getCurrentSlideIndex());
+    }
+
+    /**
+     * @return the provider for hedged attempts with the given model. It is the hedger's
+     * own, so a backup attempt neither merges with nor cancels another request, and
+     * it skips the generation cache the primary attempt has already missed.
+     */
+    private SlideGenerationProvider hedgeProviderFor(String model) {
+        if (networkManager.supportsModel(model)) {
+            if (geminiHedgeProvider == null) {
+                geminiHedgeProvider = checkingImages(new ContextualSlideProvider(new TelemetrySlideProvider(
+                        new NetworkManager(apiKeyManager, imageCache, mainHandler, executorService),
+                        ModelTelemetry.getInstance(this)), this::buildContextualPrompt));
+            }
+            return geminiHedgeProvider;
+        }
+        if (qwenSlideProvider.supportsModel(model)) {
+            if (qwenHedgeProvider == null) {
+                qwenHedgeProvider = checkingImages(new ContextualSlideProvider(new TelemetrySlideProvider(
+                        new QwenSlideProvider(qwenManager, null),
+                        ModelTelemetry.getInstance(this)), this::buildContextualPrompt));
             }
+            return qwenHedgeProvider;
         }
+        return null;
     }
 
-    private void handleErrorResponse(String errorMessage) {
-        Log.e("SlideActivity", "Chat API error: " + errorMessage);
-        if (chatFragment != null) {
-            chatFragment.addAiResponse("An error occurred: " + errorMessage);
+    /**
+     * @return the model to race against a slow request to the given one, or null
+     * when the other family has no credentials to use
+     */
+    private String hedgeModelFor(String model) {
+        if (networkManager.supportsModel(model)) {
+            return QWEN_HEDGE_MODEL;
         }
+        return apiKeyManager.getKeyPool().isEmpty() ? null : GEMINI_HEDGE_MODEL;
     }
 
-    private String extractJsonFromResponse(String response) {
-        // First try to find JSON wrapped in markdown code blocks
-        if (response.contains("```json")) {
-            int startIdx = response.indexOf("```json") + 7;
-            int endIdx = response.lastIndexOf("```");
-            if (endIdx > startIdx) {
-                String jsonStr = response.substring(startIdx, endIdx).trim();
-                if (isValidJson(jsonStr)) {
-                    return jsonStr;
+    @Override
+    public void onDeckPromptSent(String topic, int slideCount) {
+        ensureFragmentReferences();
+        String selectedModel = resolveSelectedModel();
+
+        long startInterval;
+        DeckGenerator.ProviderFactory factory;
+        if (networkManager.supportsModel(selectedModel)) {
+            startInterval = GEMINI_DECK_START_INTERVAL_MS;
+            factory = () -> checkingImages(new CachingSlideProvider(new NetworkManager(apiKeyManager, imageCache, mainHandler, executorService),
+                    generationCache, mainHandler, executorService));
+        } else if (qwenSlideProvider.supportsModel(selectedModel)) {
+            startInterval = QWEN_DECK_START_INTERVAL_MS;
+            factory = () -> checkingImages(new CachingSlideProvider(new QwenSlideProvider(qwenManager, null),
+                    generationCache, mainHandler, executorService));
+        } else {
+            handleErrorResponse(ChatFragment.REPLY_DECK, "No provider available for model " + selectedModel + ".");
+            return;
+        }
+
+        if (deckGenerator != null) {
+            deckGenerator.cancel();
+        }
+        deckGenerator = new DeckGenerator(factory, mainHandler, DeckGenerator.DEFAULT_MAX_CONCURRENCY, startInterval);
+        deckGenerator.generate(topic, slideCount, selectedModel, slidesFragment.getSlideRenderer().getCanvasWidth(),
+                slidesFragment.getSlideRenderer().getCanvasHeight(), new DeckGenerator.Listener() {
+            @Override
+            public void onOutline(List<String> titles) {
+                StringBuilder message = new StringBuilder("Here is the plan for your deck:\n");
+                for (int i = 0; i < titles.size(); i++) {
+                    message.append(i + 1).append(". ").append(titles.get(i)).append('\n');
                 }
+                message.append("Generating the slides now...");
+                chatFragment.addAiResponse(ChatFragment.REPLY_DECK, message.toString());
             }
-        }
 
-        // Try to find JSON wrapped in any code blocks
-        if (response.contains("```")) {
-            int startIdx = response.indexOf("```");
-            int secondStart = response.indexOf('\n', startIdx);
-            if (secondStart > startIdx) {
-                int endIdx = response.lastIndexOf("```");
-                if (endIdx > secondStart) {
-                    String jsonStr = response.substring(secondStart + 1, endIdx).trim();
-                    if (isValidJson(jsonStr)) {
-                        return jsonStr;
+            @Override
+            public void onSlideReady(int index, String slideJson) {
+                try {
+                    addGeneratedSlide(slideJson);
+                    if (index == 0) {
+                        viewPager.setCurrentItem(0);
                     }
+                } catch (JSONException e) {
+                    Log.e("SlideActivity", "Error parsing generated deck slide: " + e.getMessage());
+                    chatFragment.addAiMessage("Slide " + (index + 1) + " came back as invalid JSON and was skipped.");
+                }
+            }
+
+            @Override
+            public void onSlideFailed(int index, String title, String error) {
+                chatFragment.addAiMessage("Slide " + (index + 1) + " (\"" + title + "\") could not be generated: " + error);
+            }
+
+            @Override
+            public void onComplete(int generated, int failed) {
+                chatFragment.addAiResponse(ChatFragment.REPLY_DECK, failed == 0
+                        ? "Your deck is ready: " + generated + " slides were added."
+                        : "Your deck is ready: " + generated + " slides were added, " + failed + " failed.");
+            }
+
+            @Override
+            public void onError(String message) {
+                handleErrorResponse(ChatFragment.REPLY_DECK, message);
+            }
+        });
+    }
+
+    @Override
+    public void onVariantsPromptSent(String prompt, int variantCount) {
+        ensureFragmentReferences();
+        String selectedModel = resolveSelectedModel();
+
+        // Variants are meant to differ, so they bypass the generation cache
+        List<VariantGenerator.Variant> variants = new ArrayList<>();
+        if (networkManager.supportsModel(selectedModel)) {
+            // A single Gemini model to choose from, so the sampling temperature varies instead
+            for (int i = 0; i < variantCount && i < VARIANT_TEMPERATURES.length; i++) {
+                NetworkManager variantManager = new NetworkManager(apiKeyManager, imageCache, mainHandler, executorService);
+                variantManager.setTemperature(VARIANT_TEMPERATURES[i]);
+                variants.add(new VariantGenerator.Variant(checkingImages(variantManager), selectedModel, "Temperature " + VARIANT_TEMPERATURES[i]));
+            }
+        } else if (qwenSlideProvider.supportsModel(selectedModel)) {
+            // The selected model first, then the next Qwen models of the chat's list
+            List<String> models = new ArrayList<>();
+            models.add(selectedModel);
+            for (String model : ChatFragment.MODELS) {
+                if (models.size() < variantCount && !models.contains(model) && qwenSlideProvider.supportsModel(model)) {
+                    models.add(model);
                 }
             }
+            for (String model : models) {
+                variants.add(new VariantGenerator.Variant(checkingImages(new QwenSlideProvider(qwenManager, null)), model, model));
+            }
+        } else {
+            handleErrorResponse(ChatFragment.REPLY_VARIANTS, "No provider available for model " + selectedModel + ".");
+            return;
         }
+        if (variants.isEmpty()) {
+            handleErrorResponse(ChatFragment.REPLY_VARIANTS, "There are no variants to generate for model " + selectedModel + ".");
+            return;
+        }
+
+        String contextualPrompt = buildContextualPrompt(prompt);
+        conversationContext.recordPrompt(prompt);
 
-        // Find the first complete JSON object
-        int startIdx = response.indexOf('{');
-        if (startIdx != -1) {
-            int braceCount = 0;
-            int endIdx = startIdx;
-            
-            for (int i = startIdx; i < response.length(); i++) {
-                char c = response.charAt(i);
-                if (c == '{') {
-                    braceCount++;
-                } else if (c == '}') {
-                    braceCount--;
-                    if (braceCount == 0) {
-                        endIdx = i;
-                        break;
+        if (variantGenerator == null) {
+            variantGenerator = new VariantGenerator();
+        }
+        if (variantPicker != null) {
+            variantPicker.dismiss();
+        }
+        List<String> labels = new ArrayList<>();
+        for (VariantGenerator.Variant variant : variants) {
+            labels.add(variant.label);
+        }
+        String[] results = new String[variants.size()];
+        VariantPicker picker = new VariantPicker(this, labels, new VariantPicker.Listener() {
+            @Override
+            public void onVariantPicked(int index) {
+                variantGenerator.cancel();
+                variantPicker = null;
+                handleSuccessfulResponse(ChatFragment.REPLY_VARIANTS, results[index]);
+            }
+
+            @Override
+            public void onDismissed() {
+                variantGenerator.cancel();
+                variantPicker = null;
+                chatFragment.addAiResponse(ChatFragment.REPLY_VARIANTS, "Okay, I discarded the variants.");
+            }
+        });
+        variantPicker = picker;
+        picker.show();
+
+        variantGenerator.generate(variants, contextualPrompt, slidesFragment.getSlideRenderer().getCanvasWidth(),
+                slidesFragment.getSlideRenderer().getCanvasHeight(), new VariantGenerator.Listener() {
+            @Override
+            public void onVariantReady(int index, String slideJson) {
+                results[index] = slideJson;
+                renderThumbnail(slideJson, thumbnail -> {
+                    if (picker.isShowing()) {
+                        picker.setThumbnail(index, thumbnail);
                     }
+                });
+            }
+
+            @Override
+            public void onVariantFailed(int index, String error) {
+                picker.setFailed(index, error);
+            }
+
+            @Override
+            public void onComplete(int succeeded) {
+                if (succeeded == 0 && picker.isShowing()) {
+                    picker.dismiss();
+                    variantPicker = null;
+                    handleErrorResponse(ChatFragment.REPLY_VARIANTS, "None of the variants could be generated.");
                 }
             }
-            
-            if (braceCount == 0 && endIdx > startIdx) {
-                String jsonStr = response.substring(startIdx, endIdx + 1);
-                if (isValidJson(jsonStr)) {
-                    return jsonStr;
+        });
+    }
+
+    private interface ThumbnailCallback {
+        void onThumbnail(Bitmap thumbnail);
+    }
+
+    /**
+     * Draws slide JSON to a small bitmap in the background and reports it on the main thread.
+     */
+    private void renderThumbnail(String slideJson, ThumbnailCallback callback) {
+        SlideSnapshot snapshot;
+        try {
+            snapshot = SlideSnapshot.of(new JSONObject(slideJson), this, imageCache);
+        } catch (JSONException e) {
+            Log.w("SlideActivity", "Cannot draw a thumbnail: " + e.getMessage());
+            return;
+        }
+        executorService.execute(() -> {
+            Bitmap thumbnail = Bitmap.createBitmap((int) (SLIDE_WIDTH * THUMBNAIL_SCALE),
+                    (int) (SLIDE_HEIGHT * THUMBNAIL_SCALE), Bitmap.Config.RGB_565);
+            Canvas canvas = new Canvas(thumbnail);
+            canvas.scale(THUMBNAIL_SCALE, THUMBNAIL_SCALE);
+            snapshot.draw(canvas);
+            mainHandler.post(() -> callback.onThumbnail(thumbnail));
+        });
+    }
+
+    /**
+     * @return the model chosen in the chat or, for "Auto", the model the router picks
+     * among those with credentials to use
+     */
+    private String resolveSelectedModel() {
+        String selected = chatFragment.getSelectedModel();
+        if (!ChatFragment.AUTO_MODEL.equals(selected)) {
+            return selected;
+        }
+        List<String> candidates = new ArrayList<>();
+        for (String model : ChatFragment.MODELS) {
+            if (findProvider(model) == null
+                    || (networkManager.supportsModel(model) && apiKeyManager.getKeyPool().isEmpty())) {
+                continue;
+            }
+            candidates.add(model);
+        }
+        String model = modelRouter.choose(candidates);
+        return model != null ? model : selected;
+    }
+
+    /**
+     * Wraps a provider so dead image URLs in its slides are replaced before they are shown.
+     */
+    private void addCachedProvider(CachingSlideProvider cachingProvider) {
+        SlideGenerationProvider provider = checkingImages(cachingProvider);
+        providers.add(provider);
+        slideCaches.put(provider, cachingProvider);
+    }
+
+    private SlideGenerationProvider checkingImages(SlideGenerationProvider provider) {
+        return new ImageCheckingSlideProvider(provider, imageUrlValidator, mainHandler, executorService);
+    }
+
+    private SlideGenerationProvider findProvider(String model) {
+        for (SlideGenerationProvider provider : providers) {
+            if (provider.supportsModel(model)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shows a generated slide while it streams in: the slides tab switches to an
+     * empty preview on the first complete element, which the final result replaces.
+     */
+    private class StreamingPreview implements SlideStreamParser.Listener {
+        private boolean started = false;
+        private String pendingBackground;
+
+        @Override
+        public void onBackgroundColor(String color) {
+            if (started) {
+                slidesFragment.setStreamedBackground(color);
+            } else {
+                pendingBackground = color;
+            }
+        }
+
+        @Override
+        public void onElement(int index, JSONObject element) {
+            ensureFragmentReferences();
+            if (slidesFragment == null || slidesFragment.getSlideRenderer() == null) {
+                return;
+            }
+            if (!started) {
+                started = true;
+                slidesFragment.beginStreamingPreview();
+                if (pendingBackground != null) {
+                    slidesFragment.setStreamedBackground(pendingBackground);
                 }
+                viewPager.setCurrentItem(0);
+            }
+            slidesFragment.appendStreamedElement(element);
+        }
+
+        @Override
+        public void onText(String delta) {
+            if (chatFragment != null) {
+                chatFragment.appendStreamedText(delta);
             }
         }
 
-        throw new IllegalArgumentException("No valid JSON found in response: " + response);
+        void cancel() {
+            if (started && slidesFragment != null) {
+                started = false;
+                slidesFragment.cancelStreamingPreview();
+            }
+        }
     }
 
-    private boolean isValidJson(String jsonStr) {
+    private void handleSuccessfulResponse(String jsonStr) {
+        handleSuccessfulResponse(ChatFragment.REPLY_SLIDE, jsonStr);
+    }
+
+    /**
+     * @param reply the request the slide answers, see {@link ChatFragment#addAiResponse(int, String)}
+     */
+    private void handleSuccessfulResponse(int reply, String jsonStr) {
         try {
-            new org.json.JSONObject(jsonStr);
-            return true;
-        } catch (org.json.JSONException e) {
-            return false;
+            addGeneratedSlide(jsonStr);
+
+            // Switch to slides tab to show the result
+            viewPager.setCurrentItem(0);
+
+            // Add AI response to chat
+            if (chatFragment != null) {
+                chatFragment.addAiResponse(reply, "Great! I've created a slide based on your request. You can view it in the Slides tab and edit the JSON code in the Code tab if needed.");
+            }
+
+        } catch (JSONException e) {
+            Log.e("SlideActivity", "Error parsing generated JSON: " + e.getMessage());
+            if (chatFragment != null) {
+                chatFragment.addAiResponse(reply, "I generated a slide, but there was an error parsing the JSON. Please check the Code tab and fix any formatting issues.");
+            }
+        }
+    }
+
+    /**
+     * Appends a generated slide to the deck, replacing the default slide if that is
+     * all there is, and shows it in the slides tab.
+     */
+    private void addGeneratedSlide(String jsonStr) throws JSONException {
+        // Parse the JSON and add it as a new slide
+        new JSONObject(jsonStr);
+
+        // Add to code fragment
+        ensureFragmentReferences();
+        if (codeFragment != null) {
+            if (codeFragment.isCurrentSlideDefault()) {
+                codeFragment.setCode(jsonStr);
+                onCodeSaved(jsonStr, 0);
+            } else {
+                codeFragment.addSlideFromJson(jsonStr);
+            }
+
+            // Update slides fragment
+            if (slidesFragment != null) {
+                List<JSONObject> slideObjects = collectSlides();
+                if (!slideObjects.isEmpty()) {
+                    slidesFragment.setSlides(slideObjects);
+                    slidesFragment.navigateToSlide(slideObjects.size() - 1); // Navigate to new slide
+                }
+            }
+            saveNewSlides();
+        }
+    }
+
+    private void handleErrorResponse(String errorMessage) {
+        handleErrorResponse(ChatFragment.REPLY_SLIDE, errorMessage);
+    }
+
+    private void handleErrorResponse(int reply, String errorMessage) {
+        Log.e("SlideActivity", "Chat API error: " + errorMessage);
+        if (chatFragment != null) {
+            chatFragment.addAiResponse(reply, "An error occurred: " + errorMessage);
         }
     }
 
@@ -475,23 +1116,21 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 			try {
 				// Change the ID to a permanent one
 				stackId = "stack_" + System.currentTimeMillis();
+				if (qwenSlideProvider != null) {
+					qwenSlideProvider.setDeckId(stackId);
+				}
 
 				// Get current slide data from code fragment
 				ensureFragmentReferences();
 				if (codeFragment != null) {
 					List<String> allSlides = codeFragment.getAllSlides();
 					if (!allSlides.isEmpty()) {
-						// Save to shared preferences
-						android.content.SharedPreferences sharedPreferences = getSharedPreferences("slide_stacks", MODE_PRIVATE);
-						String stacksJson = sharedPreferences.getString("stacks", "[]");
-
-						JSONArray stacksArray = new JSONArray(stacksJson);
-
 						// Create new stack object
 						JSONObject stackObj = new JSONObject();
 						stackObj.put("id", stackId);
 						stackObj.put("name", stackName);
 						stackObj.put("createdAt", System.currentTimeMillis());
+						stackObj.put("lastModified", System.currentTimeMillis());
 
 						// Add slides array
 						JSONArray slidesArray = new JSONArray();
@@ -500,13 +1139,14 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 						}
 						stackObj.put("slides", slidesArray);
 
-						// Add to stacks array
-						stacksArray.put(stackObj);
+						// Add to stacks array and save back to preferences
+						editSavedStacks(stacksArray -> {
+							stacksArray.put(stackObj);
+							return true;
+						});
 
-						// Save back to preferences
-						sharedPreferences.edit()
-							.putString("stacks", stacksArray.toString())
-							.apply();
+						// Edits to a saved stack are journaled from now on
+						openEditJournal();
 					}
 				}
 			} catch (JSONException e) {
@@ -515,21 +1155,94 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 		}
 	}
 
+	/**
+	 * Adds the slides the saved stack does not have yet, so their journaled edits
+	 * can be folded in. Slides it already has are kept as saved.
+	 */
+	private void saveNewSlides() {
+		ensureFragmentReferences();
+		if (stackId == null || stackId.startsWith("temp_") || codeFragment == null) {
+			return;
+		}
+		List<String> allSlides = codeFragment.getAllSlides();
+		editSavedStacks(stacksArray -> {
+			JSONObject stackObj = findSavedStack(stacksArray);
+			if (stackObj == null) {
+				return false;
+			}
+			JSONArray slidesArray = stackObj.getJSONArray("slides");
+			Set<String> savedIds = new HashSet<>();
+			for (int i = 0; i < slidesArray.length(); i++) {
+				savedIds.add(new JSONObject(slidesArray.getString(i)).optString("id"));
+			}
+			boolean added = false;
+			for (String slide : allSlides) {
+				String id;
+				try {
+					id = new JSONObject(slide).optString("id");
+				} catch (JSONException e) {
+					continue;
+				}
+				if (!id.isEmpty() && savedIds.add(id)) {
+					slidesArray.put(slide);
+					added = true;
+				}
+			}
+			if (added) {
+				stackObj.put("lastModified", System.currentTimeMillis());
+			}
+			return added;
+		});
+	}
+
 	@Override
 	public boolean onSupportNavigateUp() {
 		finish();
 		return true;
 	}
 
+	@Override
+	protected void onPause() {
+		super.onPause();
+		if (editJournal != null) {
+			editJournal.compact();
+		}
+	}
+
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
-		if (networkManager != null) {
-			networkManager.cleanup();
+		if (editJournal != null) {
+			editJournal.close();
+		}
+		for (SlideGenerationProvider provider : providers) {
+			provider.cancel();
+		}
+		if (geminiEditProvider != null) {
+			geminiEditProvider.cancel();
+		}
+		if (qwenEditProvider != null) {
+			qwenEditProvider.cancel();
+		}
+		if (deckGenerator != null) {
+			deckGenerator.cancel();
+		}
+		if (requestHedger != null) {
+			requestHedger.cancel();
+		}
+		if (imagePrefetcher != null) {
+			imagePrefetcher.cancel();
+		}
+		if (variantGenerator != null) {
+			variantGenerator.cancel();
+		}
+		if (variantPicker != null) {
+			variantPicker.dismiss();
 		}
 		if (executorService != null) {
 			executorService.shutdown();
 		}
+		stackWriter.shutdown();
 	}
 
 	private int dpToPx(float dp) {
@@ -565,11 +1278,30 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_slide, menu);
+        menu.findItem(R.id.action_hedging).setChecked(requestHedger.isEnabled());
         return true;
     }
 
 	@Override
 	public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+		if (item.getItemId() == R.id.action_undo || item.getItemId() == R.id.action_redo) {
+			ensureFragmentReferences();
+			if (slidesFragment != null && slidesFragment.getSlideRenderer() != null) {
+				SlideRenderer renderer = slidesFragment.getSlideRenderer();
+				boolean applied = item.getItemId() == R.id.action_undo ? renderer.undo() : renderer.redo();
+				if (!applied) {
+					showMessage(item.getItemId() == R.id.action_undo ? "Nothing to undo" : "Nothing to redo");
+				}
+			}
+			return true;
+		}
+		if (item.getItemId() == R.id.action_hedging) {
+			boolean enabled = !item.isChecked();
+			item.setChecked(enabled);
+			requestHedger.setEnabled(enabled);
+			showMessage(enabled ? "Slow requests will be raced against a second model" : "Request hedging off");
+			return true;
+		}
 		if (item.getItemId() == R.id.action_download) {
 			showDownloadOptionsDialog();
 			return true;
@@ -720,13 +1452,15 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 	}
 
 	private void exportToImage() {
+		ensureFragmentReferences();
+		if (slidesFragment == null || slidesFragment.getSlideRenderer() == null) {
+			Toast.makeText(this, "No slide to export", Toast.LENGTH_SHORT).show();
+			return;
+		}
+		// Export from an immutable snapshot so editing can continue meanwhile
+		SlideSnapshot snapshot = slidesFragment.getSlideRenderer().snapshot();
 		executorService.execute(() -> {
 			try {
-				ensureFragmentReferences();
-				if (slidesFragment == null || slidesFragment.getSlideRenderer() == null) {
-					mainHandler.post(() -> Toast.makeText(this, "No slide to export", Toast.LENGTH_SHORT).show());
-					return;
-				}
 
 				// Create bitmap from slide
 				int width = (int)(SLIDE_WIDTH * pendingExportScale);
@@ -745,7 +1479,7 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 				canvas.scale(pendingExportScale, pendingExportScale);
 
 				// Draw slide content
-				slidesFragment.getSlideRenderer().draw(canvas);
+				snapshot.draw(canvas);
 
 				// Save to storage
 				String fileName = "slide_" + System.currentTimeMillis() + 
@@ -764,6 +1498,8 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 			} catch (Exception e) {
 				Log.e("SlideActivity", "Export error: " + e.getMessage());
 				mainHandler.post(() -> Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+			} finally {
+				snapshot.release();
 			}
 		});
 	}
@@ -817,13 +1553,15 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 	}
 
 	private void exportToPdf() {
+		ensureFragmentReferences();
+		if (slidesFragment == null || slidesFragment.getSlideRenderer() == null) {
+			Toast.makeText(this, "No slide to export", Toast.LENGTH_SHORT).show();
+			return;
+		}
+		// Export from an immutable snapshot so editing can continue meanwhile
+		SlideSnapshot snapshot = slidesFragment.getSlideRenderer().snapshot();
 		executorService.execute(() -> {
 			try {
-				ensureFragmentReferences();
-				if (slidesFragment == null || slidesFragment.getSlideRenderer() == null) {
-					mainHandler.post(() -> Toast.makeText(this, "No slide to export", Toast.LENGTH_SHORT).show());
-					return;
-				}
 
 				// Create PDF document
 				PdfDocument pdfDocument = new PdfDocument();
@@ -835,7 +1573,7 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 				canvas.scale(2.0f, 2.0f); // Scale up for better quality
 
 				// Draw slide content
-				slidesFragment.getSlideRenderer().draw(canvas);
+				snapshot.draw(canvas);
 
 				pdfDocument.finishPage(page);
 
@@ -856,6 +1594,8 @@ SlidesFragment.SlideNavigationListener, ChatFragment.ChatInteractionListener, Sl
 			} catch (Exception e) {
 				Log.e("SlideActivity", "PDF export error: " + e.getMessage());
 				mainHandler.post(() -> Toast.makeText(this, "PDF export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+			} finally {
+				snapshot.release();
 			}
 		});
 	}
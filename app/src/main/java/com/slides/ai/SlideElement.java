@@ -2,26 +2,69 @@ package com.slides.ai;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 /**
  * Base class for all slide elements
  */
-public abstract class SlideElement {
+public abstract class SlideElement implements Cloneable {
+    protected String id;
     protected int x, y, width, height;
     public boolean lockAspectRatio = true;
     public float rotation = 0;
+    // Pixels per JSON unit, used to write geometry edits back in the slide's own units
+    protected float pxPerUnit;
 
     public SlideElement(JSONObject json, Context context) throws JSONException {
+        id = json.optString("id", "");
+        if (id.isEmpty()) {
+            id = ElementFactory.newId("el");
+            json.put("id", id);
+        }
         x = dpToPx(json.getInt("x"), context);
         y = dpToPx(json.getInt("y"), context);
         width = dpToPx(json.getInt("width"), context);
         height = dpToPx(json.getInt("height"), context);
+        rotation = (float) json.optDouble("rotation", 0);
+        pxPerUnit = Math.max(dpToPx(1000, context) / 1000f, 0.001f);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Converts a pixel value of this element back to the units used in the slide JSON.
+     */
+    public int toUnits(float px) {
+        return Math.round(px / pxPerUnit);
     }
     
     public abstract void draw(Canvas canvas);
-    
+
+    /**
+     * Returns a detached copy of this element that later edits of the original
+     * do not affect. Used to detach an element from a {@link SlideSnapshot}.
+     */
+    public SlideElement copy() {
+        try {
+            SlideElement copy = (SlideElement) super.clone();
+            copy.detachDrawingState();
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Called on a fresh copy to replace drawing objects that the original
+     * keeps mutating in place, such as paints.
+     */
+    protected void detachDrawingState() {
+    }
+
     public boolean containsPoint(float px, float py) {
         return px >= x && px <= x + width && py >= y && py <= y + height;
     }
@@ -36,4 +79,71 @@ public abstract class SlideElement {
     
     // Add abstract toJson method
     public abstract JSONObject toJson() throws JSONException;
+
+    /**
+     * Returns the current value of a property in the same form toJson() uses,
+     * except that geometry is expressed in slide units rather than pixels.
+     */
+    public Object getProperty(String property) throws JSONException {
+        switch (property) {
+            case "x": return toUnits(x);
+            case "y": return toUnits(y);
+            case "width": return toUnits(width);
+            case "height": return toUnits(height);
+            case "rotation": return rotation;
+            default: return toJson().opt(property);
+        }
+    }
+
+    /**
+     * Captures every editable property of the element, geometry in slide units.
+     */
+    public JSONObject captureProperties() throws JSONException {
+        JSONObject state = toJson();
+        state.remove("type");
+        state.remove("id");
+        state.put("x", toUnits(x));
+        state.put("y", toUnits(y));
+        state.put("width", toUnits(width));
+        state.put("height", toUnits(height));
+        return state;
+    }
+
+    /**
+     * Applies a property value to the live element, as produced by getProperty().
+     * Subclasses handle their own properties and refresh cached layouts and paints.
+     *
+     * @return true if the property is known to this element
+     */
+    public boolean setProperty(String property, Object value) {
+        switch (property) {
+            case "x": x = Math.round(toFloat(value) * pxPerUnit); return true;
+            case "y": y = Math.round(toFloat(value) * pxPerUnit); return true;
+            case "width": width = Math.max(1, Math.round(toFloat(value) * pxPerUnit)); return true;
+            case "height": height = Math.max(1, Math.round(toFloat(value) * pxPerUnit)); return true;
+            case "rotation": rotation = toFloat(value); return true;
+            default: return false;
+        }
+    }
+
+    protected static float toFloat(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        return Float.parseFloat(String.valueOf(value));
+    }
+
+    protected static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return Boolean.parseBoolean(String.valueOf(value));
+    }
+
+    protected static int toColor(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return Color.parseColor(String.valueOf(value));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.slides.ai;
+
+/**
+* SlideGenerationProvider is a model backend that turns a prompt into slide JSON.
+*
+* Implementations run their network work off the main thread on the shared
+* {@link SharedHttpClient} and deliver every callback on the main thread.
+*/
+public interface SlideGenerationProvider {
+
+	/**
+	* Version of the prompt templates; bump it whenever they change so cached
+	* generations made with the old prompts are not served any more.
+	*/
+	int PROMPT_TEMPLATE_VERSION = 3;
+
+	interface Callback {
+		void onSuccess(String result);
+		void onError(String message);
+	}
+
+	/**
+	* Callback of a slide request that is also told how the slide was read from the
+	* model answer, e.g. for telemetry. Called right before onSuccess with the same
+	* slide; providers that do not extract slides themselves never call it.
+	*/
+	interface ExtractionCallback extends Callback {
+		void onExtracted(ExtractedSlide slide);
+	}
+
+	/**
+	* @return true if this provider serves the given model id
+	*/
+	boolean supportsModel(String model);
+
+	/**
+	* Generates one slide. When streamListener is not null, the background color and
+	* each element are reported as soon as they are complete in the model output.
+	*/
+	void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, Callback callback);
+
+	/**
+	* Sends a free-form prompt and reports the raw text of the answer, used for
+	* requests that are not a single slide such as a deck outline.
+	*/
+	void generateText(String prompt, String model, Callback callback);
+	
+	/**
+	* Cancels the request in flight, if any. Its callback is not invoked.
+	*/
+	void cancel();
+}
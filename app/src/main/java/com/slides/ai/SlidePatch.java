@@ -0,0 +1,150 @@
+package com.slides.ai;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* SlidePatch is an edit of a slide expressed as JSON Patch (RFC 6902) operations,
+* with elements addressed by id instead of array index:
+*
+* <pre>
+* {"op": "replace", "path": "/elements/e1/color", "value": "#1565C0"}
+* {"op": "replace", "path": "/backgroundColor", "value": "#FFFFFF"}
+* {"op": "remove", "path": "/elements/e3"}
+* {"op": "add", "path": "/elements/-", "value": {"type": "text", ...}}
+* </pre>
+*
+* Only add, remove and replace are supported; anything else fails parsing, so a
+* patch is either applied as a whole or not at all.
+*/
+public class SlidePatch {
+
+	public static class Operation {
+		public final String op;
+		// Null for the background and for appended elements
+		public final String elementId;
+		// Null when the whole element is added or removed
+		public final String property;
+		public final Object value;
+
+		Operation(String op, String elementId, String property, Object value) {
+			this.op = op;
+			this.elementId = elementId;
+			this.property = property;
+			this.value = value;
+		}
+
+		public boolean isBackground() {
+			return elementId == null && property != null;
+		}
+	}
+
+	private final List<Operation> operations;
+
+	private SlidePatch(List<Operation> operations) {
+		this.operations = operations;
+	}
+
+	public List<Operation> getOperations() {
+		return Collections.unmodifiableList(operations);
+	}
+
+	/**
+	* Reads a patch from a model answer, tolerating text or a markdown fence around
+	* the array, and checks every operation against the slide it will be applied to.
+	*
+	* @param slide the current slide JSON, whose elements carry ids
+	* @throws JSONException if the answer is not a valid patch for this slide
+	*/
+	public static SlidePatch parse(String answer, JSONObject slide) throws JSONException {
+		JsonExtractor.Result extracted = JsonExtractor.extractArray(answer);
+		if (extracted.repaired) {
+			// Closing a cut-off patch would apply only part of the edit
+			throw new JSONException("The patch was cut off");
+		}
+		JSONArray array = (JSONArray) extracted.value;
+
+		List<String> ids = new ArrayList<>();
+		JSONArray elements = slide.optJSONArray("elements");
+		for (int i = 0; elements != null && i < elements.length(); i++) {
+			ids.add(elements.getJSONObject(i).optString("id"));
+		}
+
+		List<Operation> operations = new ArrayList<>();
+		for (int i = 0; i < array.length(); i++) {
+			JSONObject item = array.getJSONObject(i);
+			String op = item.getString("op");
+			String path = item.getString("path");
+			if (!op.equals("add") && !op.equals("remove") && !op.equals("replace")) {
+				throw new JSONException("Unsupported patch operation " + op);
+			}
+			if (!op.equals("remove") && !item.has("value")) {
+				throw new JSONException("Missing value for " + path);
+			}
+			Object value = item.opt("value");
+
+			if (path.equals("/backgroundColor")) {
+				if (op.equals("remove")) {
+					throw new JSONException("The background cannot be removed");
+				}
+				operations.add(new Operation("replace", null, "backgroundColor", value));
+				continue;
+			}
+
+			String[] segments = path.split("/");
+			if (segments.length < 3 || !segments[0].isEmpty() || !segments[1].equals("elements")) {
+				throw new JSONException("Unsupported patch path " + path);
+			}
+			String id = segments[2];
+			if (id.equals("-")) {
+				if (!op.equals("add") || segments.length != 3 || !(value instanceof JSONObject)) {
+					throw new JSONException("Only whole elements can be appended: " + path);
+				}
+				operations.add(new Operation("add", null, null, value));
+				continue;
+			}
+			if (!ids.contains(id)) {
+				throw new JSONException("No element with id " + id);
+			}
+			if (segments.length == 3) {
+				if (!op.equals("remove")) {
+					throw new JSONException("Elements can only be removed as a whole: " + path);
+				}
+				operations.add(new Operation("remove", id, null, null));
+			} else if (segments.length == 4 && !op.equals("remove")) {
+				String property = segments[3];
+				if (property.equals("id") || property.equals("type")) {
+					throw new JSONException("The " + property + " of an element cannot change");
+				}
+				operations.add(new Operation("replace", id, property, value));
+			} else {
+				throw new JSONException("Unsupported patch path " + path);
+			}
+		}
+		if (operations.isEmpty()) {
+			throw new JSONException("The patch is empty");
+		}
+		return new SlidePatch(operations);
+	}
+
+	/**
+	* Builds the prompt asking a model for a patch instead of a whole new slide.
+	*/
+	public static String createPrompt(String request, JSONObject slide, float canvasWidth, float canvasHeight) {
+		return "You are editing an existing presentation slide of " + Math.round(canvasWidth) + "x" + Math.round(canvasHeight) + ".\n" +
+		"Current slide JSON: " + slide.toString() + "\n" +
+		"Request: \"" + request + "\"\n" +
+		"Respond with ONLY a JSON array of JSON Patch operations that make this change, addressing elements by their id:\n" +
+		"- change a property: {\"op\": \"replace\", \"path\": \"/elements/<id>/<property>\", \"value\": ...}\n" +
+		"- change the background: {\"op\": \"replace\", \"path\": \"/backgroundColor\", \"value\": \"#RRGGBB\"}\n" +
+		"- remove an element: {\"op\": \"remove\", \"path\": \"/elements/<id>\"}\n" +
+		"- add an element: {\"op\": \"add\", \"path\": \"/elements/-\", \"value\": {complete element}}\n" +
+		"Change only what the request asks for. Use the property names and units of the slide JSON.\n" +
+		"IMPORTANT: Return ONLY the JSON array, nothing else.";
+	}
+}
@@ -0,0 +1,69 @@
+package com.slides.ai;
+
+/**
+* SlidePrompts holds the slide generation prompt, split into the static instructions
+* shared by every request and the per-request part.
+*
+* The instructions are built once per process. Gemini gets them as a system
+* instruction ahead of the user's part; Qwen has no system role and gets both
+* joined. Bump
+* {@link SlideGenerationProvider#PROMPT_TEMPLATE_VERSION} when changing either.
+*/
+public final class SlidePrompts {
+
+	public static final String SYSTEM_INSTRUCTIONS =
+	"You create professional presentation slides from a user's request.\n" +
+	"You must respond with ONLY a valid JSON object (no markdown, no explanation) like:\n" +
+	"{\n" +
+	"  \"backgroundColor\": \"#FFFFFF\",\n" +
+	"  \"elements\": [\n" +
+	"    {\n" +
+	"      \"type\": \"text\",\n" +
+	"      \"text\": \"Slide Title\",\n" +
+	"      \"x\": 20,\n" +
+	"      \"y\": 20,\n" +
+	"      \"width\": 280,\n" +
+	"      \"height\": 40,\n" +
+	"      \"fontSize\": 24,\n" +
+	"      \"color\": \"#000000\",\n" +
+	"      \"bold\": true,\n" +
+	"      \"alignment\": \"center\"\n" +
+	"    }\n" +
+	"  ]\n" +
+	"}\n" +
+	"Guidelines:\n" +
+	"- Fit every element inside the canvas size given in the request\n" +
+	"- Position elements with proper spacing\n" +
+	"- Include title, content, and optionally images/shapes\n" +
+	"- Use readable fonts (fontSize 12-24)\n" +
+	"- Choose professional colors\n" +
+	"- For images, use real public URLs\n" +
+	"- For shapes: type is 'shape' and shapeType is 'rectangle', 'oval', 'line', 'triangle', 'star' or 'hexagon'\n" +
+	"- Ensure no element overlap\n" +
+	"IMPORTANT: Return ONLY the JSON object, nothing else.";
+
+	// Models without structured output also get the schema to follow
+	private static final String INSTRUCTIONS_WITH_SCHEMA = SYSTEM_INSTRUCTIONS + "\n" +
+	"The JSON object must validate against this JSON Schema:\n" + SlideSchema.promptSchema();
+
+	private static final PromptTemplate REQUEST = PromptTemplate.compile(
+	"Create a presentation slide for this request: \"{{prompt}}\". The canvas size is {{width}}x{{height}} pixels.");
+
+	private SlidePrompts() {
+	}
+
+	/**
+	* @return the per-request part of the prompt, to follow {@link #SYSTEM_INSTRUCTIONS}
+	*/
+	public static String request(String prompt, float canvasWidth, float canvasHeight) {
+		return REQUEST.render(prompt, Math.round(canvasWidth), Math.round(canvasHeight));
+	}
+
+	/**
+	* @return the whole prompt in one message, schema included, for providers
+	* without system instructions or structured output
+	*/
+	public static String standalone(String prompt, float canvasWidth, float canvasHeight) {
+		return INSTRUCTIONS_WITH_SCHEMA + "\n\n" + request(prompt, canvasWidth, canvasHeight);
+	}
+}
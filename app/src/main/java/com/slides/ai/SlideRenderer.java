@@ -14,10 +14,15 @@ import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
 import androidx.core.content.ContextCompat;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import android.graphics.BlurMaskFilter;
 import android.graphics.Rect;
 
@@ -80,6 +85,46 @@ public class SlideRenderer {
 
 	private ElementUpdateListener elementUpdateListener;
 	
+	// Write-ahead journal for element edits, keyed by the current slide id
+	private EditJournal editJournal;
+	private String slideId;
+	
+	// Undo/redo history of the current slide as inverse operations
+	private final UndoManager undoManager = new UndoManager();
+	private final UndoManager.Target undoTarget = new UndoManager.Target() {
+		@Override
+		public List<SlideElement> getElements() {
+			return elements;
+		}
+		
+		@Override
+		public void onElementChanging(SlideElement element) {
+			beforeChange(element);
+		}
+		
+		@Override
+		public void onElementChanged(SlideElement element, String property, Object value) {
+			recordEdit(element, property, value);
+		}
+		
+		@Override
+		public void onElementsReordered() {
+			if (selectedElement != null && !elements.contains(selectedElement)) {
+				setSelectedElement(null);
+			}
+		}
+		
+		@Override
+		public void onBackgroundChanged(String color) {
+			backgroundColor = Color.parseColor(color);
+		}
+	};
+	
+	// Snapshots that may still share live elements, see snapshot()
+	private final List<SlideSnapshot> sharedSnapshots = new ArrayList<>();
+	// The element of the edit in progress, which keeps changing until endEdit()
+	private SlideElement editingElement;
+	
 	public SlideRenderer(Context context, View slideView, HashMap<String, Bitmap> imageCache) {
 		this.context = context;
 		this.slideView = slideView;
@@ -107,8 +152,14 @@ public class SlideRenderer {
 		this.elementUpdateListener = listener;
 	}
 	
+	public void setEditJournal(EditJournal journal) {
+		this.editJournal = journal;
+	}
+	
 	public void setSlideData(JSONObject data) {
 		slideData = data;
+		slideId = data.optString("id", null);
+		undoManager.clear();
 		parseSlideData();
 		resetTransformation();
 		slideView.invalidate();
@@ -140,8 +191,7 @@ public class SlideRenderer {
 	
 	private void parseSlideData() {
 		try {
-			// Clear existing elements
-			elements.clear();
+			elements = new ArrayList<>();
 			
 			// Set background color
 			String bgColor = slideData.optString("backgroundColor", "#FFFFFF");
@@ -192,6 +242,7 @@ public class SlideRenderer {
 							Math.abs(y - handles[i + 1]) < HANDLE_EDGE_THRESHOLD / scaleFactor) {
 							isResizing = true;
 							resizeHandleIndex = i / 2;
+							beginEdit(selectedElement);
 							lastTouchX = x;
 							lastTouchY = y;
 							return true;
@@ -201,6 +252,7 @@ public class SlideRenderer {
 					// If not touching a resize handle, check if touching the selected element for moving
 					if (selectedElement.containsPoint(x, y)) {
 						isMovingElement = true;
+						beginEdit(selectedElement);
 						lastTouchX = x;
 						lastTouchY = y;
 						return true;
@@ -294,7 +346,12 @@ public class SlideRenderer {
 					if (showAlignmentGuides) {
 						checkAlignmentGuides(selectedElement);
 					}
-					
+
+					recordGeometry(selectedElement);
+					if (selectedElement instanceof TextElement) {
+						recordEdit(selectedElement, "fontSize", ((TextElement) selectedElement).fontSize);
+					}
+
 					lastTouchX = x;
 					lastTouchY = y;
 					slideView.invalidate();
@@ -303,7 +360,7 @@ public class SlideRenderer {
                     }
 					return true;
 				}
-				
+
 				// Handle element moving
 				if (isMovingElement && selectedElement != null) {
 					float dx = (x - lastTouchX);
@@ -328,7 +385,10 @@ public class SlideRenderer {
 					if (showAlignmentGuides && !isSnapped) {
 						checkAlignmentGuides(selectedElement);
 					}
-					
+
+					recordEdit(selectedElement, "x", selectedElement.toUnits(selectedElement.x));
+					recordEdit(selectedElement, "y", selectedElement.toUnits(selectedElement.y));
+
 					lastTouchX = x;
 					lastTouchY = y;
 					slideView.invalidate();
@@ -341,6 +401,9 @@ public class SlideRenderer {
 				
 			case MotionEvent.ACTION_UP:
 			case MotionEvent.ACTION_CANCEL:
+				if (isResizing || isMovingElement) {
+					endEdit();
+				}
 				// Reset flags
 				isResizing = false;
 				isMovingElement = false;
@@ -362,6 +425,26 @@ public class SlideRenderer {
 		return gestureHandled || scaleHandled;
 	}
 	
+	/**
+	 * Record a property edit of an element in the write-ahead journal.
+	 * Values use the same representation as the element's toJson().
+	 */
+	public void recordEdit(SlideElement element, String property, Object value) {
+		if (editJournal != null && element != null && slideId != null) {
+			editJournal.record(slideId, element.getId(), property, value);
+		}
+	}
+	
+	/**
+	 * Record position and size of an element after a move or resize.
+	 */
+	public void recordGeometry(SlideElement element) {
+		recordEdit(element, "x", element.toUnits(element.x));
+		recordEdit(element, "y", element.toUnits(element.y));
+		recordEdit(element, "width", element.toUnits(element.width));
+		recordEdit(element, "height", element.toUnits(element.height));
+	}
+	
 	/**
 	 * Check for alignment with other elements and show guides
 	 */
@@ -443,9 +526,11 @@ public class SlideRenderer {
 		// Draw background
 		canvas.drawColor(backgroundColor);
 		
-		// Draw all elements
+		// Draw all elements, locked since a snapshot may draw them on a worker too
 		for (SlideElement element : elements) {
-			element.draw(canvas);
+			synchronized (element) {
+				element.draw(canvas);
+			}
 		}
 		
 		// Draw selection overlay for selected element
@@ -707,12 +792,382 @@ public class SlideRenderer {
 	}
 
 	public void bringToFront(SlideElement element) {
+		int fromIndex = elements.indexOf(element);
 		elements.remove(element);
 		elements.add(element);
+		undoManager.recordMove(element, fromIndex, elements.size() - 1);
+		recordStructure();
 	}
 
 	public void sendToBack(SlideElement element) {
+		int fromIndex = elements.indexOf(element);
 		elements.remove(element);
 		elements.add(0, element);
+		undoManager.recordMove(element, fromIndex, 0);
+		recordStructure();
+	}
+
+	public void addElement(SlideElement element) {
+		insertElement(element);
+		recordStructure();
+	}
+
+	public void removeElement(SlideElement element) {
+		if (deleteElement(element)) {
+			recordStructure();
+		}
+	}
+
+	private void insertElement(SlideElement element) {
+		elements.add(element);
+		undoManager.recordInsert(element, elements.size() - 1);
+		slideView.invalidate();
+	}
+
+	private boolean deleteElement(SlideElement element) {
+		int index = elements.indexOf(element);
+		if (index < 0) {
+			return false;
+		}
+		elements.remove(index);
+		undoManager.recordDelete(element, index);
+		if (selectedElement == element) {
+			setSelectedElement(null);
+		}
+		slideView.invalidate();
+		return true;
+	}
+
+	/**
+	* Appends an element that arrived from a streaming generation. It is not
+	* recorded as an undoable edit; the finished slide replaces it anyway.
+	*/
+	public void appendStreamedElement(JSONObject elementJson) {
+		try {
+			JSONArray jsonElements = slideData.optJSONArray("elements");
+			if (jsonElements == null) {
+				jsonElements = new JSONArray();
+				slideData.put("elements", jsonElements);
+			}
+			SlideElement element = ElementFactory.createElementFromJSON(elementJson, jsonElements.length(), context);
+			jsonElements.put(elementJson);
+			if (element != null) {
+				elements.add(element);
+				slideView.invalidate();
+			}
+		} catch (JSONException e) {
+			Log.e("SlideRenderer", "Error appending streamed element", e);
+		}
+	}
+
+	/**
+	* Applies an AI edit in place, as a whole or not at all. Every operation is first
+	* checked against {@link SlideSchema} on a copy of the slide JSON and tried on
+	* copies of the elements it touches; the live elements and the slide JSON change
+	* only once all of them succeed. Touched elements are updated through setProperty,
+	* which refreshes only their own text layout or paints; an element whose property
+	* has no live setter is rebuilt from its updated JSON. Every change is undoable.
+	*
+	* @return the number of operations applied
+	* @throws JSONException if an operation does not fit the slide. Nothing is changed then.
+	*/
+	public int applyPatch(SlidePatch patch) throws JSONException {
+		JSONObject draft = new JSONObject(slideData.toString());
+		JSONArray draftElements = draft.optJSONArray("elements");
+		if (draftElements == null) {
+			draftElements = new JSONArray();
+			draft.put("elements", draftElements);
+		}
+		String background = null;
+		// Changed properties of each touched element, with a trial copy of it or null
+		// once it has to be rebuilt from its JSON
+		Map<String, List<String>> changed = new LinkedHashMap<>();
+		Map<String, SlideElement> trials = new HashMap<>();
+		List<String> removed = new ArrayList<>();
+		List<SlideElement> added = new ArrayList<>();
+
+		for (SlidePatch.Operation operation : patch.getOperations()) {
+			if (operation.isBackground()) {
+				background = String.valueOf(operation.value);
+				parseColor(background);
+				draft.put("backgroundColor", background);
+				continue;
+			}
+			if (operation.op.equals("add")) {
+				JSONObject elementJson = new JSONObject(operation.value.toString());
+				String problem = SlideSchema.validateElement(elementJson);
+				if (problem != null) {
+					throw new JSONException("Added element: " + problem);
+				}
+				if (elementJson.optString("id", "").isEmpty()) {
+					elementJson.put("id", ElementFactory.newId("el"));
+				}
+				SlideElement element = ElementFactory.createElementFromJSON(elementJson, draftElements.length(), context);
+				if (element == null) {
+					throw new JSONException("Added element could not be built");
+				}
+				draftElements.put(elementJson);
+				added.add(element);
+				continue;
+			}
+
+			String id = operation.elementId;
+			int jsonIndex = indexOf(draftElements, id);
+			SlideElement element = findElement(id);
+			if (jsonIndex < 0 || element == null) {
+				throw new JSONException("No element " + id + " on the slide");
+			}
+			if (operation.op.equals("remove")) {
+				draftElements.remove(jsonIndex);
+				changed.remove(id);
+				removed.add(id);
+				continue;
+			}
+
+			JSONObject elementJson = draftElements.getJSONObject(jsonIndex);
+			elementJson.put(operation.property, operation.value);
+			String problem = SlideSchema.validateElement(elementJson);
+			if (problem != null || !elementJson.has(operation.property)) {
+				throw new JSONException("Invalid " + operation.property + " for element " + id);
+			}
+			if (!changed.containsKey(id)) {
+				changed.put(id, new ArrayList<>());
+				trials.put(id, element.copy());
+			}
+			changed.get(id).add(operation.property);
+			SlideElement trial = trials.get(id);
+			if (trial != null && !setProperty(trial, operation.property, elementJson.get(operation.property))) {
+				trials.put(id, null);
+			}
+		}
+
+		Map<String, SlideElement> rebuilt = new HashMap<>();
+		for (String id : changed.keySet()) {
+			if (trials.get(id) == null) {
+				int jsonIndex = indexOf(draftElements, id);
+				SlideElement element = ElementFactory.createElementFromJSON(draftElements.getJSONObject(jsonIndex), jsonIndex, context);
+				if (element == null) {
+					throw new JSONException("Element " + id + " could not be rebuilt");
+				}
+				rebuilt.put(id, element);
+			}
+		}
+
+		// Everything checked out, commit
+		if (background != null) {
+			undoManager.recordBackground(slideData.optString("backgroundColor", "#FFFFFF"), background);
+			backgroundColor = Color.parseColor(background);
+		}
+		for (Map.Entry<String, List<String>> entry : changed.entrySet()) {
+			SlideElement element = findElement(entry.getKey());
+			JSONObject elementJson = draftElements.getJSONObject(indexOf(draftElements, entry.getKey()));
+			if (rebuilt.containsKey(entry.getKey())) {
+				replaceElement(element, rebuilt.get(entry.getKey()));
+				continue;
+			}
+			beginEdit(element);
+			try {
+				for (String property : entry.getValue()) {
+					element.setProperty(property, elementJson.get(property));
+					recordEdit(element, property, elementJson.get(property));
+				}
+			} finally {
+				endEdit();
+			}
+		}
+		for (String id : removed) {
+			deleteElement(findElement(id));
+		}
+		for (SlideElement element : added) {
+			insertElement(element);
+		}
+		slideData.put("backgroundColor", draft.opt("backgroundColor"));
+		slideData.put("elements", draftElements);
+		if (background != null || !removed.isEmpty() || !added.isEmpty() || !rebuilt.isEmpty()) {
+			recordStructure();
+		}
+
+		int applied = patch.getOperations().size();
+		if (applied > 0) {
+			slideView.invalidate();
+			if (elementUpdateListener != null) {
+				elementUpdateListener.onElementUpdated();
+			}
+		}
+		return applied;
+	}
+
+	private static void parseColor(String color) throws JSONException {
+		try {
+			Color.parseColor(color);
+		} catch (IllegalArgumentException e) {
+			throw new JSONException("Invalid color " + color);
+		}
+	}
+
+	private static boolean setProperty(SlideElement element, String property, Object value) throws JSONException {
+		try {
+			return element.setProperty(property, value);
+		} catch (IllegalArgumentException e) {
+			throw new JSONException("Invalid " + property + ": " + e.getMessage());
+		}
+	}
+
+	private static int indexOf(JSONArray jsonElements, String id) {
+		for (int i = 0; i < jsonElements.length(); i++) {
+			JSONObject json = jsonElements.optJSONObject(i);
+			if (json != null && id.equals(json.optString("id"))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void replaceElement(SlideElement element, SlideElement replacement) {
+		int index = elements.indexOf(element);
+		elements.set(index, replacement);
+		undoManager.recordDelete(element, index);
+		undoManager.recordInsert(replacement, index);
+		if (selectedElement == element) {
+			setSelectedElement(replacement);
+		}
+	}
+
+	private SlideElement findElement(String id) {
+		for (SlideElement element : elements) {
+			if (id.equals(element.getId())) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	public UndoManager getUndoManager() {
+		return undoManager;
+	}
+
+	/**
+	* Starts an in-place edit of an element, e.g. a drag or the customization dialog.
+	* The edit becomes one undo step.
+	*/
+	public void beginEdit(SlideElement element) {
+		beforeChange(element);
+		editingElement = element;
+		undoManager.beginGesture(element);
+	}
+
+	public void endEdit() {
+		editingElement = null;
+		undoManager.endGesture();
+	}
+
+	/**
+	* Takes an immutable snapshot of the current slide for use off the UI thread.
+	* It shares the live elements and copies one only when it is about to change,
+	* so only an element under edit is copied right away.
+	* Must be called on the UI thread; release it when done.
+	*/
+	public SlideSnapshot snapshot() {
+		SlideSnapshot snapshot = SlideSnapshot.share(elements, backgroundColor);
+		if (editingElement != null) {
+			snapshot.detach(editingElement);
+		}
+		sharedSnapshots.add(snapshot);
+		return snapshot;
+	}
+
+	/**
+	* Gives open snapshots their own copy of an element before it changes in place.
+	* Edits between beginEdit() and endEdit() are covered already; anything else
+	* that changes an element outside the renderer has to call this first.
+	*/
+	public void beforeChange(SlideElement element) {
+		Iterator<SlideSnapshot> iterator = sharedSnapshots.iterator();
+		while (iterator.hasNext()) {
+			SlideSnapshot snapshot = iterator.next();
+			if (snapshot.isReleased()) {
+				iterator.remove();
+			} else {
+				snapshot.detach(element);
+			}
+		}
+	}
+
+	public boolean undo() {
+		return applyHistory(undoManager.undo(undoTarget));
+	}
+
+	public boolean redo() {
+		return applyHistory(undoManager.redo(undoTarget));
+	}
+
+	private boolean applyHistory(boolean changed) {
+		if (changed) {
+			recordStructure();
+			slideView.invalidate();
+			if (elementUpdateListener != null) {
+				elementUpdateListener.onElementUpdated();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	* Brings the slide JSON up to date and journals its elements and background
+	* after a change the property journal cannot express: an element added, removed,
+	* reordered or rebuilt, or an undo or redo. Otherwise the change would be lost
+	* when the deck is opened again.
+	*/
+	private void recordStructure() {
+		syncSlideData();
+		if (editJournal == null || slideId == null || slideData == null) {
+			return;
+		}
+		try {
+			// A copy, since the slide JSON keeps changing after it is journaled
+			editJournal.record(slideId, EditJournal.SLIDE, "elements", new JSONArray(slideData.getJSONArray("elements").toString()));
+			editJournal.record(slideId, EditJournal.SLIDE, "backgroundColor", slideData.getString("backgroundColor"));
+		} catch (JSONException e) {
+			Log.e("SlideRenderer", "Error journaling slide structure", e);
+		}
+	}
+
+	/**
+	* Rewrites the elements of the slide JSON from the live elements, so the code
+	* view and the saved slide follow structural edits and the history too. Fields
+	* an element does not model are kept from its previous JSON.
+	*/
+	private void syncSlideData() {
+		if (slideData == null) {
+			return;
+		}
+		try {
+			Map<String, JSONObject> previous = new HashMap<>();
+			JSONArray jsonElements = slideData.optJSONArray("elements");
+			for (int i = 0; jsonElements != null && i < jsonElements.length(); i++) {
+				JSONObject json = jsonElements.optJSONObject(i);
+				if (json != null) {
+					previous.put(json.optString("id"), json);
+				}
+			}
+			JSONArray synced = new JSONArray();
+			for (SlideElement element : elements) {
+				JSONObject json = previous.get(element.getId());
+				if (json == null) {
+					json = element.toJson();
+				}
+				JSONObject state = element.captureProperties();
+				Iterator<String> keys = state.keys();
+				while (keys.hasNext()) {
+					String key = keys.next();
+					json.put(key, state.get(key));
+				}
+				synced.put(json);
+			}
+			slideData.put("elements", synced);
+			slideData.put("backgroundColor", String.format("#%06X", 0xFFFFFF & backgroundColor));
+		} catch (JSONException e) {
+			Log.e("SlideRenderer", "Error syncing slide JSON", e);
+		}
 	}
 }
@@ -0,0 +1,442 @@
+package com.slides.ai;
+
+import android.graphics.Color;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+* SlideSchema describes the slide JSON the element classes understand, in one table.
+*
+* From that table it derives the responseSchema sent to Gemini, the JSON Schema
+* embedded in Qwen prompts, and a validator that runs on every generated slide
+* before it is rendered. Keep the table in step with the constructors of the
+* {@link SlideElement} subclasses and {@link ElementFactory}.
+*/
+public final class SlideSchema {
+	private static final String STRING = "string";
+	private static final String INTEGER = "integer";
+	private static final String NUMBER = "number";
+	private static final String BOOLEAN = "boolean";
+	private static final String COLOR = "color";
+	// Table cells: an array of rows, each an array of strings
+	private static final String ROWS = "rows";
+	// Chart series: an array of {label, value, color}
+	private static final String SERIES = "series";
+
+	private static final Pattern HEX_COLOR = Pattern.compile("#([0-9a-fA-F]{6}|[0-9a-fA-F]{8})");
+	private static final String[] SERIES_COLORS = {"#1E88E5", "#43A047", "#FB8C00", "#8E24AA", "#E53935", "#00ACC1"};
+
+	private static final class Field {
+		final String name;
+		final String kind;
+		final boolean required;
+		final String[] values;
+
+		Field(String name, String kind, boolean required, String... values) {
+			this.name = name;
+			this.kind = kind;
+			this.required = required;
+			this.values = values.length > 0 ? values : null;
+		}
+	}
+
+	private static final Field[] COMMON = {
+		new Field("x", INTEGER, true),
+		new Field("y", INTEGER, true),
+		new Field("width", INTEGER, true),
+		new Field("height", INTEGER, true),
+		new Field("rotation", NUMBER, false),
+	};
+
+	private static final Map<String, Field[]> TYPES = new LinkedHashMap<>();
+
+	static {
+		TYPES.put("text", new Field[]{
+			new Field("text", STRING, true),
+			new Field("fontSize", INTEGER, false),
+			new Field("color", COLOR, false),
+			new Field("bold", BOOLEAN, false),
+			new Field("italic", BOOLEAN, false),
+			new Field("alignment", STRING, false, "left", "center", "right"),
+		});
+		TYPES.put("image", new Field[]{
+			new Field("url", STRING, true),
+			new Field("cornerRadius", INTEGER, false),
+		});
+		TYPES.put("shape", new Field[]{
+			new Field("shapeType", STRING, true, "rectangle", "oval", "line", "triangle", "star", "hexagon"),
+			new Field("color", COLOR, false),
+			new Field("strokeColor", COLOR, false),
+			new Field("strokeWidth", INTEGER, false),
+			new Field("cornerRadius", INTEGER, false),
+			new Field("opacity", NUMBER, false),
+		});
+		TYPES.put("table", new Field[]{
+			new Field("data", ROWS, true),
+			new Field("rows", INTEGER, false),
+			new Field("columns", INTEGER, false),
+			new Field("borderColor", COLOR, false),
+			new Field("cellColor", COLOR, false),
+			new Field("headerColor", COLOR, false),
+			new Field("borderWidth", INTEGER, false),
+		});
+		TYPES.put("chart", new Field[]{
+			new Field("chartType", STRING, true, "bar", "pie"),
+			new Field("data", SERIES, true),
+			new Field("showLegend", BOOLEAN, false),
+		});
+		TYPES.put("icon", new Field[]{
+			new Field("iconName", STRING, true, "home", "settings", "pie_chart", "bar_chart"),
+			new Field("color", COLOR, false),
+		});
+	}
+
+	private SlideSchema() {
+	}
+
+	/**
+	* @return the schema for Gemini's generationConfig.responseSchema. Gemini takes an
+	* OpenAPI subset without per-type variants, so elements get the union of all fields
+	* and the validator enforces what each type requires.
+	*/
+	public static JSONObject geminiResponseSchema() throws JSONException {
+		JSONObject elementProperties = new JSONObject();
+		JSONArray order = new JSONArray();
+		elementProperties.put("type", new JSONObject().put("type", "STRING").put("enum", new JSONArray(TYPES.keySet())));
+		order.put("type");
+		for (Field field : COMMON) {
+			elementProperties.put(field.name, geminiType(field));
+			order.put(field.name);
+		}
+		for (Field[] fields : TYPES.values()) {
+			for (Field field : fields) {
+				if (!elementProperties.has(field.name)) {
+					elementProperties.put(field.name, geminiType(field));
+					order.put(field.name);
+				} else if (field.kind.equals(SERIES) || field.kind.equals(ROWS)) {
+					// "data" is rows for tables and a series for charts
+					elementProperties.put(field.name, new JSONObject().put("type", "ARRAY").put("items",
+					new JSONObject().put("anyOf", new JSONArray()
+					.put(geminiType(new Field(field.name, ROWS, false)).getJSONObject("items"))
+					.put(geminiType(new Field(field.name, SERIES, false)).getJSONObject("items")))));
+				}
+			}
+		}
+
+		JSONObject element = new JSONObject()
+		.put("type", "OBJECT")
+		.put("properties", elementProperties)
+		.put("required", new JSONArray().put("type").put("x").put("y").put("width").put("height"))
+		.put("propertyOrdering", order);
+
+		return new JSONObject()
+		.put("type", "OBJECT")
+		.put("properties", new JSONObject()
+		.put("backgroundColor", new JSONObject().put("type", "STRING"))
+		.put("elements", new JSONObject().put("type", "ARRAY").put("items", element)))
+		.put("required", new JSONArray().put("backgroundColor").put("elements"))
+		// Background first, so streamed previews can paint it before the elements
+		.put("propertyOrdering", new JSONArray().put("backgroundColor").put("elements"));
+	}
+
+	/**
+	* @return a JSON Schema of a slide, with one variant per element type, for
+	* embedding into prompts of models without structured output
+	*/
+	public static String promptSchema() {
+		try {
+			JSONArray variants = new JSONArray();
+			for (Map.Entry<String, Field[]> type : TYPES.entrySet()) {
+				JSONObject properties = new JSONObject();
+				JSONArray required = new JSONArray().put("type");
+				properties.put("type", new JSONObject().put("const", type.getKey()));
+				for (Field[] fields : new Field[][]{COMMON, type.getValue()}) {
+					for (Field field : fields) {
+						properties.put(field.name, jsonSchemaType(field));
+						if (field.required) {
+							required.put(field.name);
+						}
+					}
+				}
+				variants.put(new JSONObject().put("type", "object").put("properties", properties).put("required", required));
+			}
+			return new JSONObject()
+			.put("type", "object")
+			.put("required", new JSONArray().put("backgroundColor").put("elements"))
+			.put("properties", new JSONObject()
+			.put("backgroundColor", new JSONObject().put("type", "string").put("pattern", HEX_COLOR.pattern()))
+			.put("elements", new JSONObject().put("type", "array").put("items", new JSONObject().put("oneOf", variants))))
+			.toString();
+		} catch (JSONException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	* Checks a generated slide against the schema before it is rendered, fixing what
+	* can be fixed in place: known aliases are renamed, optional fields with a bad
+	* value are dropped so their default applies, and elements that still cannot be
+	* built (unknown type, missing required field) are removed.
+	*
+	* @return the problems that changed the slide: a replaced background or missing or
+	* dropped elements. Empty if it can be rendered as it is.
+	*/
+	public static List<String> validate(JSONObject slide) throws JSONException {
+		List<String> problems = new ArrayList<>();
+		if (!isColor(slide.opt("backgroundColor"))) {
+			problems.add("invalid backgroundColor");
+			slide.put("backgroundColor", "#FFFFFF");
+		}
+		JSONArray elements = slide.optJSONArray("elements");
+		if (elements == null) {
+			problems.add("missing elements");
+			slide.put("elements", new JSONArray());
+			return problems;
+		}
+
+		JSONArray valid = new JSONArray();
+		for (int i = 0; i < elements.length(); i++) {
+			JSONObject element = elements.optJSONObject(i);
+			String problem = element == null ? "not an object" : validateElement(element);
+			if (problem == null) {
+				valid.put(element);
+			} else {
+				problems.add("element " + i + ": " + problem);
+			}
+		}
+		if (valid.length() != elements.length()) {
+			slide.put("elements", valid);
+		}
+		return problems;
+	}
+
+	/**
+	* Validates a single element the same way {@link #validate} does, for elements
+	* rendered one by one while a slide streams in.
+	*
+	* @return why the element cannot be built, or null if it can (possibly after fixes)
+	*/
+	public static String validateElement(JSONObject element) throws JSONException {
+		normalizeAliases(element);
+		Field[] fields = TYPES.get(element.optString("type"));
+		if (fields == null) {
+			return "unknown type " + element.optString("type");
+		}
+		for (Field[] group : new Field[][]{COMMON, fields}) {
+			for (Field field : group) {
+				if (!element.has(field.name)) {
+					if (field.required) {
+						return "missing " + field.name;
+					}
+					continue;
+				}
+				if (!matches(field, element, element.get(field.name))) {
+					if (field.required) {
+						return "invalid " + field.name;
+					}
+					element.remove(field.name);
+				}
+			}
+		}
+		if (element.has("data") && "table".equals(element.optString("type"))) {
+			fitTableSize(element);
+		}
+		return null;
+	}
+
+	private static void normalizeAliases(JSONObject element) throws JSONException {
+		String type = element.optString("type").toLowerCase();
+		switch (type) {
+			case "rectangle":
+			case "oval":
+			case "line":
+			case "triangle":
+				element.put("shapeType", type);
+				type = "shape";
+				break;
+			case "circle":
+				element.put("shapeType", "oval");
+				type = "shape";
+				break;
+			default:
+				break;
+		}
+		element.put("type", type);
+		if (type.equals("text") && !element.has("text") && element.has("content")) {
+			element.put("text", element.remove("content"));
+		}
+		if (type.equals("shape") && !element.has("shapeType") && element.has("shape")) {
+			element.put("shapeType", element.remove("shape"));
+		}
+	}
+
+	private static boolean matches(Field field, JSONObject element, Object value) throws JSONException {
+		switch (field.kind) {
+			case STRING:
+				if (!(value instanceof String)) {
+					return false;
+				}
+				if (field.values != null) {
+					String lower = ((String) value).toLowerCase();
+					for (String allowed : field.values) {
+						if (allowed.equals(lower)) {
+							element.put(field.name, allowed);
+							return true;
+						}
+					}
+					return false;
+				}
+				return true;
+			case INTEGER:
+			case NUMBER:
+				return !Double.isNaN(element.optDouble(field.name, Double.NaN));
+			case BOOLEAN:
+				return value instanceof Boolean || "true".equals(value) || "false".equals(value);
+			case COLOR:
+				return isColor(value);
+			case ROWS:
+				return isTable(value);
+			case SERIES:
+				return isSeries(value);
+			default:
+				return true;
+		}
+	}
+
+	private static boolean isColor(Object value) {
+		if (!(value instanceof String)) {
+			return false;
+		}
+		if (HEX_COLOR.matcher((String) value).matches()) {
+			return true;
+		}
+		// Color names such as "white" render fine too
+		try {
+			Color.parseColor((String) value);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static boolean isTable(Object value) {
+		if (!(value instanceof JSONArray) || ((JSONArray) value).length() == 0) {
+			return false;
+		}
+		JSONArray rows = (JSONArray) value;
+		for (int i = 0; i < rows.length(); i++) {
+			JSONArray row = rows.optJSONArray(i);
+			if (row == null || row.length() == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSeries(Object value) throws JSONException {
+		if (!(value instanceof JSONArray) || ((JSONArray) value).length() == 0) {
+			return false;
+		}
+		JSONArray series = (JSONArray) value;
+		for (int i = 0; i < series.length(); i++) {
+			JSONObject item = series.optJSONObject(i);
+			if (item == null || Double.isNaN(item.optDouble("value", Double.NaN))) {
+				return false;
+			}
+			if (!item.has("label")) {
+				item.put("label", "Item " + (i + 1));
+			}
+			if (!isColor(item.opt("color"))) {
+				item.put("color", SERIES_COLORS[i % SERIES_COLORS.length]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	* TableElement reads rows x columns cells, so both must fit inside data.
+	*/
+	private static void fitTableSize(JSONObject element) throws JSONException {
+		JSONArray rows = element.getJSONArray("data");
+		int columns = Integer.MAX_VALUE;
+		for (int i = 0; i < rows.length(); i++) {
+			columns = Math.min(columns, rows.getJSONArray(i).length());
+		}
+		element.put("rows", rows.length());
+		element.put("columns", columns);
+	}
+
+	private static JSONObject geminiType(Field field) throws JSONException {
+		switch (field.kind) {
+			case INTEGER:
+				return new JSONObject().put("type", "INTEGER");
+			case NUMBER:
+				return new JSONObject().put("type", "NUMBER");
+			case BOOLEAN:
+				return new JSONObject().put("type", "BOOLEAN");
+			case ROWS:
+				return new JSONObject().put("type", "ARRAY").put("items",
+				new JSONObject().put("type", "ARRAY").put("items", new JSONObject().put("type", "STRING")));
+			case SERIES:
+				return new JSONObject().put("type", "ARRAY").put("items", new JSONObject()
+				.put("type", "OBJECT")
+				.put("properties", new JSONObject()
+				.put("label", new JSONObject().put("type", "STRING"))
+				.put("value", new JSONObject().put("type", "NUMBER"))
+				.put("color", new JSONObject().put("type", "STRING")))
+				.put("required", new JSONArray().put("label").put("value").put("color")));
+			default:
+				JSONObject string = new JSONObject().put("type", "STRING");
+				if (field.values != null) {
+					string.put("enum", new JSONArray(Arrays.asList(field.values)));
+				}
+				return string;
+		}
+	}
+
+	private static JSONObject jsonSchemaType(Field field) throws JSONException {
+		JSONObject gemini = geminiType(field);
+		if (field.kind.equals(COLOR)) {
+			return new JSONObject().put("type", "string").put("pattern", HEX_COLOR.pattern());
+		}
+		return lowerTypes(gemini);
+	}
+
+	private static JSONObject lowerTypes(JSONObject schema) throws JSONException {
+		JSONObject lowered = new JSONObject();
+		Iterator<String> keys = schema.keys();
+		while (keys.hasNext()) {
+			String key = keys.next();
+			Object value = schema.get(key);
+			if (key.equals("type")) {
+				lowered.put(key, ((String) value).toLowerCase());
+			} else if (value instanceof JSONObject) {
+				JSONObject nested = (JSONObject) value;
+				if (key.equals("properties")) {
+					JSONObject properties = new JSONObject();
+					Iterator<String> names = nested.keys();
+					while (names.hasNext()) {
+						String name = names.next();
+						properties.put(name, lowerTypes(nested.getJSONObject(name)));
+					}
+					lowered.put(key, properties);
+				} else {
+					lowered.put(key, lowerTypes(nested));
+				}
+			} else {
+				lowered.put(key, value);
+			}
+		}
+		return lowered;
+	}
+}
@@ -0,0 +1,109 @@
+package com.slides.ai;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+* SlideSnapshot is an immutable view of a slide taken by {@link SlideRenderer#snapshot()}
+* for background consumers such as export, thumbnails or autosave.
+*
+* Taking a snapshot copies no element: it shares the live ones, and the renderer
+* calls {@link #detach} on the UI thread right before one of them changes in place,
+* giving the snapshot its own copy as it was. Drawing an element holds the snapshot
+* lock, so a detach waits for the worker to finish the element it is drawing, and
+* the element's own lock, which the renderer takes too when drawing it on screen.
+*/
+public class SlideSnapshot {
+	private static final SlideElement[] NO_ELEMENTS = new SlideElement[0];
+
+	// Live elements until detached; only replaced while holding the snapshot
+	private SlideElement[] elements;
+	private final int backgroundColor;
+
+	private SlideSnapshot(SlideElement[] elements, int backgroundColor) {
+		this.elements = elements;
+		this.backgroundColor = backgroundColor;
+	}
+
+	/**
+	* Shares live elements with a new snapshot. Must be called on the thread that
+	* edits them, which then has to {@link #detach} an element before changing it.
+	*/
+	static SlideSnapshot share(List<SlideElement> liveElements, int backgroundColor) {
+		return new SlideSnapshot(liveElements.toArray(NO_ELEMENTS), backgroundColor);
+	}
+
+	/**
+	* Builds a snapshot of slide JSON that is not shown in any renderer, e.g. to draw
+	* a thumbnail of a slide before it is added to the deck. Its elements belong to
+	* the snapshot alone, so they are never detached.
+	*/
+	static SlideSnapshot of(JSONObject slide, Context context, HashMap<String, Bitmap> imageCache) {
+		int background;
+		try {
+			background = Color.parseColor(slide.optString("backgroundColor", "#FFFFFF"));
+		} catch (IllegalArgumentException e) {
+			background = Color.WHITE;
+		}
+		List<SlideElement> elements = ElementFactory.createElementsFromJSON(slide, context, imageCache);
+		return new SlideSnapshot(elements.toArray(NO_ELEMENTS), background);
+	}
+
+	/**
+	* Replaces a shared live element with a copy of its current state, so it can be
+	* changed in place. Does nothing if the snapshot does not hold it.
+	*/
+	synchronized void detach(SlideElement element) {
+		for (int i = 0; i < elements.length; i++) {
+			if (elements[i] == element) {
+				elements[i] = element.copy();
+			}
+		}
+	}
+
+	synchronized boolean isReleased() {
+		return elements == NO_ELEMENTS;
+	}
+
+	public int getBackgroundColor() {
+		return backgroundColor;
+	}
+
+	public synchronized int getElementCount() {
+		return elements.length;
+	}
+
+	/**
+	* Draws the slide content as it was when the snapshot was taken, without
+	* zoom, pan or selection overlays. Safe to call from any thread, one at a time.
+	*/
+	public void draw(Canvas canvas) {
+		canvas.drawColor(backgroundColor);
+		for (int i = 0; ; i++) {
+			// Locked per element, so detaching waits for one element at most
+			synchronized (this) {
+				if (i >= elements.length) {
+					return;
+				}
+				SlideElement element = elements[i];
+				synchronized (element) {
+					element.draw(canvas);
+				}
+			}
+		}
+	}
+
+	/**
+	* Lets go of the elements, after which the renderer stops detaching for it.
+	*/
+	public synchronized void release() {
+		elements = NO_ELEMENTS;
+	}
+}
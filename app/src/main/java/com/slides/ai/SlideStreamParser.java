@@ -0,0 +1,170 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+* SlideStreamParser is an incremental parser for slide JSON arriving in chunks
+* from a streaming completion.
+*
+* It scans each chunk once, tracking string, escape and nesting state, and reports
+* every object of the top-level "elements" array as soon as its closing brace
+* arrives, plus "backgroundColor" once its value is complete. Text before the
+* first '{' (such as a markdown fence) and after the slide object is ignored.
+*/
+public class SlideStreamParser {
+	private static final String TAG = "SlideStreamParser";
+
+	public interface Listener {
+		void onBackgroundColor(String color);
+		void onElement(int index, JSONObject element);
+
+		/**
+		* Receives the raw model text as it streams in, before it is parsed. Called by
+		* providers rather than the parser; may be called many times per frame.
+		*/
+		default void onText(String delta) {
+		}
+	}
+
+	private final Listener listener;
+	private final StringBuilder buffer = new StringBuilder();
+	private int scanned = 0;
+
+	private int depth = 0;
+	private boolean started = false;
+	private boolean finished = false;
+	private boolean inString = false;
+	private boolean escaped = false;
+	private int stringStart = -1;
+
+	// Top-level object state
+	private boolean awaitingKey = false;
+	private String currentKey;
+
+	private int elementsDepth = -1;
+	private int elementStart = -1;
+	private int elementCount = 0;
+
+	public SlideStreamParser(Listener listener) {
+		this.listener = listener;
+	}
+
+	public void feed(CharSequence chunk) {
+		if (finished || chunk == null) {
+			return;
+		}
+		buffer.append(chunk);
+		for (; scanned < buffer.length() && !finished; scanned++) {
+			scan(buffer.charAt(scanned), scanned);
+		}
+		// Nothing before the scan position is referenced again unless an element or string is open
+		if (elementStart < 0 && !inString) {
+			buffer.delete(0, scanned);
+			scanned = 0;
+		}
+	}
+
+	public int getElementCount() {
+		return elementCount;
+	}
+
+	/**
+	* @return true once the top-level slide object has been closed
+	*/
+	public boolean isFinished() {
+		return finished;
+	}
+
+	private void scan(char c, int pos) {
+		if (!started) {
+			if (c == '{') {
+				started = true;
+				depth = 1;
+				awaitingKey = true;
+			}
+			return;
+		}
+
+		if (inString) {
+			if (escaped) {
+				escaped = false;
+			} else if (c == '\\') {
+				escaped = true;
+			} else if (c == '"') {
+				inString = false;
+				if (depth == 1) {
+					onTopLevelString(buffer.substring(stringStart, pos));
+				}
+			}
+			return;
+		}
+
+		switch (c) {
+			case '"':
+				inString = true;
+				stringStart = pos + 1;
+				break;
+			case ':':
+				if (depth == 1) awaitingKey = false;
+				break;
+			case ',':
+				if (depth == 1) awaitingKey = true;
+				break;
+			case '[':
+				depth++;
+				if (depth == 2 && "elements".equals(currentKey)) {
+					elementsDepth = depth;
+				}
+				break;
+			case '{':
+				if (depth == elementsDepth) {
+					elementStart = pos;
+				}
+				depth++;
+				break;
+			case ']':
+				if (depth == elementsDepth) {
+					elementsDepth = -1;
+				}
+				depth--;
+				break;
+			case '}':
+				depth--;
+				if (depth == elementsDepth && elementStart >= 0) {
+					emitElement(buffer.substring(elementStart, pos + 1));
+					elementStart = -1;
+				} else if (depth == 0) {
+					finished = true;
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void onTopLevelString(String value) {
+		if (awaitingKey) {
+			currentKey = value;
+		} else if ("backgroundColor".equals(currentKey)) {
+			listener.onBackgroundColor(value);
+		}
+	}
+
+	private void emitElement(String json) {
+		try {
+			JSONObject element = new JSONObject(json);
+			String problem = SlideSchema.validateElement(element);
+			if (problem != null) {
+				Log.w(TAG, "Skipping invalid streamed element: " + problem);
+				return;
+			}
+			listener.onElement(elementCount, element);
+			elementCount++;
+		} catch (JSONException e) {
+			Log.w(TAG, "Skipping malformed streamed element: " + e.getMessage());
+		}
+	}
+}
@@ -8,6 +8,7 @@ import android.graphics.Color;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -31,6 +32,8 @@ import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.slider.Slider;
 import com.google.android.material.textfield.TextInputEditText;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
@@ -191,6 +194,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
                     try {
                         float newSize = Float.parseFloat(s.toString());
                         if (newSize > 0 && newSize <= 100) {
+                            slideRenderer.beforeChange(selectedElement);
                             ((TextElement) selectedElement).fontSize = newSize;
                             ((TextElement) selectedElement).createTextLayout();
                             slideView.invalidate();
@@ -204,6 +208,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         btnTextColor.setOnClickListener(v -> {
             if (selectedElement instanceof TextElement && customizationManager != null) {
                 customizationManager.showColorPickerDialog(color -> {
+                    slideRenderer.beforeChange(selectedElement);
                     ((TextElement) selectedElement).color = color;
                     btnTextColor.setBackgroundTintList(ColorStateList.valueOf(color));
                     ((TextElement) selectedElement).createTextLayout();
@@ -215,6 +220,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         // Font weight listeners
         fontWeightChips.setOnCheckedStateChangeListener((group, checkedIds) -> {
             if (selectedElement instanceof TextElement) {
+                slideRenderer.beforeChange(selectedElement);
                 TextElement textElement = (TextElement) selectedElement;
                 textElement.bold = checkedIds.contains(R.id.chip_bold);
                 textElement.createTextLayout();
@@ -225,6 +231,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         // Text alignment listeners
         textAlignmentChips.setOnCheckedStateChangeListener((group, checkedIds) -> {
             if (selectedElement instanceof TextElement) {
+                slideRenderer.beforeChange(selectedElement);
                 TextElement textElement = (TextElement) selectedElement;
                 if (checkedIds.contains(R.id.chip_align_left)) {
                     textElement.alignment = "left";
@@ -243,6 +250,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         // Corner radius listener
         sliderCornerRadius.addOnChangeListener((slider, value, fromUser) -> {
             if (selectedElement instanceof ImageElement) {
+                slideRenderer.beforeChange(selectedElement);
                 ImageElement imageElement = (ImageElement) selectedElement;
                 imageElement.cornerRadius = dpToPx(value);
                 imageElement.updatePath();
@@ -272,6 +280,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
             if (selectedElement instanceof ImageElement) {
                 try {
                     Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContext().getContentResolver(), imageUri);
+                    slideRenderer.beforeChange(selectedElement);
                     ((ImageElement) selectedElement).setBitmap(bitmap);
                     slideView.invalidate();
                 } catch (IOException e) {
@@ -286,6 +295,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         btnShapeFillColor.setOnClickListener(v -> {
             if (selectedElement instanceof ShapeElement && customizationManager != null) {
                 customizationManager.showColorPickerDialog(color -> {
+                    slideRenderer.beforeChange(selectedElement);
                     ((ShapeElement) selectedElement).color = color;
                     btnShapeFillColor.setBackgroundTintList(ColorStateList.valueOf(color));
                     slideView.invalidate();
@@ -297,6 +307,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         btnShapeStrokeColor.setOnClickListener(v -> {
             if (selectedElement instanceof ShapeElement && customizationManager != null) {
                 customizationManager.showColorPickerDialog(color -> {
+                    slideRenderer.beforeChange(selectedElement);
                     ((ShapeElement) selectedElement).strokeColor = color;
                     btnShapeStrokeColor.setBackgroundTintList(ColorStateList.valueOf(color));
                     slideView.invalidate();
@@ -307,6 +318,7 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         // Opacity listener
         sliderOpacity.addOnChangeListener((slider, value, fromUser) -> {
             if (selectedElement instanceof ShapeElement) {
+                slideRenderer.beforeChange(selectedElement);
                 ((ShapeElement) selectedElement).opacity = value / 100f;
                 slideView.invalidate();
             }
@@ -419,6 +431,47 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
         }
     }
 
+    /**
+     * Shows an empty slide that a streaming generation fills element by element.
+     * The committed slides are left untouched until the result arrives.
+     */
+    public void beginStreamingPreview() {
+        hideCustomizationToolbar();
+        try {
+            JSONObject preview = new JSONObject();
+            preview.put("backgroundColor", "#FFFFFF");
+            preview.put("elements", new JSONArray());
+            setSlideData(preview);
+        } catch (JSONException e) {
+            Log.e("SlidesFragment", "Could not create streaming preview", e);
+        }
+    }
+
+    public void setStreamedBackground(String color) {
+        if (slideRenderer != null) {
+            try {
+                slideRenderer.setBackgroundColor(Color.parseColor(color));
+                slideRenderer.getSlideData().put("backgroundColor", color);
+                slideView.invalidate();
+            } catch (IllegalArgumentException | JSONException e) {
+                Log.w("SlidesFragment", "Ignoring streamed background " + color);
+            }
+        }
+    }
+
+    public void appendStreamedElement(JSONObject element) {
+        if (slideRenderer != null) {
+            slideRenderer.appendStreamedElement(element);
+        }
+    }
+
+    /**
+     * Drops the streaming preview and shows the current committed slide again.
+     */
+    public void cancelStreamingPreview() {
+        loadCurrentSlide();
+    }
+
     public void setSlides(List<JSONObject> slideList) {
         this.slides = new ArrayList<>(slideList);
         if (currentSlideIndex >= slides.size()) {
@@ -459,7 +512,14 @@ public class SlidesFragment extends Fragment implements SlideRenderer.ElementSel
 
     private void loadCurrentSlide() {
         if (currentSlideIndex < slides.size()) {
-            setSlideData(slides.get(currentSlideIndex));
+            JSONObject slideData = slides.get(currentSlideIndex);
+            try {
+                // Slides get their ids when they enter the deck; this only covers stragglers
+                ElementFactory.assignIds(slideData);
+            } catch (JSONException e) {
+                Log.e("SlidesFragment", "Could not assign slide id", e);
+            }
+            setSlideData(slideData);
         }
     }
 
@@ -0,0 +1,120 @@
+package com.slides.ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+* SseDecoder reads the events of a server-sent events stream straight off an okio
+* source.
+*
+* Lines are located with indexOf on the source buffer and the data of an event is
+* moved segment by segment into a reused buffer, so framing creates no Strings. Only
+* data fields are kept; comments, event, id and retry fields are skipped. The last
+* diagnosticsBytes of the raw stream are kept for error messages, nothing more.
+*/
+public final class SseDecoder implements Closeable {
+	private static final ByteString DATA = ByteString.encodeUtf8("data:");
+
+	private final BufferedSource source;
+	private final Buffer data = new Buffer();
+	private final Buffer recent = new Buffer();
+	private final long diagnosticsBytes;
+	private long totalBytes;
+
+	public SseDecoder(BufferedSource source, long diagnosticsBytes) {
+		this.source = source;
+		this.diagnosticsBytes = diagnosticsBytes;
+	}
+
+	/**
+	* Reads up to the end of the next event that has data.
+	*
+	* @return the event data, valid until the next call, or null at the end of the stream
+	*/
+	public Buffer nextEvent() throws IOException {
+		data.clear();
+		boolean hasData = false;
+		while (true) {
+			long newline = source.indexOf((byte) '\n');
+			long lineLength = newline >= 0 ? newline : source.getBuffer().size();
+			if (newline < 0 && lineLength == 0) {
+				// End of stream; a last event without its blank line still counts
+				return hasData ? data : null;
+			}
+			remember(lineLength + (newline >= 0 ? 1 : 0));
+
+			long contentLength = lineLength;
+			if (contentLength > 0 && source.getBuffer().getByte(contentLength - 1) == '\r') {
+				contentLength--;
+			}
+			if (contentLength == 0) {
+				source.skip(newline >= 0 ? 1 : 0);
+				if (hasData) {
+					return data;
+				}
+				continue;
+			}
+			if (source.rangeEquals(0, DATA)) {
+				long skip = DATA.size();
+				if (contentLength > skip && source.getBuffer().getByte(skip) == ' ') {
+					skip++;
+				}
+				source.skip(skip);
+				if (hasData) {
+					data.writeByte('\n');
+				}
+				data.write(source.getBuffer(), contentLength - skip);
+				source.skip(lineLength - contentLength);
+				hasData = true;
+			} else {
+				source.skip(lineLength);
+			}
+			if (newline >= 0) {
+				source.skip(1);
+			}
+		}
+	}
+
+	/**
+	* Keeps a copy of the next bytes of the stream in the diagnostics window. Segments
+	* are shared, not copied, and the window drops its oldest bytes when full.
+	*/
+	private void remember(long byteCount) {
+		totalBytes += byteCount;
+		if (diagnosticsBytes <= 0) {
+			return;
+		}
+		source.getBuffer().copyTo(recent, 0, byteCount);
+		if (recent.size() > diagnosticsBytes) {
+			try {
+				recent.skip(recent.size() - diagnosticsBytes);
+			} catch (IOException e) {
+				recent.clear();
+			}
+		}
+	}
+
+	/**
+	* @return the bytes read from the stream so far
+	*/
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	* @return the last bytes of the stream as text, for error messages
+	*/
+	public String recentText() {
+		String text = recent.snapshot().utf8();
+		return totalBytes > recent.size() ? "…" + text : text;
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+}
@@ -92,10 +92,12 @@ public class TableElement extends SlideElement {
 	public JSONObject toJson() throws JSONException {
 		JSONObject json = new JSONObject();
 		json.put("type", "table");
+		json.put("id", id);
 		json.put("x", x);
 		json.put("y", y);
 		json.put("width", width);
 		json.put("height", height);
+		json.put("rotation", rotation);
 		json.put("rows", rows);
 		json.put("columns", columns);
 		json.put("headerColor", String.format("#%06X", (0xFFFFFF & headerColor)));
@@ -116,6 +118,29 @@ public class TableElement extends SlideElement {
 		return json;
 	}
 	
+	@Override
+	public boolean setProperty(String property, Object value) {
+		switch (property) {
+			case "headerColor": headerColor = toColor(value); break;
+			case "cellColor": cellColor = toColor(value); break;
+			case "borderColor": borderColor = toColor(value); break;
+			case "borderWidth": borderWidth = toFloat(value); break;
+			default:
+			return super.setProperty(property, value);
+		}
+		initializePaints();
+		return true;
+	}
+	
+	@Override
+	protected void detachDrawingState() {
+		String[][] cells = new String[data.length][];
+		for (int i = 0; i < data.length; i++) {
+			cells[i] = data[i].clone();
+		}
+		data = cells;
+	}
+	
 	@Override
 	public void draw(Canvas canvas) {
 		canvas.save();
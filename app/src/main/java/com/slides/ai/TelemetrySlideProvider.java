@@ -0,0 +1,118 @@
+package com.slides.ai;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+* TelemetrySlideProvider records every slide generation of another provider in
+* {@link ModelTelemetry}. The first streamed element, or the result when nothing
+* streams, counts as the first token. A slide counts as valid when the provider
+* read it from the answer without repairing it or fixing it against the schema.
+* Cancelled requests are not recorded.
+*/
+public class TelemetrySlideProvider implements SlideGenerationProvider {
+	private static final String TAG = "TelemetrySlideProvider";
+
+	private final SlideGenerationProvider delegate;
+	private final ModelTelemetry telemetry;
+
+	// Bumped on every request and cancel() so an abandoned request is not recorded
+	private int run = 0;
+
+	public TelemetrySlideProvider(SlideGenerationProvider delegate, ModelTelemetry telemetry) {
+		this.delegate = delegate;
+		this.telemetry = telemetry;
+	}
+
+	@Override
+	public boolean supportsModel(String model) {
+		return delegate.supportsModel(model);
+	}
+
+	@Override
+	public void generateSlide(String prompt, String model, float canvasWidth, float canvasHeight,
+	SlideStreamParser.Listener streamListener, Callback callback) {
+		final int current = ++run;
+		final long startedAt = SystemClock.uptimeMillis();
+		final long[] firstToken = {-1};
+		final ExtractedSlide[] extracted = {null};
+
+		SlideStreamParser.Listener timingListener = streamListener == null ? null : new SlideStreamParser.Listener() {
+			@Override
+			public void onBackgroundColor(String color) {
+				streamListener.onBackgroundColor(color);
+			}
+
+			@Override
+			public void onElement(int index, JSONObject element) {
+				if (firstToken[0] < 0) {
+					firstToken[0] = SystemClock.uptimeMillis() - startedAt;
+				}
+				streamListener.onElement(index, element);
+			}
+
+			@Override
+			public void onText(String delta) {
+				streamListener.onText(delta);
+			}
+		};
+
+		delegate.generateSlide(prompt, model, canvasWidth, canvasHeight, timingListener, new ExtractionCallback() {
+			@Override
+			public void onExtracted(ExtractedSlide slide) {
+				extracted[0] = slide;
+			}
+
+			@Override
+			public void onSuccess(String slideJson) {
+				if (current == run) {
+					long total = SystemClock.uptimeMillis() - startedAt;
+					boolean valid = extracted[0] != null ? extracted[0].isValid() : isValidSlide(slideJson);
+					if (extracted[0] != null && !valid) {
+						Log.d(TAG, model + " answered a slide that had to be fixed: "
+						+ (extracted[0].repaired ? "cut off, " : "") + extracted[0].problems);
+					}
+					telemetry.record(model, new ModelTelemetry.Sample(System.currentTimeMillis(),
+					firstToken[0] >= 0 ? firstToken[0] : total, total, slideJson.length(), valid, false));
+				}
+				callback.onSuccess(slideJson);
+			}
+
+			@Override
+			public void onError(String message) {
+				if (current == run) {
+					telemetry.record(model, new ModelTelemetry.Sample(System.currentTimeMillis(),
+					firstToken[0], SystemClock.uptimeMillis() - startedAt, 0, false, true));
+				}
+				callback.onError(message);
+			}
+		});
+	}
+
+	@Override
+	public void generateText(String prompt, String model, Callback callback) {
+		run++;
+		delegate.generateText(prompt, model, callback);
+	}
+
+	@Override
+	public void cancel() {
+		run++;
+		delegate.cancel();
+	}
+
+	/**
+	* Fallback for providers that do not report how they extracted the slide.
+	*/
+	private static boolean isValidSlide(String slideJson) {
+		try {
+			JSONObject slide = new JSONObject(slideJson);
+			return slide.optJSONArray("elements") != null && SlideSchema.validate(slide).isEmpty();
+		} catch (JSONException e) {
+			return false;
+		}
+	}
+}
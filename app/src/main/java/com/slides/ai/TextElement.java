@@ -105,10 +105,12 @@ public class TextElement extends SlideElement {
 	public JSONObject toJson() throws JSONException {
 		JSONObject json = new JSONObject();
 		json.put("type", "text");
+		json.put("id", id);
 		json.put("x", x);
 		json.put("y", y);
 		json.put("width", width);
 		json.put("height", height);
+		json.put("rotation", rotation);
 		json.put("text", content);
 		json.put("fontSize", fontSize);
 		json.put("color", String.format("#%06X", (0xFFFFFF & color)));
@@ -119,6 +121,31 @@ public class TextElement extends SlideElement {
 		return json;
 	}
 	
+	@Override
+	public boolean setProperty(String property, Object value) {
+		switch (property) {
+			case "text":
+			case "content": content = String.valueOf(value); break;
+			case "fontSize": fontSize = toFloat(value); break;
+			case "color": color = toColor(value); break;
+			case "bold": bold = toBoolean(value); break;
+			case "medium": medium = toBoolean(value); break;
+			case "italic": italic = toBoolean(value); break;
+			case "alignment": alignment = String.valueOf(value); break;
+			default:
+			if (!super.setProperty(property, value)) return false;
+			break;
+		}
+		createTextLayout();
+		return true;
+	}
+	
+	@Override
+	protected void detachDrawingState() {
+		textPaint = new TextPaint(textPaint);
+		createTextLayout();
+	}
+	
 	@Override
 	public void draw(Canvas canvas) {
 		Log.d("TextElement", "Drawing text element: " + content + " at (" + x + ", " + y + ") with width " + width + " and height " + height);
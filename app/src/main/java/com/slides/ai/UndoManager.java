@@ -0,0 +1,367 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+* UndoManager keeps undo/redo history as a log of compact inverse operations
+* instead of whole-slide snapshots: property deltas, insertions, deletions,
+* z-order moves and background changes. Continuous gestures are folded into one
+* entry and the oldest entries are trimmed once the estimated memory cost passes
+* a cap.
+*/
+public class UndoManager {
+	private static final String TAG = "UndoManager";
+	private static final int MAX_ENTRIES = 100;
+	private static final long MAX_BYTES = 256 * 1024;
+
+	private final Deque<Operation> undoStack = new ArrayDeque<>();
+	private final Deque<Operation> redoStack = new ArrayDeque<>();
+	private long undoBytes = 0;
+	private long redoBytes = 0;
+
+	// Open gesture: properties of the element captured when it started
+	private SlideElement gestureElement;
+	private JSONObject gestureStart;
+
+	private HistoryListener historyListener;
+
+	public interface HistoryListener {
+		void onHistoryChanged(boolean canUndo, boolean canRedo);
+	}
+
+	/**
+	* Applies operations to the live element list of a slide.
+	*/
+	public interface Target {
+		List<SlideElement> getElements();
+		// Called before an element is changed in place
+		void onElementChanging(SlideElement element);
+		void onElementChanged(SlideElement element, String property, Object value);
+		void onElementsReordered();
+		void onBackgroundChanged(String color);
+	}
+
+	interface Operation {
+		void undo(Target target);
+		void redo(Target target);
+		long cost();
+	}
+
+	public void setHistoryListener(HistoryListener listener) {
+		this.historyListener = listener;
+	}
+
+	public boolean canUndo() {
+		return !undoStack.isEmpty();
+	}
+
+	public boolean canRedo() {
+		return !redoStack.isEmpty();
+	}
+
+	/**
+	* Starts a continuous edit of an element, such as a drag, a resize or a
+	* customization dialog. Everything up to {@link #endGesture()} becomes one entry.
+	*/
+	public void beginGesture(SlideElement element) {
+		endGesture();
+		try {
+			gestureElement = element;
+			gestureStart = element.captureProperties();
+		} catch (JSONException e) {
+			Log.e(TAG, "Could not capture element state", e);
+			gestureElement = null;
+			gestureStart = null;
+		}
+	}
+
+	/**
+	* Closes the open gesture and records only the properties that changed.
+	*/
+	public void endGesture() {
+		if (gestureElement == null) {
+			return;
+		}
+		SlideElement element = gestureElement;
+		JSONObject before = gestureStart;
+		gestureElement = null;
+		gestureStart = null;
+		try {
+			JSONObject after = element.captureProperties();
+			List<String> names = new ArrayList<>();
+			List<Object> oldValues = new ArrayList<>();
+			List<Object> newValues = new ArrayList<>();
+			Iterator<String> keys = after.keys();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				Object oldValue = before.opt(key);
+				Object newValue = after.opt(key);
+				if (!String.valueOf(oldValue).equals(String.valueOf(newValue))) {
+					names.add(key);
+					oldValues.add(oldValue);
+					newValues.add(newValue);
+				}
+			}
+			if (!names.isEmpty()) {
+				push(new PropertyChange(element, names.toArray(new String[0]),
+				oldValues.toArray(), newValues.toArray()));
+			}
+		} catch (JSONException e) {
+			Log.e(TAG, "Could not capture element state", e);
+		}
+	}
+
+	public void recordInsert(SlideElement element, int index) {
+		endGesture();
+		push(new Insertion(element, index, true));
+	}
+
+	public void recordDelete(SlideElement element, int index) {
+		endGesture();
+		push(new Insertion(element, index, false));
+	}
+
+	public void recordMove(SlideElement element, int fromIndex, int toIndex) {
+		endGesture();
+		if (fromIndex != toIndex) {
+			push(new ZOrderMove(element, fromIndex, toIndex));
+		}
+	}
+
+	public void recordBackground(String oldColor, String newColor) {
+		endGesture();
+		if (!oldColor.equals(newColor)) {
+			push(new BackgroundChange(oldColor, newColor));
+		}
+	}
+
+	public boolean undo(Target target) {
+		endGesture();
+		Operation op = undoStack.pollLast();
+		if (op == null) {
+			return false;
+		}
+		undoBytes -= op.cost();
+		op.undo(target);
+		redoStack.addLast(op);
+		redoBytes += op.cost();
+		trim(redoStack, false);
+		notifyListener();
+		return true;
+	}
+
+	public boolean redo(Target target) {
+		endGesture();
+		Operation op = redoStack.pollLast();
+		if (op == null) {
+			return false;
+		}
+		redoBytes -= op.cost();
+		op.redo(target);
+		undoStack.addLast(op);
+		undoBytes += op.cost();
+		trim(undoStack, true);
+		notifyListener();
+		return true;
+	}
+
+	/**
+	* Drops all history, e.g. when a different slide is loaded and the
+	* recorded elements are no longer live.
+	*/
+	public void clear() {
+		gestureElement = null;
+		gestureStart = null;
+		undoStack.clear();
+		redoStack.clear();
+		undoBytes = 0;
+		redoBytes = 0;
+		notifyListener();
+	}
+
+	private void push(Operation op) {
+		undoStack.addLast(op);
+		undoBytes += op.cost();
+		redoStack.clear();
+		redoBytes = 0;
+		trim(undoStack, true);
+		notifyListener();
+	}
+
+	private void trim(Deque<Operation> stack, boolean isUndo) {
+		while (stack.size() > 1 && (stack.size() > MAX_ENTRIES || (isUndo ? undoBytes : redoBytes) > MAX_BYTES)) {
+			Operation dropped = stack.pollFirst();
+			if (isUndo) {
+				undoBytes -= dropped.cost();
+			} else {
+				redoBytes -= dropped.cost();
+			}
+		}
+	}
+
+	private void notifyListener() {
+		if (historyListener != null) {
+			historyListener.onHistoryChanged(canUndo(), canRedo());
+		}
+	}
+
+	private static long valueCost(Object value) {
+		return value instanceof String ? 40 + 2L * ((String) value).length() : 16;
+	}
+
+	/**
+	* One or more property deltas of a single element.
+	*/
+	static class PropertyChange implements Operation {
+		private final SlideElement element;
+		private final String[] properties;
+		private final Object[] oldValues;
+		private final Object[] newValues;
+
+		PropertyChange(SlideElement element, String[] properties, Object[] oldValues, Object[] newValues) {
+			this.element = element;
+			this.properties = properties;
+			this.oldValues = oldValues;
+			this.newValues = newValues;
+		}
+
+		@Override
+		public void undo(Target target) {
+			apply(target, oldValues);
+		}
+
+		@Override
+		public void redo(Target target) {
+			apply(target, newValues);
+		}
+
+		private void apply(Target target, Object[] values) {
+			target.onElementChanging(element);
+			for (int i = 0; i < properties.length; i++) {
+				if (values[i] != null && element.setProperty(properties[i], values[i])) {
+					target.onElementChanged(element, properties[i], values[i]);
+				}
+			}
+		}
+
+		@Override
+		public long cost() {
+			long cost = 32;
+			for (int i = 0; i < properties.length; i++) {
+				cost += 16 + valueCost(oldValues[i]) + valueCost(newValues[i]);
+			}
+			return cost;
+		}
+	}
+
+	/**
+	* Insertion of an element, or a deletion when {@code inserted} is false.
+	*/
+	static class Insertion implements Operation {
+		private final SlideElement element;
+		private final int index;
+		private final boolean inserted;
+
+		Insertion(SlideElement element, int index, boolean inserted) {
+			this.element = element;
+			this.index = index;
+			this.inserted = inserted;
+		}
+
+		@Override
+		public void undo(Target target) {
+			if (inserted) remove(target); else insert(target);
+		}
+
+		@Override
+		public void redo(Target target) {
+			if (inserted) insert(target); else remove(target);
+		}
+
+		private void insert(Target target) {
+			List<SlideElement> elements = target.getElements();
+			elements.add(Math.min(index, elements.size()), element);
+			target.onElementsReordered();
+		}
+
+		private void remove(Target target) {
+			target.getElements().remove(element);
+			target.onElementsReordered();
+		}
+
+		@Override
+		public long cost() {
+			// The element itself is retained, roughly a few hundred bytes
+			return 512;
+		}
+	}
+
+	static class ZOrderMove implements Operation {
+		private final SlideElement element;
+		private final int fromIndex;
+		private final int toIndex;
+
+		ZOrderMove(SlideElement element, int fromIndex, int toIndex) {
+			this.element = element;
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+		}
+
+		@Override
+		public void undo(Target target) {
+			moveTo(target, fromIndex);
+		}
+
+		@Override
+		public void redo(Target target) {
+			moveTo(target, toIndex);
+		}
+
+		private void moveTo(Target target, int index) {
+			List<SlideElement> elements = target.getElements();
+			if (elements.remove(element)) {
+				elements.add(Math.min(index, elements.size()), element);
+				target.onElementsReordered();
+			}
+		}
+
+		@Override
+		public long cost() {
+			return 32;
+		}
+	}
+
+	static class BackgroundChange implements Operation {
+		private final String oldColor;
+		private final String newColor;
+
+		BackgroundChange(String oldColor, String newColor) {
+			this.oldColor = oldColor;
+			this.newColor = newColor;
+		}
+
+		@Override
+		public void undo(Target target) {
+			target.onBackgroundChanged(oldColor);
+		}
+
+		@Override
+		public void redo(Target target) {
+			target.onBackgroundChanged(newColor);
+		}
+
+		@Override
+		public long cost() {
+			return 32 + valueCost(oldColor) + valueCost(newColor);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.slides.ai;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* VariantGenerator asks for several versions of the same slide at once, so the user
+* can pick a layout instead of regenerating one attempt after another.
+*
+* Every variant has its own provider instance and model or sampling settings, and
+* all requests start together; each result is reported as soon as it arrives.
+* Must be used from the main thread.
+*/
+public class VariantGenerator {
+	private static final String TAG = "VariantGenerator";
+	public static final int DEFAULT_VARIANTS = 3;
+	public static final int MAX_VARIANTS = 4;
+
+	public static class Variant {
+		final SlideGenerationProvider provider;
+		final String model;
+		final String label;
+
+		public Variant(SlideGenerationProvider provider, String model, String label) {
+			this.provider = provider;
+			this.model = model;
+			this.label = label;
+		}
+	}
+
+	public interface Listener {
+		void onVariantReady(int index, String slideJson);
+		void onVariantFailed(int index, String error);
+		void onComplete(int succeeded);
+	}
+
+	private final List<SlideGenerationProvider> busy = new ArrayList<>();
+	// Bumped on every generate() and cancel() so late callbacks of an old run are dropped
+	private int run = 0;
+	private int pending;
+	private int succeeded;
+
+	/**
+	* Starts every variant, cancelling the variants of a previous prompt still running.
+	* Without any variant the listener completes right away.
+	*/
+	public void generate(List<Variant> variants, String prompt, float canvasWidth, float canvasHeight, Listener listener) {
+		cancel();
+		final int current = run;
+		pending = variants.size();
+		succeeded = 0;
+		if (variants.isEmpty()) {
+			listener.onComplete(0);
+			return;
+		}
+		for (int i = 0; i < variants.size(); i++) {
+			final int index = i;
+			Variant variant = variants.get(i);
+			busy.add(variant.provider);
+			variant.provider.generateSlide(prompt, variant.model, canvasWidth, canvasHeight, null, new SlideGenerationProvider.Callback() {
+				@Override
+				public void onSuccess(String slideJson) {
+					if (current == run) {
+						busy.remove(variant.provider);
+						succeeded++;
+						listener.onVariantReady(index, slideJson);
+						finish(listener);
+					}
+				}
+
+				@Override
+				public void onError(String message) {
+					if (current == run) {
+						Log.w(TAG, "Variant " + (index + 1) + " (" + variant.label + ") failed: " + message);
+						busy.remove(variant.provider);
+						listener.onVariantFailed(index, message != null ? message : "Unknown error");
+						finish(listener);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	* Cancels the variants still in flight. No further listener calls are made.
+	*/
+	public void cancel() {
+		run++;
+		for (SlideGenerationProvider provider : busy) {
+			provider.cancel();
+		}
+		busy.clear();
+	}
+
+	private void finish(Listener listener) {
+		if (--pending == 0) {
+			listener.onComplete(succeeded);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.slides.ai;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
+
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+
+import java.util.List;
+
+/**
+* VariantPicker shows slide variants side by side as they arrive and lets the user
+* pick one. A slot shows a spinner until its thumbnail or error is set.
+*/
+public class VariantPicker {
+
+	public interface Listener {
+		void onVariantPicked(int index);
+		void onDismissed();
+	}
+
+	private final AlertDialog dialog;
+	private final Listener listener;
+	private final View[] slots;
+	private boolean picked = false;
+
+	public VariantPicker(Context context, List<String> labels, Listener listener) {
+		this.listener = listener;
+		LayoutInflater inflater = LayoutInflater.from(context);
+		View content = inflater.inflate(R.layout.dialog_variants, null);
+		ViewGroup container = content.findViewById(R.id.variants_container);
+
+		slots = new View[labels.size()];
+		for (int i = 0; i < labels.size(); i++) {
+			final int index = i;
+			View slot = inflater.inflate(R.layout.item_variant, container, false);
+			((TextView) slot.findViewById(R.id.variant_label)).setText(labels.get(i));
+			slot.setEnabled(false);
+			slot.setOnClickListener(v -> pick(index));
+			container.addView(slot);
+			slots[i] = slot;
+		}
+
+		dialog = new MaterialAlertDialogBuilder(context)
+		.setTitle("Pick a layout")
+		.setView(content)
+		.setNegativeButton("Discard", null)
+		.create();
+		dialog.setOnDismissListener(d -> {
+			if (!picked) {
+				listener.onDismissed();
+			}
+		});
+	}
+
+	public void show() {
+		dialog.show();
+	}
+
+	public void dismiss() {
+		picked = true;
+		dialog.dismiss();
+	}
+
+	public boolean isShowing() {
+		return dialog.isShowing();
+	}
+
+	private void pick(int index) {
+		picked = true;
+		dialog.dismiss();
+		listener.onVariantPicked(index);
+	}
+
+	public void setThumbnail(int index, Bitmap thumbnail) {
+		View slot = slots[index];
+		ImageView image = slot.findViewById(R.id.variant_thumbnail);
+		image.setImageBitmap(thumbnail);
+		image.setVisibility(View.VISIBLE);
+		slot.findViewById(R.id.variant_progress).setVisibility(View.GONE);
+		slot.setEnabled(true);
+	}
+
+	public void setFailed(int index, String error) {
+		View slot = slots[index];
+		ProgressBar progress = slot.findViewById(R.id.variant_progress);
+		progress.setVisibility(View.GONE);
+		TextView label = slot.findViewById(R.id.variant_label);
+		label.setText(label.getText() + "\nFailed");
+		slot.setContentDescription(error);
+	}
+}
@@ -1,31 +1,65 @@
 package com.slides.ai.qwen;
 
 import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
 import com.google.gson.Gson;
 import com.slides.ai.ApiKeyManager;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import com.slides.ai.ConversationContext;
+import com.slides.ai.ImagePrefetcher;
+import com.slides.ai.ImageUrlSniffer;
+import com.slides.ai.SlidePrompts;
+import com.slides.ai.SlideStreamParser;
+import com.slides.ai.SharedHttpClient;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 public class QwenManager {
     private static final String NEW_CHAT_URL = "https://chat.qwen.ai/api/v2/chats/new";
     private static final String COMPLETION_URL = "https://chat.qwen.ai/api/v2/chat/completions?chat_id=";
+    private static final String MIDTOKEN_URL = "https://sg-wum.alibaba.com/w/wu.json";
+    private static final int MIDTOKEN_MAX_USES = 5;
+    // Continuations tried after a slide stream drops mid-answer
+    private static final int MAX_RESUMES = 2;
+    private static final int MAX_SESSIONS = 32;
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
     private ApiKeyManager apiKeyManager;
     private Handler mainHandler;
     private ExecutorService executorService;
     private Gson gson = new Gson();
 
-    // Store conversation context
-    private String currentChatId;
-    private String lastParentId;
-    private List<QwenCompletionRequest.Message> conversationHistory = new ArrayList<>();
-    private String cookies;
+    // Conversations by chat id, least recently used first
+    private final Map<String, QwenSession> sessions = new LinkedHashMap<String, QwenSession>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QwenSession> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    };
+    private volatile String cookies;
+    private volatile ImagePrefetcher imagePrefetcher;
+    // Every request in flight, so cancel() can stop them all
+    private final Set<Call> calls = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Bumped by cancel() so requests started before it stay quiet
+    private final AtomicInteger cancelSerial = new AtomicInteger();
 
     public interface QwenCallback<T> {
         void onSuccess(T response);
@@ -38,306 +72,551 @@ public class QwenManager {
         this.executorService = executorService;
     }
 
+    /**
+     * Starts downloading the images of slides as soon as their URLs appear in the
+     * streamed answer, instead of once the slide is drawn. Null turns it off.
+     */
+    public void setImagePrefetcher(ImagePrefetcher imagePrefetcher) {
+        this.imagePrefetcher = imagePrefetcher;
+    }
+
     public void createNewChat(QwenCallback<QwenNewChatResponse> callback) {
+        int serial = cancelSerial.get();
         executorService.execute(() -> {
             try {
-                if (midtoken == null || midtokenUses >= 5) {
-                    fetchMidtoken(callback);
-                    if (midtoken == null) {
-                        return; // fetchMidtoken will post error
-                    }
-                } else {
-                    midtokenUses++;
+                if (!ensureMidtoken(callback)) {
+                    return; // fetchMidtoken will post error
                 }
 
-                URL url = new URL(NEW_CHAT_URL);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setRequestProperty("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/138.0.0.0 Safari/537.36");
-                connection.setRequestProperty("Referer", "https://chat.qwen.ai/");
-                connection.setRequestProperty("bx-v", "2.5.31");
-                connection.setRequestProperty("Source", "web");
-                connection.setRequestProperty("Authorization", "Bearer");
-                connection.setRequestProperty("bx-umidtoken", midtoken);
-                if (cookies != null) {
-                    connection.setRequestProperty("Cookie", cookies);
-                }
-                connection.setDoOutput(true);
-
-                List<String> models = new ArrayList<>();
-                models.add("qwen3-235b-a22b");
-                QwenNewChatRequest request = new QwenNewChatRequest("AI Slide Generator", models, "normal", "t2t", System.currentTimeMillis());
-                String requestBody = gson.toJson(request);
-
-                OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-                writer.write(requestBody);
-                writer.flush();
-                writer.close();
-
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    QwenNewChatResponse response = gson.fromJson(reader, QwenNewChatResponse.class);
-
-                    // Store chat ID for conversation context
-                    if (response.success && response.data != null) {
-                        currentChatId = response.data.id;
-                        lastParentId = null;
-                        conversationHistory.clear();
-
-                        // Store cookies
-                        List<String> cookieList = connection.getHeaderFields().get("Set-Cookie");
-                        if (cookieList != null) {
-                            cookies = String.join(";", cookieList);
-                        }
-                    }
+                QwenNewChatResponse response = requestNewChat();
 
-                    mainHandler.post(() -> callback.onSuccess(response));
-                    reader.close();
-                } else {
-                    BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-                    StringBuilder errorResponse = new StringBuilder();
-                    String errorLine;
-                    while ((errorLine = errorReader.readLine()) != null) {
-                        errorResponse.append(errorLine);
-                    }
-                    errorReader.close();
-                    mainHandler.post(() -> callback.onError("Error: " + responseCode + " - " + errorResponse.toString()));
+                // Register the chat so completions can continue it
+                if (response.success && response.data != null) {
+                    restoreSession(response.data.id, null, null);
                 }
-                connection.disconnect();
+
+                mainHandler.post(() -> callback.onSuccess(response));
             } catch (Exception e) {
-                mainHandler.post(() -> callback.onError("Connection error: " + e.getMessage()));
+                if (serial == cancelSerial.get()) {
+                    mainHandler.post(() -> callback.onError("Connection error: " + e.getMessage()));
+                }
             }
         });
     }
 
+    /**
+     * Creates a chat on the server without registering a session for it.
+     * Runs on the calling thread; used directly to pre-create spare chats.
+     */
+    public QwenNewChatResponse requestNewChat() throws IOException {
+        List<String> models = new ArrayList<>();
+        models.add("qwen3-235b-a22b");
+        QwenNewChatRequest request = new QwenNewChatRequest("AI Slide Generator", models, "normal", "t2t", System.currentTimeMillis());
+        String requestBody = gson.toJson(request);
+
+        Call call = SharedHttpClient.getInstance().newCall(qwenRequest(NEW_CHAT_URL)
+                .post(RequestBody.create(requestBody, JSON))
+                .build());
+        calls.add(call);
+        try (Response httpResponse = call.execute()) {
+            ResponseBody body = httpResponse.body();
+            if (!httpResponse.isSuccessful() || body == null) {
+                String errorResponse = body != null ? body.string() : "";
+                throw new IOException("Error: " + httpResponse.code() + " - " + errorResponse);
+            }
+            QwenNewChatResponse response = gson.fromJson(body.charStream(), QwenNewChatResponse.class);
+            if (response == null) {
+                throw new IOException("Empty new chat response");
+            }
+
+            // Store cookies
+            List<String> cookieList = httpResponse.headers("Set-Cookie");
+            if (!cookieList.isEmpty()) {
+                cookies = String.join(";", cookieList);
+            }
+            return response;
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    // Shared by all sessions and guarded by this manager's lock. Fetching holds the
+    // lock too, so parallel requests wait for one fetch instead of each starting one.
     private String midtoken;
     private int midtokenUses = 0;
 
-    private void fetchMidtoken(QwenCallback<?> callback) {
+    /**
+     * Makes sure a midtoken with uses left is available and counts one use.
+     *
+     * @return false if none could be fetched; the error was posted to the callback
+     */
+    private synchronized boolean ensureMidtoken(QwenCallback<?> callback) {
+        if (midtoken == null || midtokenUses >= MIDTOKEN_MAX_USES) {
+            fetchMidtoken(callback);
+            return midtoken != null;
+        }
+        midtokenUses++;
+        return true;
+    }
+
+    /**
+     * Fetches a new midtoken ahead of time when the current one is missing or
+     * about to run out, so the next request does not wait for it. Runs on the calling thread.
+     */
+    public synchronized void refreshMidtokenIfStale() {
+        if (midtoken == null || midtokenUses >= MIDTOKEN_MAX_USES - 1) {
+            String previous = midtoken;
+            fetchMidtoken(null);
+            if (midtoken != null && !midtoken.equals(previous)) {
+                // Not spent by a request yet
+                midtokenUses = 0;
+            }
+        }
+    }
+
+    private synchronized void fetchMidtoken(QwenCallback<?> callback) {
         try {
-            URL url = new URL("https://sg-wum.alibaba.com/w/wu.json");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                String line;
-                StringBuilder response = new StringBuilder();
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                // Extract midtoken using regex
-                String responseString = response.toString();
-                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("(?:umx\\.wu|__fycb)\\('([^']+)'\\)");
-                java.util.regex.Matcher matcher = pattern.matcher(responseString);
-                if (matcher.find()) {
-                    midtoken = matcher.group(1);
-                    midtokenUses = 1;
+            Request request = new Request.Builder().url(MIDTOKEN_URL).get().build();
+            try (Response response = SharedHttpClient.getInstance().newCall(request).execute()) {
+                ResponseBody body = response.body();
+                int responseCode = response.code();
+                if (response.isSuccessful() && body != null) {
+                    // Extract midtoken using regex
+                    String responseString = body.string();
+                    java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("(?:umx\\.wu|__fycb)\\('([^']+)'\\)");
+                    java.util.regex.Matcher matcher = pattern.matcher(responseString);
+                    if (matcher.find()) {
+                        midtoken = matcher.group(1);
+                        midtokenUses = 1;
+                    } else {
+                        postError(callback, "Failed to extract midtoken.");
+                    }
                 } else {
-                    mainHandler.post(() -> callback.onError("Failed to extract midtoken."));
+                    postError(callback, "Failed to fetch midtoken: " + responseCode);
                 }
-            } else {
-                mainHandler.post(() -> callback.onError("Failed to fetch midtoken: " + responseCode));
             }
-            connection.disconnect();
         } catch (Exception e) {
-            mainHandler.post(() -> callback.onError("Failed to fetch midtoken: " + e.getMessage()));
+            postError(callback, "Failed to fetch midtoken: " + e.getMessage());
+        }
+    }
+
+    private void postError(QwenCallback<?> callback, String message) {
+        if (callback != null) {
+            mainHandler.post(() -> callback.onError(message));
+        } else {
+            Log.w("QwenManager", message);
         }
     }
 
-    public void getCompletion(String chatId, String parentId, String prompt, String model, float canvasWidth, float canvasHeight, QwenCallback<String> callback) {
+    public void getCompletion(String chatId, String prompt, String model, float canvasWidth, float canvasHeight, QwenCallback<String> callback) {
+        getCompletion(chatId, prompt, model, canvasWidth, canvasHeight, callback, null);
+    }
+
+    /**
+     * Same as above, but also reports the slide's background color and each element
+     * on the main thread as soon as it is complete in the stream, before onSuccess.
+     */
+    public void getCompletion(String chatId, String prompt, String model, float canvasWidth, float canvasHeight,
+                              QwenCallback<String> callback, SlideStreamParser.Listener streamListener) {
+        complete(chatId, SlidePrompts.standalone(prompt, canvasWidth, canvasHeight), model, true, callback, streamListener);
+    }
+
+    /**
+     * Sends a prompt as is, without the slide instructions, and reports the raw answer.
+     */
+    public void getTextCompletion(String chatId, String prompt, String model, QwenCallback<String> callback) {
+        complete(chatId, prompt, model, false, callback, null);
+    }
+
+    private void complete(String chatId, String content, String model, boolean slide,
+                          QwenCallback<String> callback, SlideStreamParser.Listener streamListener) {
+        QwenSession session = getSession(chatId);
+        int serial = cancelSerial.get();
+        int sessionSerial = session.getCancelSerial();
         executorService.execute(() -> {
             try {
-                if (midtoken == null || midtokenUses >= 5) {
-                    fetchMidtoken(callback);
-                    if (midtoken == null) {
-                        return; // fetchMidtoken will post error
-                    }
-                } else {
-                    midtokenUses++;
+                if (!ensureMidtoken(callback)) {
+                    return; // fetchMidtoken will post error
                 }
 
-                // Use stored chat ID if available, otherwise use provided one
-                String activeChatId = currentChatId != null ? currentChatId : chatId;
-
-                URL url = new URL(COMPLETION_URL + activeChatId);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setRequestProperty("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/138.0.0.0 Safari/537.36");
-                connection.setRequestProperty("Referer", "https://chat.qwen.ai/");
-                connection.setRequestProperty("bx-v", "2.5.31");
-                connection.setRequestProperty("Source", "web");
-                connection.setRequestProperty("Authorization", "Bearer");
-                connection.setRequestProperty("bx-umidtoken", midtoken);
-                if (cookies != null) {
-                    connection.setRequestProperty("Cookie", cookies);
+                QwenCompletionRequest.Message message = createUserMessage(content, session.getParentId());
+                StreamState state = new StreamState(slide, streamListener, session, serial, sessionSerial);
+
+                String answer;
+                try {
+                    answer = stream(session, model, message, state);
+                } catch (StreamDroppedException e) {
+                    answer = resume(session, model, content, message.parent_id, state, e);
+                }
+
+                // Update conversation context
+                if (state.responseId != null) {
+                    // History is kept compact: the instructions and slide JSON are
+                    // summarized, not stored
+                    QwenCompletionRequest.Message userMessage = new QwenCompletionRequest.Message();
+                    userMessage.role = "user";
+                    userMessage.content = content.length() > 200 ? content.substring(0, 200) : content;
+                    userMessage.timestamp = message.timestamp;
+                    userMessage.parent_id = message.parent_id;
+
+                    QwenCompletionRequest.Message aiMessage = new QwenCompletionRequest.Message();
+                    aiMessage.role = "assistant";
+                    aiMessage.content = ConversationContext.summarizeSlide(answer);
+                    aiMessage.timestamp = System.currentTimeMillis();
+                    aiMessage.parent_id = state.responseId;
+                    session.recordExchange(userMessage, aiMessage, state.responseId);
                 }
-                connection.setDoOutput(true);
-
-                QwenCompletionRequest request = new QwenCompletionRequest();
-                request.stream = true;
-                request.incremental_output = true;
-                request.chat_id = activeChatId;
-                request.chat_mode = "normal";
-                request.model = model;
-                request.parent_id = lastParentId;
-                request.messages = new ArrayList<>();
-
-                // Add conversation history to maintain context
-                request.messages.addAll(conversationHistory);
-
-                // Create enhanced prompt for slide generation
-                String enhancedPrompt = createSlideGenerationPrompt(prompt, canvasWidth, canvasHeight);
-
-                QwenCompletionRequest.Message message = new QwenCompletionRequest.Message();
-                message.role = "user";
-                message.content = enhancedPrompt;
-                message.timestamp = System.currentTimeMillis();
-                message.chat_type = "t2t";
-                message.sub_chat_type = "t2t";
-                message.user_action = "chat";
-                message.feature_config = new QwenCompletionRequest.FeatureConfig();
-                message.feature_config.thinking_enabled = false; // Disabled as requested
-                message.feature_config.output_schema = "phase";
-                message.extra = new QwenCompletionRequest.Extra();
-                message.extra.meta = new QwenCompletionRequest.Meta();
-                message.extra.meta.subChatType = "t2t";
-                message.parent_id = lastParentId;
-
-                request.messages.add(message);
-                request.timestamp = System.currentTimeMillis();
-
-                String requestBody = gson.toJson(request);
-
-                OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-                writer.write(requestBody);
-                writer.flush();
-                writer.close();
-
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    String line;
-                    StringBuilder fullResponse = new StringBuilder();
-                    StringBuilder rawResponse = new StringBuilder();
-                    String responseId = null;
-
-                    while ((line = reader.readLine()) != null) {
-                        rawResponse.append(line).append("\n");
-                        if (line.startsWith("data:")) {
-                            String json = line.substring(5).trim();
-                            if (!json.isEmpty() && !json.equals("[DONE]")) {
-                                try {
-                                    QwenCompletionResponse response = gson.fromJson(json, QwenCompletionResponse.class);
-                                    if (response != null) {
-                                        // Store response ID for conversation context
-                                        if (response.response_created != null && response.response_created.response_id != null) {
-                                            responseId = response.response_created.response_id;
-                                        }
-
-                                        if (response.choices != null && !response.choices.isEmpty()) {
-                                            QwenCompletionResponse.Delta delta = response.choices.get(0).delta;
-                                            if (delta != null && delta.content != null &&
-                                                "answer".equals(delta.phase)) { // Only collect answer phase content
-                                                fullResponse.append(delta.content);
-                                            }
-                                        }
-                                    }
-                                } catch (Exception e) {
-                                    // Skip malformed JSON lines
-                                }
+
+                String result = answer;
+                state.post(() -> callback.onSuccess(result));
+            } catch (Exception e) {
+                if (serial == cancelSerial.get() && sessionSerial == session.getCancelSerial()) {
+                    mainHandler.post(() -> callback.onError("Request error: " + e.getMessage()));
+                }
+            }
+        });
+    }
+
+    private QwenCompletionRequest.Message createUserMessage(String content, String parentId) {
+        QwenCompletionRequest.Message message = new QwenCompletionRequest.Message();
+        message.role = "user";
+        message.content = content;
+        message.timestamp = System.currentTimeMillis();
+        message.chat_type = "t2t";
+        message.sub_chat_type = "t2t";
+        message.user_action = "chat";
+        message.feature_config = new QwenCompletionRequest.FeatureConfig();
+        message.feature_config.thinking_enabled = false; // Disabled as requested
+        message.feature_config.output_schema = "phase";
+        message.extra = new QwenCompletionRequest.Extra();
+        message.extra.meta = new QwenCompletionRequest.Meta();
+        message.extra.meta.subChatType = "t2t";
+        message.parent_id = parentId;
+        return message;
+    }
+
+    /**
+     * Sends one completion request and reads its answer phase. Runs on the calling thread.
+     *
+     * @return the text of the answer
+     * @throws StreamDroppedException if the connection broke after the stream had started
+     */
+    private String stream(QwenSession session, String model, QwenCompletionRequest.Message message, StreamState state) throws IOException {
+        String chatId = session.getChatId();
+        QwenCompletionRequest request = new QwenCompletionRequest();
+        request.stream = true;
+        request.incremental_output = true;
+        request.chat_id = chatId;
+        request.chat_mode = "normal";
+        request.model = model;
+        request.parent_id = message.parent_id;
+        // Only the new message is sent: the server threads the chat through
+        // parent_id, and ConversationContext puts a compact summary of the deck
+        // into the prompt instead of replaying earlier slide JSON
+        request.messages = new ArrayList<>();
+        request.messages.add(message);
+        request.timestamp = System.currentTimeMillis();
+
+        String requestBody = gson.toJson(request);
+        long startedAt = SystemClock.uptimeMillis();
+        long firstTokenAt = 0;
+
+        Call call = SharedHttpClient.getInstance().newCall(qwenRequest(COMPLETION_URL + chatId)
+                .header("Accept", "text/event-stream")
+                .post(RequestBody.create(requestBody, JSON))
+                .build());
+        calls.add(call);
+        session.addCall(call);
+        try (Response httpResponse = call.execute()) {
+            ResponseBody body = httpResponse.body();
+            if (!httpResponse.isSuccessful() || body == null) {
+                String errorResponse = body != null ? body.string() : "";
+                throw new IOException("Error: " + httpResponse.code() + " " + errorResponse);
+            }
+            QwenStreamDecoder decoder = new QwenStreamDecoder(body.source());
+            StringBuilder fullResponse = new StringBuilder();
+            SlideStreamParser streamParser = state.newParser();
+            ImagePrefetcher prefetcher = imagePrefetcher;
+            ImageUrlSniffer sniffer = streamParser != null && prefetcher != null ? new ImageUrlSniffer() : null;
+            try {
+                while (decoder.next()) {
+                    // Store response ID for conversation context
+                    if (decoder.responseId != null) {
+                        state.responseId = decoder.responseId;
+                    }
+                    // Only collect answer phase content
+                    if (decoder.content != null && "answer".equals(decoder.phase)) {
+                        if (firstTokenAt == 0) {
+                            firstTokenAt = SystemClock.uptimeMillis();
+                        }
+                        fullResponse.append(decoder.content);
+                        if (streamParser != null) {
+                            streamParser.feed(decoder.content);
+                        }
+                        if (state.listener != null) {
+                            String delta = decoder.content;
+                            state.post(() -> state.listener.onText(delta));
+                        }
+                        if (sniffer != null) {
+                            for (String url : sniffer.feed(decoder.content)) {
+                                prefetcher.prefetch(url);
                             }
                         }
                     }
-                    reader.close();
+                }
+            } catch (IOException e) {
+                if (call.isCanceled()) {
+                    throw e;
+                }
+                if (streamParser == null || !streamParser.isFinished()) {
+                    throw new StreamDroppedException(e);
+                }
+                // Only the end of the stream was lost; the slide itself is complete
+            }
+            decoder.close();
+            if (decoder.getMalformedEvents() > 0) {
+                Log.w("QwenManager", "Skipped " + decoder.getMalformedEvents() + " malformed stream events");
+            }
+            Log.d("QwenManager", "Completion: request " + requestBody.length() + " chars, response "
+                    + decoder.getTotalBytes() + " bytes, first token "
+                    + (firstTokenAt == 0 ? -1 : firstTokenAt - startedAt) + "ms, total "
+                    + (SystemClock.uptimeMillis() - startedAt) + "ms");
+
+            if (fullResponse.length() == 0 && decoder.getTotalBytes() > 0) {
+                throw new IOException("Received an unparsable response from the server:\n\n" + decoder.recentText());
+            }
+            return fullResponse.toString();
+        } finally {
+            calls.remove(call);
+            session.removeCall(call);
+        }
+    }
+
+    /**
+     * Continues a slide whose stream dropped: the model is told which elements
+     * arrived complete and asked for the rest only, and both parts are merged. A
+     * drop before the first element is reported as is, since resuming would not
+     * save anything over asking again.
+     *
+     * @return the merged slide JSON
+     */
+    private String resume(QwenSession session, String model, String content, String parentId,
+                          StreamState state, StreamDroppedException dropped) throws IOException {
+        StreamDroppedException failure = dropped;
+        for (int attempt = 1; attempt <= MAX_RESUMES; attempt++) {
+            if (state.elements.isEmpty() || !ensureMidtoken(null)) {
+                break;
+            }
+            Log.w("QwenManager", "Stream dropped after " + state.elements.size() + " elements, resuming ("
+                    + attempt + "/" + MAX_RESUMES + "): " + failure.getCause().getMessage());
+            try {
+                // A continuation of the original request, not a follow-up of the partial answer
+                stream(session, model, createUserMessage(createContinuationPrompt(content, state), parentId), state);
+                return state.toSlide().toString();
+            } catch (StreamDroppedException e) {
+                failure = e;
+            }
+        }
+        throw failure.getCause() instanceof IOException ? (IOException) failure.getCause() : failure;
+    }
+
+    private String createContinuationPrompt(String content, StreamState state) {
+        return content + "\n\n" +
+                "Your previous answer to this was cut off. These elements of the slide are already complete: " +
+                ConversationContext.summarizeSlide(state.toSlide().toString()) + "\n" +
+                "Respond with the same JSON object, containing only the elements that are still missing. " +
+                "Do not repeat the elements listed above.";
+    }
+
+    /**
+     * Thrown when a completion stream breaks after it has started, as opposed to a
+     * request that failed outright.
+     */
+    private static class StreamDroppedException extends IOException {
+        StreamDroppedException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * What the streams of one slide request have delivered so far, across resumes.
+     * Elements are deduplicated, so one repeated by a continuation is only kept and
+     * reported once.
+     */
+    private class StreamState {
+        final boolean slide;
+        final SlideStreamParser.Listener listener;
+        final List<JSONObject> elements = new ArrayList<>();
+        final Set<String> keys = new HashSet<>();
+        String backgroundColor;
+        String responseId;
+        // Cancel serials when the request started; events are dropped once either moves on
+        private final QwenSession session;
+        private final int serial;
+        private final int sessionSerial;
+
+        StreamState(boolean slide, SlideStreamParser.Listener listener, QwenSession session, int serial, int sessionSerial) {
+            this.slide = slide;
+            this.listener = listener;
+            this.session = session;
+            this.serial = serial;
+            this.sessionSerial = sessionSerial;
+        }
+
+        /**
+         * Runs a stream event on the main thread unless the request was cancelled by then.
+         */
+        void post(Runnable event) {
+            mainHandler.post(() -> {
+                if (serial == cancelSerial.get() && sessionSerial == session.getCancelSerial()) {
+                    event.run();
+                }
+            });
+        }
 
-                    if (fullResponse.length() == 0 && rawResponse.length() > 0) {
-                        mainHandler.post(() -> callback.onError("Received an unparsable response from the server:\n\n" + rawResponse.toString()));
+        /**
+         * @return a parser for the next stream, or null for requests that are not slides
+         */
+        SlideStreamParser newParser() {
+            if (!slide) {
+                return null;
+            }
+            return new SlideStreamParser(new SlideStreamParser.Listener() {
+                @Override
+                public void onBackgroundColor(String color) {
+                    if (backgroundColor != null) {
                         return;
                     }
-
-                    // Update conversation context
-                    if (responseId != null) {
-                        lastParentId = responseId;
-
-                        // Add user message to history
-                        conversationHistory.add(message);
-
-                        // Add AI response to history
-                        QwenCompletionRequest.Message aiMessage = new QwenCompletionRequest.Message();
-                        aiMessage.role = "assistant";
-                        aiMessage.content = fullResponse.toString();
-                        aiMessage.timestamp = System.currentTimeMillis();
-                        aiMessage.parent_id = lastParentId;
-                        conversationHistory.add(aiMessage);
-
-                        // Keep conversation history manageable (last 10 messages)
-                        if (conversationHistory.size() > 10) {
-                            conversationHistory = conversationHistory.subList(
-                                conversationHistory.size() - 10, conversationHistory.size());
-                        }
+                    backgroundColor = color;
+                    if (listener != null) {
+                        post(() -> listener.onBackgroundColor(color));
                     }
+                }
 
-                    mainHandler.post(() -> callback.onSuccess(fullResponse.toString()));
-                } else {
-                    BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-                    StringBuilder errorResponse = new StringBuilder();
-                    String errorLine;
-                    while ((errorLine = errorReader.readLine()) != null) {
-                        errorResponse.append(errorLine);
+                @Override
+                public void onElement(int index, JSONObject element) {
+                    if (!keys.add(keyOf(element))) {
+                        return;
+                    }
+                    elements.add(element);
+                    int merged = elements.size() - 1;
+                    if (listener != null) {
+                        post(() -> listener.onElement(merged, element));
                     }
-                    errorReader.close();
-                    mainHandler.post(() -> callback.onError("Error: " + responseCode + " " + errorResponse.toString()));
                 }
-                connection.disconnect();
-            } catch (Exception e) {
-                mainHandler.post(() -> callback.onError("Request error: " + e.getMessage()));
+            });
+        }
+
+        JSONObject toSlide() {
+            try {
+                JSONArray array = new JSONArray();
+                for (JSONObject element : elements) {
+                    array.put(element);
+                }
+                return new JSONObject()
+                        .put("backgroundColor", backgroundColor != null ? backgroundColor : "#FFFFFF")
+                        .put("elements", array);
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
             }
-        });
+        }
+
+        /**
+         * Identifies an element by what it shows and where, ignoring its id, which a
+         * continuation numbers afresh.
+         */
+        private String keyOf(JSONObject element) {
+            return element.optString("type") + '|' + element.optInt("x") + ',' + element.optInt("y") + '|'
+                    + element.optString("text", element.optString("content",
+                    element.optString("url", element.optString("shapeType", element.optString("iconName")))));
+        }
+    }
+
+    /**
+     * Cancels every chat or completion request in flight.
+     */
+    public void cancel() {
+        cancelSerial.incrementAndGet();
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Cancels the completion in flight in one chat, leaving other chats running.
+     */
+    public void cancel(String chatId) {
+        QwenSession session;
+        synchronized (sessions) {
+            session = sessions.get(chatId);
+        }
+        // A chat no longer kept has nothing in flight
+        if (session != null) {
+            session.cancel();
+        }
+    }
+
+    private Request.Builder qwenRequest(String url) {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .header("Content-Type", "application/json")
+                .header("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/138.0.0.0 Safari/537.36")
+                .header("Referer", "https://chat.qwen.ai/")
+                .header("bx-v", "2.5.31")
+                .header("Source", "web")
+                .header("Authorization", "Bearer")
+                .header("bx-umidtoken", getMidtoken());
+        if (cookies != null) {
+            builder.header("Cookie", cookies);
+        }
+        return builder;
+    }
+
+    /**
+     * Registers the conversation of a chat, e.g. a pre-created chat or a session
+     * restored from disk, replacing what was known about it. A null history starts
+     * the conversation empty.
+     */
+    public QwenSession restoreSession(String chatId, String parentId, List<QwenCompletionRequest.Message> history) {
+        QwenSession session = new QwenSession(chatId, parentId, history);
+        synchronized (sessions) {
+            sessions.put(chatId, session);
+        }
+        return session;
+    }
+
+    /**
+     * @return the conversation of a chat, starting an empty one for a chat not seen yet
+     */
+    public QwenSession getSession(String chatId) {
+        synchronized (sessions) {
+            QwenSession session = sessions.get(chatId);
+            if (session == null) {
+                session = new QwenSession(chatId, null, null);
+                sessions.put(chatId, session);
+            }
+            return session;
+        }
+    }
+
+    public String getCookies() {
+        return cookies;
+    }
+
+    public void setCookies(String cookies) {
+        this.cookies = cookies;
+    }
+
+    public synchronized String getMidtoken() {
+        return midtoken;
     }
 
-    private String createSlideGenerationPrompt(String userPrompt, float canvasWidth, float canvasHeight) {
-        return "Create a professional presentation slide based on this request: \"" + userPrompt + "\". " +
-                "The canvas size is " + canvasWidth + "x" + canvasHeight + " pixels. Please generate the slide elements accordingly." +
-                "You must respond with ONLY a valid JSON object (no markdown, no explanation) that contains:\n" +
-                "{\n" +
-                "  \"backgroundColor\": \"#FFFFFF\",\n" +
-                "  \"elements\": [\n" +
-                "    {\n" +
-                "      \"type\": \"text\",\n" +
-                "      \"content\": \"Slide Title\",\n" +
-                "      \"x\": 20,\n" +
-                "      \"y\": 20,\n" +
-                "      \"width\": 280,\n" +
-                "      \"height\": 40,\n" +
-                "      \"fontSize\": 24,\n" +
-                "      \"color\": \"#000000\",\n" +
-                "      \"bold\": true,\n" +
-                "      \"alignment\": \"center\"\n" +
-                "    }\n" +
-                "  ]\n" +
-                "}\n" +
-                "Guidelines:\n" +
-                "- Use slide dimensions " + canvasWidth + "x" + canvasHeight + "dp\n" +
-                "- Position elements with proper spacing\n" +
-                "- Include title, content, and optionally images/shapes\n" +
-                "- Use readable fonts (fontSize 12-24)\n" +
-                "- Choose professional colors\n" +
-                "- For images, use real public URLs\n" +
-                "- For shapes: type can be 'rectangle', 'oval', 'line'\n" +
-                "- Ensure no element overlap\n" +
-                "IMPORTANT: Return ONLY the JSON object, nothing else.";
+    public synchronized int getMidtokenUses() {
+        return midtokenUses;
     }
 
-    public void clearConversation() {
-        currentChatId = null;
-        lastParentId = null;
-        conversationHistory.clear();
+    public synchronized void restoreMidtoken(String midtoken, int uses) {
+        this.midtoken = midtoken;
+        this.midtokenUses = uses;
     }
 }
@@ -0,0 +1,89 @@
+package com.slides.ai.qwen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+
+/**
+ * One Qwen conversation: a chat id, the response the next prompt continues from,
+ * and a short history kept for persistence.
+ *
+ * The history is an immutable snapshot replaced as a whole after each exchange, so
+ * readers never see a list that is being modified, and completions running on
+ * other threads only ever touch their own session.
+ */
+public class QwenSession {
+    private static final int MAX_HISTORY = 10;
+
+    private final String chatId;
+    private String parentId;
+    private List<QwenCompletionRequest.Message> history;
+    private final Set<Call> calls = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Bumped by cancel() so requests started before it stay quiet
+    private final AtomicInteger cancelSerial = new AtomicInteger();
+
+    public QwenSession(String chatId, String parentId, List<QwenCompletionRequest.Message> history) {
+        this.chatId = chatId;
+        this.parentId = parentId;
+        this.history = history != null ? snapshot(history, 0) : Collections.emptyList();
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public synchronized String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * @return the history at this moment; it does not change afterwards
+     */
+    public synchronized List<QwenCompletionRequest.Message> getHistory() {
+        return history;
+    }
+
+    /**
+     * Records a finished exchange and makes its response the parent of the next prompt.
+     */
+    public synchronized void recordExchange(QwenCompletionRequest.Message user, QwenCompletionRequest.Message assistant,
+                                            String responseId) {
+        List<QwenCompletionRequest.Message> next = new ArrayList<>(history.size() + 2);
+        next.addAll(history);
+        next.add(user);
+        next.add(assistant);
+        history = snapshot(next, Math.max(0, next.size() - MAX_HISTORY));
+        parentId = responseId;
+    }
+
+    int getCancelSerial() {
+        return cancelSerial.get();
+    }
+
+    void addCall(Call call) {
+        calls.add(call);
+    }
+
+    void removeCall(Call call) {
+        calls.remove(call);
+    }
+
+    /**
+     * Cancels the requests of this conversation that are in flight.
+     */
+    public void cancel() {
+        cancelSerial.incrementAndGet();
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    private static List<QwenCompletionRequest.Message> snapshot(List<QwenCompletionRequest.Message> messages, int from) {
+        // A copy, not a subList view, so snapshots never chain
+        return Collections.unmodifiableList(new ArrayList<>(messages.subList(from, messages.size())));
+    }
+}
@@ -0,0 +1,259 @@
+package com.slides.ai.qwen;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.util.Log;
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps Qwen sessions warm so a prompt costs a single round trip: the completion.
+ *
+ * A fresh midtoken and a spare, already created chat are prepared in the background.
+ * Each deck keeps its own chat id, parent id and history for follow-up prompts,
+ * and sessions, cookies and the midtoken survive process restarts. Only the most
+ * recently used sessions are kept, so those of discarded temporary decks age out.
+ */
+public class QwenSessionManager {
+    private static final String TAG = "QwenSessionManager";
+    private static final String PREFS_NAME = "qwen_sessions";
+    private static final String KEY_COOKIES = "cookies";
+    private static final String KEY_MIDTOKEN = "midtoken";
+    private static final String KEY_MIDTOKEN_USES = "midtoken_uses";
+    private static final String KEY_SPARE_CHAT = "spare_chat";
+    private static final String SESSION_PREFIX = "session_";
+    // Stored conversations beyond this many are dropped, least recently used first
+    static final int MAX_STORED_SESSIONS = 20;
+
+    private final QwenManager qwenManager;
+    private final SharedPreferences prefs;
+    private final Handler mainHandler;
+    private final ExecutorService executorService;
+    private final Gson gson = new Gson();
+
+    private String spareChatId;
+    private boolean prewarming = false;
+
+    private static class StoredSession {
+        String chatId;
+        String parentId;
+        List<QwenCompletionRequest.Message> history;
+        long updatedAt;
+    }
+
+    public QwenSessionManager(Context context, QwenManager qwenManager, Handler mainHandler, ExecutorService executorService) {
+        this.qwenManager = qwenManager;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.mainHandler = mainHandler;
+        this.executorService = executorService;
+
+        qwenManager.setCookies(prefs.getString(KEY_COOKIES, null));
+        String midtoken = prefs.getString(KEY_MIDTOKEN, null);
+        if (midtoken != null) {
+            qwenManager.restoreMidtoken(midtoken, prefs.getInt(KEY_MIDTOKEN_USES, 0));
+        }
+        spareChatId = prefs.getString(KEY_SPARE_CHAT, null);
+    }
+
+    /**
+     * Refreshes the midtoken if it is about to run out and creates a spare chat if
+     * none is ready. Safe to call often; only one warm-up runs at a time.
+     */
+    public void prewarm() {
+        synchronized (this) {
+            if (prewarming) {
+                return;
+            }
+            prewarming = true;
+        }
+        executorService.execute(() -> {
+            try {
+                qwenManager.refreshMidtokenIfStale();
+                if (getSpareChatId() == null && qwenManager.getMidtoken() != null) {
+                    QwenNewChatResponse response = qwenManager.requestNewChat();
+                    if (response.success && response.data != null) {
+                        setSpareChatId(response.data.id);
+                    }
+                }
+                saveTransportState();
+            } catch (Exception e) {
+                Log.w(TAG, "Pre-warming Qwen session failed: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    prewarming = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers the deck's conversation and reports its chat id on the main thread.
+     * A stored session is resumed, otherwise the spare chat is taken; only when neither
+     * exists is a chat created on the spot.
+     */
+    public void openSession(String deckId, QwenManager.QwenCallback<String> callback) {
+        StoredSession stored = loadSession(deckId);
+        if (stored != null) {
+            qwenManager.restoreSession(stored.chatId, stored.parentId, stored.history);
+            mainHandler.post(() -> callback.onSuccess(stored.chatId));
+            prewarm();
+            return;
+        }
+
+        String spare = takeSpareChatId();
+        if (spare != null) {
+            qwenManager.restoreSession(spare, null, null);
+            saveSession(deckId, spare);
+            mainHandler.post(() -> callback.onSuccess(spare));
+            prewarm();
+            return;
+        }
+
+        qwenManager.createNewChat(new QwenManager.QwenCallback<QwenNewChatResponse>() {
+            @Override
+            public void onSuccess(QwenNewChatResponse response) {
+                if (response == null || !response.success || response.data == null) {
+                    callback.onError("Error creating new Qwen chat session.");
+                    return;
+                }
+                saveSession(deckId, response.data.id);
+                callback.onSuccess(response.data.id);
+                prewarm();
+            }
+
+            @Override
+            public void onError(String message) {
+                callback.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Persists the conversation of a deck after a completion in its chat and gets
+     * the next request's midtoken ready.
+     */
+    public void onCompletion(String deckId, String chatId) {
+        saveSession(deckId, chatId);
+        prewarm();
+    }
+
+    /**
+     * Forgets a deck's conversation, e.g. after the server rejected its chat id.
+     */
+    public void resetSession(String deckId) {
+        if (deckId != null) {
+            prefs.edit().remove(SESSION_PREFIX + deckId).apply();
+        }
+    }
+
+    /**
+     * Moves a deck's session to a new key, used when a temporary deck is saved.
+     */
+    public void renameSession(String oldDeckId, String newDeckId) {
+        String json = oldDeckId != null ? prefs.getString(SESSION_PREFIX + oldDeckId, null) : null;
+        if (json != null && newDeckId != null) {
+            prefs.edit()
+                    .remove(SESSION_PREFIX + oldDeckId)
+                    .putString(SESSION_PREFIX + newDeckId, json)
+                    .apply();
+        }
+    }
+
+    private StoredSession loadSession(String deckId) {
+        if (deckId == null) {
+            return null;
+        }
+        String json = prefs.getString(SESSION_PREFIX + deckId, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            StoredSession session = gson.fromJson(json, StoredSession.class);
+            return session != null && session.chatId != null ? session : null;
+        } catch (Exception e) {
+            Log.w(TAG, "Dropping unreadable session for " + deckId);
+            resetSession(deckId);
+            return null;
+        }
+    }
+
+    private void saveSession(String deckId, String chatId) {
+        if (deckId != null && chatId != null) {
+            QwenSession conversation = qwenManager.getSession(chatId);
+            StoredSession session = new StoredSession();
+            session.chatId = chatId;
+            session.parentId = conversation.getParentId();
+            session.history = conversation.getHistory();
+            session.updatedAt = System.currentTimeMillis();
+            prefs.edit().putString(SESSION_PREFIX + deckId, gson.toJson(session, StoredSession.class)).apply();
+            executorService.execute(this::trimSessions);
+        }
+        saveTransportState();
+    }
+
+    /**
+     * Drops the least recently updated sessions beyond {@link #MAX_STORED_SESSIONS}.
+     */
+    private void trimSessions() {
+        Map<String, ?> all = prefs.getAll();
+        List<String> keys = new ArrayList<>();
+        for (String key : all.keySet()) {
+            if (key.startsWith(SESSION_PREFIX)) {
+                keys.add(key);
+            }
+        }
+        if (keys.size() <= MAX_STORED_SESSIONS) {
+            return;
+        }
+        List<Long> updatedAt = new ArrayList<>();
+        for (String key : keys) {
+            long time = 0;
+            try {
+                StoredSession session = gson.fromJson(String.valueOf(all.get(key)), StoredSession.class);
+                time = session != null ? session.updatedAt : 0;
+            } catch (Exception e) {
+                // Unreadable sessions go first
+            }
+            updatedAt.add(time);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> Long.compare(updatedAt.get(a), updatedAt.get(b)));
+        SharedPreferences.Editor editor = prefs.edit();
+        for (int i = 0; i < keys.size() - MAX_STORED_SESSIONS; i++) {
+            editor.remove(keys.get(order.get(i)));
+        }
+        editor.apply();
+        Log.d(TAG, "Dropped " + (keys.size() - MAX_STORED_SESSIONS) + " old sessions");
+    }
+
+    private void saveTransportState() {
+        prefs.edit()
+                .putString(KEY_COOKIES, qwenManager.getCookies())
+                .putString(KEY_MIDTOKEN, qwenManager.getMidtoken())
+                .putInt(KEY_MIDTOKEN_USES, qwenManager.getMidtokenUses())
+                .putString(KEY_SPARE_CHAT, getSpareChatId())
+                .apply();
+    }
+
+    private synchronized String getSpareChatId() {
+        return spareChatId;
+    }
+
+    private synchronized void setSpareChatId(String chatId) {
+        spareChatId = chatId;
+    }
+
+    private synchronized String takeSpareChatId() {
+        String chatId = spareChatId;
+        spareChatId = null;
+        return chatId;
+    }
+}
@@ -0,0 +1,130 @@
+package com.slides.ai.qwen;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.slides.ai.SseDecoder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Decodes the event stream of a Qwen completion into the few fields the app uses.
+ * Unlike binding every event to {@link QwenCompletionResponse}, only
+ * choices[0].delta.content, delta.phase and response_created.response_id are
+ * read with a streaming JsonReader, and everything else is skipped unparsed.
+ */
+public class QwenStreamDecoder implements Closeable {
+    private static final int DIAGNOSTICS_BYTES = 4096;
+
+    private final SseDecoder events;
+    private int malformedEvents;
+
+    // Fields of the current event, null when it has none
+    public String content;
+    public String phase;
+    public String responseId;
+
+    public QwenStreamDecoder(BufferedSource source) {
+        events = new SseDecoder(source, DIAGNOSTICS_BYTES);
+    }
+
+    /**
+     * Moves to the next event, skipping [DONE] and malformed ones.
+     *
+     * @return false at the end of the stream
+     */
+    public boolean next() throws IOException {
+        Buffer data;
+        while ((data = events.nextEvent()) != null) {
+            content = null;
+            phase = null;
+            responseId = null;
+            if (data.size() == 0 || data.getByte(0) != '{') {
+                continue; // [DONE] or keep-alive
+            }
+            try {
+                // One String per event; okio decodes UTF-8 faster than a Reader over the buffer
+                readEvent(new JsonReader(new StringReader(data.readUtf8())));
+                return true;
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                malformedEvents++;
+            }
+        }
+        return false;
+    }
+
+    public int getMalformedEvents() {
+        return malformedEvents;
+    }
+
+    public long getTotalBytes() {
+        return events.getTotalBytes();
+    }
+
+    /**
+     * @return the last few KB of the raw stream, for error messages
+     */
+    public String recentText() {
+        return events.recentText();
+    }
+
+    private void readEvent(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("response_created") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("response_id") && reader.peek() == JsonToken.STRING) {
+                        responseId = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("choices") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    readChoice(reader);
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readChoice(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("delta") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("content") && reader.peek() == JsonToken.STRING) {
+                        content = reader.nextString();
+                    } else if (name.equals("phase") && reader.peek() == JsonToken.STRING) {
+                        phase = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        events.close();
+    }
+}
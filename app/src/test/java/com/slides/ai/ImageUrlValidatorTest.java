@@ -0,0 +1,164 @@
+package com.slides.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+* Checks ImageUrlValidator against a local stand-in server that serves images,
+* 404s, pages, slow answers and resets, one per path.
+*/
+public class ImageUrlValidatorTest {
+	private static final String PLACEHOLDER = "placeholder://image";
+
+	private MockWebServer server;
+	private ImageUrlValidator validator;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new MockWebServer();
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String path = request.getPath();
+				switch (path) {
+					case "/image.png":
+						return new MockResponse().setHeader("Content-Type", "image/png");
+					case "/missing.png":
+						return new MockResponse().setResponseCode(404);
+					case "/page.png":
+						return new MockResponse().setHeader("Content-Type", "text/html");
+					case "/no-head.png":
+						// Refuses HEAD but serves a ranged GET
+						return "HEAD".equals(request.getMethod())
+						? new MockResponse().setResponseCode(405)
+						: new MockResponse().setResponseCode(206).setHeader("Content-Type", "image/jpeg");
+					case "/slow.png":
+						return new MockResponse().setHeader("Content-Type", "image/png").setHeadersDelay(5, TimeUnit.SECONDS);
+					case "/reset.png":
+						return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+					default:
+						return new MockResponse().setResponseCode(500);
+				}
+			}
+		});
+		server.start();
+		validator = new ImageUrlValidator(new OkHttpClient(), PLACEHOLDER);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.shutdown();
+	}
+
+	@Test
+	public void keepsWorkingImage() {
+		String slide = slideWith(url("/image.png"));
+		assertSame(slide, validator.validate(slide));
+	}
+
+	@Test
+	public void replacesMissingImageAndKeepsOriginal() throws JSONException {
+		JSONObject image = firstImage(validator.validate(slideWith(url("/missing.png"))));
+		assertEquals(PLACEHOLDER, image.getString("url"));
+		assertEquals(url("/missing.png"), image.getString(ImageUrlValidator.ORIGINAL_URL));
+	}
+
+	@Test
+	public void replacesNonImageAnswer() throws JSONException {
+		assertEquals(PLACEHOLDER, firstImage(validator.validate(slideWith(url("/page.png")))).getString("url"));
+	}
+
+	@Test
+	public void fallsBackToRangedGetWhenHeadIsRefused() {
+		String slide = slideWith(url("/no-head.png"));
+		assertSame(slide, validator.validate(slide));
+	}
+
+	@Test
+	public void keepsSlowImage() {
+		String slide = slideWith(url("/slow.png"));
+		assertSame(slide, validator.validate(slide));
+	}
+
+	@Test
+	public void keepsImageWhoseConnectionWasReset() {
+		String slide = slideWith(url("/reset.png"));
+		assertSame(slide, validator.validate(slide));
+	}
+
+	@Test
+	public void keepsUnreachableHostWhenNothingAnswers() throws IOException {
+		// Looks the same as being offline
+		String slide = slideWith(closedPortUrl());
+		assertSame(slide, validator.validate(slide));
+	}
+
+	@Test
+	public void replacesUnreachableHostWhenOthersAnswer() throws IOException, JSONException {
+		String unreachable = closedPortUrl();
+		JSONArray elements = new JSONObject(validator.validate(slideWith(url("/image.png"), unreachable)))
+		.getJSONArray("elements");
+		assertEquals(url("/image.png"), elements.getJSONObject(0).getString("url"));
+		assertEquals(PLACEHOLDER, elements.getJSONObject(1).getString("url"));
+		assertEquals(unreachable, elements.getJSONObject(1).getString(ImageUrlValidator.ORIGINAL_URL));
+	}
+
+	@Test
+	public void restoresOriginalUrlThatWorksAgain() throws JSONException {
+		JSONObject element = new JSONObject()
+		.put("type", "image")
+		.put("url", PLACEHOLDER)
+		.put(ImageUrlValidator.ORIGINAL_URL, url("/image.png"));
+		String slide = new JSONObject().put("elements", new JSONArray().put(element)).toString();
+
+		JSONObject image = firstImage(validator.validate(slide));
+		assertEquals(url("/image.png"), image.getString("url"));
+		assertEquals(false, image.has(ImageUrlValidator.ORIGINAL_URL));
+	}
+
+	private String url(String path) {
+		return server.url(path).toString();
+	}
+
+	private static String closedPortUrl() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		return "http://127.0.0.1:" + port + "/image.png";
+	}
+
+	private static String slideWith(String... urls) {
+		try {
+			JSONArray elements = new JSONArray();
+			for (String url : urls) {
+				elements.put(new JSONObject().put("type", "image").put("url", url));
+			}
+			return new JSONObject().put("backgroundColor", "#FFFFFF").put("elements", elements).toString();
+		} catch (JSONException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static JSONObject firstImage(String slideJson) throws JSONException {
+		return new JSONObject(slideJson).getJSONArray("elements").getJSONObject(0);
+	}
+}
@@ -0,0 +1,183 @@
+package com.slides.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class JsonExtractorTest {
+	private static final String SLIDE = "{\"backgroundColor\": \"#FFFFFF\", \"elements\": ["
+	+ "{\"type\": \"text\", \"text\": \"Braces { and } and [brackets]\", \"x\": 10, \"y\": 20},"
+	+ "{\"type\": \"text\", \"text\": \"She said \\\"hi\\\" \\\\ then left\", \"x\": 30, \"y\": 40},"
+	+ "{\"type\": \"chart\", \"data\": [{\"label\": \"Q1\", \"value\": 1.5}, {\"label\": \"Q2\", \"value\": 2}]}"
+	+ "]}";
+
+	@Test
+	public void extractsPlainObject() throws JSONException {
+		JsonExtractor.Result result = JsonExtractor.extractObject(SLIDE);
+		assertFalse(result.repaired);
+		assertEquals(SLIDE, result.json);
+		assertEquals(3, ((JSONObject) result.value).getJSONArray("elements").length());
+	}
+
+	@Test
+	public void ignoresBracesInsideStrings() throws JSONException {
+		JSONObject slide = (JSONObject) JsonExtractor.extractObject(SLIDE).value;
+		JSONArray elements = slide.getJSONArray("elements");
+		assertEquals("Braces { and } and [brackets]", elements.getJSONObject(0).getString("text"));
+	}
+
+	@Test
+	public void handlesEscapedQuotesAndBackslashes() throws JSONException {
+		JSONObject slide = (JSONObject) JsonExtractor.extractObject(SLIDE).value;
+		assertEquals("She said \"hi\" \\ then left", slide.getJSONArray("elements").getJSONObject(1).getString("text"));
+	}
+
+	@Test
+	public void skipsProseAndMarkdownFences() throws JSONException {
+		String answer = "Sure! Here is your {slide}:\n\n```json\n" + SLIDE + "\n```\n\nLet me know {if} you need changes.";
+		JsonExtractor.Result result = JsonExtractor.extractObject(answer);
+		assertFalse(result.repaired);
+		assertEquals(SLIDE, result.json);
+	}
+
+	@Test
+	public void extractsArrays() throws JSONException {
+		JsonExtractor.Result result = JsonExtractor.extractArray("Patch: [{\"op\": \"remove\", \"path\": \"/elements/a\"}] done");
+		assertEquals(1, ((JSONArray) result.value).length());
+	}
+
+	@Test
+	public void repairsTruncatedAnswer() throws JSONException {
+		String cut = SLIDE.substring(0, SLIDE.indexOf("{\"type\": \"chart\"") + 20);
+		JsonExtractor.Result result = JsonExtractor.extractObject("```json\n" + cut);
+		assertTrue(result.repaired);
+		JSONObject slide = (JSONObject) result.value;
+		assertEquals("#FFFFFF", slide.getString("backgroundColor"));
+		// The two complete elements survive, the cut-off one is closed or dropped
+		assertTrue(slide.getJSONArray("elements").length() >= 2);
+		assertTrue(result.json.startsWith("{\"backgroundColor\""));
+	}
+
+	@Test
+	public void repairDropsDanglingKey() throws JSONException {
+		JsonExtractor.Result result = JsonExtractor.extractObject("{\"a\": 1, \"b\": [1, 2], \"c");
+		assertTrue(result.repaired);
+		JSONObject value = (JSONObject) result.value;
+		assertEquals(1, value.getInt("a"));
+		assertEquals(2, value.getJSONArray("b").length());
+		assertFalse(value.has("c"));
+	}
+
+	@Test(expected = JSONException.class)
+	public void failsWithoutJson() throws JSONException {
+		JsonExtractor.extractObject("I could not generate a slide for that.");
+	}
+
+	@Test(expected = JSONException.class)
+	public void failsOnNull() throws JSONException {
+		JsonExtractor.extractObject(null);
+	}
+
+	/**
+	* Every prefix of a slide that opens the object must come back as valid JSON.
+	*/
+	@Test
+	public void repairsEveryTruncation() {
+		String answer = "Here you go:\n```json\n" + SLIDE + "\n```";
+		int open = answer.indexOf('{');
+		for (int end = open + 1; end <= answer.length(); end++) {
+			String prefix = answer.substring(0, end);
+			try {
+				JsonExtractor.Result result = JsonExtractor.extractObject(prefix);
+				assertNotNull(result.value);
+				// The returned text is the JSON that was parsed
+				new JSONObject(result.json);
+				assertEquals(end < open + SLIDE.length(), result.repaired);
+			} catch (JSONException e) {
+				fail("Prefix of " + end + " chars not repaired: " + prefix);
+			}
+		}
+	}
+
+	/**
+	* Random input may fail to extract, but only with a JSONException.
+	*/
+	@Test
+	public void fuzzRandomInput() {
+		Random random = new Random(42);
+		char[] alphabet = "{}[]\":,\\ a1-.\ntrue".toCharArray();
+		for (int i = 0; i < 50000; i++) {
+			char[] text = new char[random.nextInt(64)];
+			for (int j = 0; j < text.length; j++) {
+				text[j] = alphabet[random.nextInt(alphabet.length)];
+			}
+			try {
+				JsonExtractor.Result result = JsonExtractor.extract(new String(text), random.nextBoolean() ? '{' : '[');
+				assertNotNull(result.value);
+			} catch (JSONException expected) {
+				// No JSON in the input
+			}
+		}
+	}
+
+	/**
+	* Mutated slides: random cuts and dropped characters never throw anything but
+	* JSONException, and whatever is extracted parses.
+	*/
+	@Test
+	public void fuzzMutatedSlides() throws JSONException {
+		Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder text = new StringBuilder(SLIDE);
+			for (int m = random.nextInt(4); m > 0 && text.length() > 0; m--) {
+				text.deleteCharAt(random.nextInt(text.length()));
+			}
+			text.setLength(random.nextInt(text.length() + 1));
+			try {
+				JsonExtractor.Result result = JsonExtractor.extractObject(text.toString());
+				new JSONObject(result.json);
+			} catch (JSONException expected) {
+				// Nothing extractable left
+			}
+		}
+	}
+
+	/**
+	* Rough throughput check on a large fenced answer; prints the time per call.
+	*/
+	@Test
+	public void benchmarkLargeAnswer() throws JSONException {
+		StringBuilder elements = new StringBuilder();
+		for (int i = 0; i < 60; i++) {
+			if (i > 0) {
+				elements.append(',');
+			}
+			elements.append("{\"type\": \"text\", \"text\": \"Item ").append(i)
+			.append(" with {braces} and \\\"quotes\\\"\", \"x\": ").append(i).append(", \"y\": 10}");
+		}
+		String answer = "Here is the slide:\n```json\n{\"backgroundColor\": \"#000000\", \"elements\": ["
+		+ elements + "]}\n```";
+
+		for (int i = 0; i < 200; i++) {
+			JsonExtractor.extractObject(answer);
+		}
+		int runs = 2000;
+		long start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			JsonExtractor.extractObject(answer);
+		}
+		double millis = (System.nanoTime() - start) / 1e6 / runs;
+		System.out.printf("JsonExtractor: %.3f ms per %d char answer%n", millis, answer.length());
+		// Generous bound, so only a pathological slowdown fails the build
+		assertTrue(millis < 20);
+	}
+}
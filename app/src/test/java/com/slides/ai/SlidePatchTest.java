@@ -0,0 +1,79 @@
+package com.slides.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+public class SlidePatchTest {
+	private static final String SLIDE = "{\"backgroundColor\":\"#FFFFFF\",\"elements\":["
+	+ "{\"id\":\"e1\",\"type\":\"text\",\"content\":\"Title\"},"
+	+ "{\"id\":\"e2\",\"type\":\"shape\",\"color\":\"#000000\"}]}";
+
+	@Test
+	public void parsesEveryOperation() throws JSONException {
+		SlidePatch patch = parse("Here is the edit:\n```json\n["
+		+ "{\"op\":\"replace\",\"path\":\"/elements/e1/content\",\"value\":\"New title\"},"
+		+ "{\"op\":\"replace\",\"path\":\"/backgroundColor\",\"value\":\"#101010\"},"
+		+ "{\"op\":\"remove\",\"path\":\"/elements/e2\"},"
+		+ "{\"op\":\"add\",\"path\":\"/elements/-\",\"value\":{\"type\":\"text\",\"content\":\"[x]\"}}"
+		+ "]\n```");
+
+		List<SlidePatch.Operation> operations = patch.getOperations();
+		assertEquals(4, operations.size());
+
+		assertEquals("replace", operations.get(0).op);
+		assertEquals("e1", operations.get(0).elementId);
+		assertEquals("content", operations.get(0).property);
+		assertEquals("New title", operations.get(0).value);
+
+		assertTrue(operations.get(1).isBackground());
+		assertEquals("#101010", operations.get(1).value);
+
+		assertEquals("remove", operations.get(2).op);
+		assertEquals("e2", operations.get(2).elementId);
+		assertNull(operations.get(2).property);
+
+		assertEquals("add", operations.get(3).op);
+		assertNull(operations.get(3).elementId);
+		assertEquals("[x]", ((JSONObject) operations.get(3).value).getString("content"));
+	}
+
+	@Test
+	public void rejectsInvalidPatches() {
+		rejects("[{\"op\":\"move\",\"path\":\"/elements/e1\",\"from\":\"/elements/e2\"}]");
+		rejects("[{\"op\":\"replace\",\"path\":\"/elements/e9/color\",\"value\":\"#FFFFFF\"}]");
+		rejects("[{\"op\":\"replace\",\"path\":\"/elements/e1/id\",\"value\":\"e3\"}]");
+		rejects("[{\"op\":\"replace\",\"path\":\"/elements/e1/type\",\"value\":\"image\"}]");
+		rejects("[{\"op\":\"replace\",\"path\":\"/elements/e1\",\"value\":{}}]");
+		rejects("[{\"op\":\"replace\",\"path\":\"/elements/e1/color\"}]");
+		rejects("[{\"op\":\"remove\",\"path\":\"/backgroundColor\"}]");
+		rejects("[{\"op\":\"add\",\"path\":\"/elements/-\",\"value\":\"text\"}]");
+		rejects("[{\"op\":\"replace\",\"path\":\"/title\",\"value\":\"x\"}]");
+		rejects("[]");
+	}
+
+	@Test
+	public void rejectsTruncatedPatch() {
+		// Applying the first operation alone would be half an edit
+		rejects("[{\"op\":\"remove\",\"path\":\"/elements/e2\"},{\"op\":\"replace\",\"path\":\"/elements/e1/con");
+	}
+
+	private static SlidePatch parse(String answer) throws JSONException {
+		return SlidePatch.parse(answer, new JSONObject(SLIDE));
+	}
+
+	private static void rejects(String answer) {
+		try {
+			parse(answer);
+			fail("Accepted " + answer);
+		} catch (JSONException expected) {
+		}
+	}
+}